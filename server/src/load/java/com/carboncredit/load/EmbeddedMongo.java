@@ -0,0 +1,42 @@
+package com.carboncredit.load;
+
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+
+/**
+ * A throwaway mongod for the load test, downloaded and started by flapdoodle on
+ * first use. Set load.mongo-uri to run against an existing server instead (e.g.
+ * where the MongoDB download is not reachable).
+ */
+final class EmbeddedMongo {
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> running;
+    private static String uri;
+
+    private EmbeddedMongo() {
+    }
+
+    static synchronized String uri(String configuredUri, String version) {
+        if (configuredUri != null && !configuredUri.isBlank()) {
+            return configuredUri;
+        }
+        if (uri == null) {
+            running = Mongod.instance().start(Version.Main.valueOf("V" + version.replace('.', '_')));
+            ServerAddress address = running.current().getServerAddress();
+            uri = "mongodb://" + address.getHost() + ":" + address.getPort() + "/carbon-credit-load";
+            Runtime.getRuntime().addShutdownHook(new Thread(EmbeddedMongo::stop, "embedded-mongo-stop"));
+        }
+        return uri;
+    }
+
+    static synchronized void stop() {
+        if (running != null) {
+            running.close();
+            running = null;
+            uri = null;
+        }
+    }
+}
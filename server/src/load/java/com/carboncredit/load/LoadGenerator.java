@@ -0,0 +1,392 @@
+package com.carboncredit.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Drives a weighted mix of trader requests against a running server and records
+ * per-endpoint latency in HdrHistograms.
+ *
+ * In open-loop mode (rate > 0) requests are scheduled at fixed intervals
+ * regardless of how fast earlier ones complete, and response time is measured
+ * from the scheduled start, so queueing behind a slow server is counted instead
+ * of hidden (no coordinated omission). Service time (send to response) is kept
+ * separately. With rate 0 each worker issues its next request when the previous
+ * one returns (closed loop).
+ *
+ * Throughput is reported over the scheduled window only; the time spent
+ * draining requests still in flight at its end is not counted. Arrivals that
+ * are still queued, or still waiting on a response, when the drain times out
+ * are counted as errors rather than dropped.
+ */
+class LoadGenerator {
+
+    enum Operation {
+        PLACE("POST /api/marketplace/orders"),
+        CANCEL("PUT /api/marketplace/orders/{id}/cancel"),
+        WALLET("GET /api/wallet"),
+        DASHBOARD("GET /api/dashboard/user-stats"),
+        USAGE("GET /api/usage/summary");
+
+        final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    static final class Trader {
+        final String id;
+        final String token;
+        // Orders this trader placed that may still be open, newest last
+        final Deque<String> openOrders = new ConcurrentLinkedDeque<>();
+
+        Trader(String id, String token) {
+            this.id = id;
+            this.token = token;
+        }
+    }
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final int MAX_OPEN_ORDERS = 100;
+    // Stay well inside the +/-10% band the marketplace accepts around the last price
+    private static final double PRICE_SPREAD = 0.03;
+
+    private final String baseUrl;
+    private final List<Trader> traders;
+    private final Map<Operation, Integer> mix;
+    private final int totalWeight;
+    private final DoubleSupplier lastTradedPrice;
+    private final HttpClient http;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private volatile double basePrice;
+
+    LoadGenerator(String baseUrl, List<Trader> traders, String mix, DoubleSupplier lastTradedPrice) {
+        this.baseUrl = baseUrl;
+        this.traders = traders;
+        this.mix = parseMix(mix);
+        this.totalWeight = this.mix.values().stream().mapToInt(Integer::intValue).sum();
+        this.lastTradedPrice = lastTradedPrice;
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] entry = part.trim().split(":");
+            if (entry.length != 2) {
+                throw new IllegalArgumentException("Mix must be operation:weight,...: " + spec);
+            }
+            int weight = Integer.parseInt(entry[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(entry[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Mix has no positive weights: " + spec);
+        }
+        return weights;
+    }
+
+    /**
+     * Runs the warm-up, discards its measurements, then runs the measured period.
+     *
+     * @param rate         requests per second (open loop), or 0 for closed loop
+     * @param drainSeconds how long to wait after each period for outstanding requests
+     */
+    Report run(double rate, int concurrency, int warmupSeconds, int durationSeconds, int drainSeconds)
+            throws InterruptedException {
+        ScheduledExecutorService priceRefresher = Executors.newSingleThreadScheduledExecutor();
+        basePrice = lastTradedPrice.getAsDouble();
+        priceRefresher.scheduleAtFixedRate(() -> basePrice = lastTradedPrice.getAsDouble(), 1, 1, TimeUnit.SECONDS);
+        try {
+            if (warmupSeconds > 0) {
+                drive(rate, concurrency, warmupSeconds, drainSeconds);
+                stats.values().forEach(Stats::reset);
+            }
+            drive(rate, concurrency, durationSeconds, drainSeconds);
+            return report(durationSeconds);
+        } finally {
+            priceRefresher.shutdownNow();
+        }
+    }
+
+    private void drive(double rate, int concurrency, int seconds, int drainSeconds) throws InterruptedException {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> new Thread(r, "load-worker-" + threads.incrementAndGet()));
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        if (rate > 0) {
+            long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            for (long next = System.nanoTime(); next - end < 0; next += interval) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                workers.execute(new Arrival(pickOperation(), next));
+            }
+        } else {
+            for (int i = 0; i < concurrency; i++) {
+                workers.execute(() -> {
+                    while (System.nanoTime() - end < 0) {
+                        issue(pickOperation(), System.nanoTime());
+                    }
+                });
+            }
+        }
+
+        workers.shutdown();
+        if (!workers.awaitTermination(drainSeconds, TimeUnit.SECONDS)) {
+            // Never sent: count them as failed, or a server that fell behind would look healthy.
+            // Requests in flight are interrupted and count themselves (see issue)
+            long now = System.nanoTime();
+            for (Runnable pending : workers.shutdownNow()) {
+                if (pending instanceof Arrival arrival) {
+                    stats.get(arrival.operation).recordUndelivered(now - arrival.intendedNanos);
+                }
+            }
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // One open-loop arrival, with the operation picked when it was scheduled
+    private final class Arrival implements Runnable {
+        final Operation operation;
+        final long intendedNanos;
+
+        Arrival(Operation operation, long intendedNanos) {
+            this.operation = operation;
+            this.intendedNanos = intendedNanos;
+        }
+
+        @Override
+        public void run() {
+            issue(operation, intendedNanos);
+        }
+    }
+
+    private Operation pickOperation() {
+        int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            ticket -= entry.getValue();
+            if (ticket < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Unreachable");
+    }
+
+    private void issue(Operation operation, long intendedNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Trader trader = traders.get(random.nextInt(traders.size()));
+        String cancelId = null;
+        if (operation == Operation.CANCEL) {
+            cancelId = trader.openOrders.pollLast();
+            if (cancelId == null) {
+                // Nothing of this trader's left to cancel; place instead so the arrival isn't lost
+                operation = Operation.PLACE;
+            }
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + trader.token)
+                .header("Content-Type", "application/json");
+        switch (operation) {
+            case PLACE -> {
+                String side = random.nextBoolean() ? "BUY" : "SELL";
+                double price = Math.round(basePrice * (1 + random.nextDouble(-PRICE_SPREAD, PRICE_SPREAD)) * 100) / 100.0;
+                String body = String.format(Locale.ROOT, "{\"type\":\"%s\",\"quantity\":%d,\"pricePerUnit\":%.2f}",
+                        side, random.nextInt(1, 6), price);
+                request.uri(uri("/api/marketplace/orders")).POST(HttpRequest.BodyPublishers.ofString(body));
+            }
+            case CANCEL -> request.uri(uri("/api/marketplace/orders/" + cancelId + "/cancel"))
+                    .PUT(HttpRequest.BodyPublishers.noBody());
+            case WALLET -> request.uri(uri("/api/wallet")).GET();
+            case DASHBOARD -> request.uri(uri("/api/dashboard/user-stats")).GET();
+            case USAGE -> request.uri(uri("/api/usage/summary")).GET();
+        }
+
+        Stats operationStats = stats.get(operation);
+        long sent = System.nanoTime();
+        int status;
+        String body = null;
+        try {
+            HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            status = response.statusCode();
+            body = response.body();
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            operationStats.recordUndelivered(System.nanoTime() - intendedNanos);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long done = System.nanoTime();
+        operationStats.record(status, done - intendedNanos, done - sent);
+
+        if (operation == Operation.PLACE && status == 200) {
+            rememberOrder(trader, body);
+        }
+    }
+
+    private void rememberOrder(Trader trader, String body) {
+        try {
+            JsonNode order = objectMapper.readTree(body);
+            if ("PENDING".equals(order.path("status").asText()) || "PARTIAL".equals(order.path("status").asText())) {
+                trader.openOrders.addLast(order.path("id").asText());
+                if (trader.openOrders.size() > MAX_OPEN_ORDERS) {
+                    trader.openOrders.pollFirst();
+                }
+            }
+        } catch (IOException ignored) {
+            // Not an order; nothing to cancel later
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private Report report(double seconds) {
+        List<Report.Row> rows = new ArrayList<>();
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats s = entry.getValue();
+            Histogram response = s.responseTime.getIntervalHistogram();
+            Histogram service = s.serviceTime.getIntervalHistogram();
+            if (response.getTotalCount() == 0) {
+                continue;
+            }
+            rows.add(new Report.Row(entry.getKey().endpoint, response.getTotalCount(), s.ok.sum(),
+                    s.rejected.sum(), s.errors.sum(), response.getTotalCount() / seconds, response, service));
+        }
+        return new Report(seconds, rows);
+    }
+
+    private static final class Stats {
+        final Recorder responseTime = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        final Recorder serviceTime = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        final LongAdder ok = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        void record(int status, long responseNanos, long serviceNanos) {
+            responseTime.recordValue(Math.min(responseNanos, HIGHEST_TRACKABLE_NANOS));
+            serviceTime.recordValue(Math.min(serviceNanos, HIGHEST_TRACKABLE_NANOS));
+            if (status >= 200 && status < 300) {
+                ok.increment();
+            } else if (status >= 400 && status < 500) {
+                // e.g. an order that filled before its cancel arrived
+                rejected.increment();
+            } else {
+                errors.increment();
+            }
+        }
+
+        // No response: waited at least this long, but there is no service time to record
+        void recordUndelivered(long responseNanos) {
+            responseTime.recordValue(Math.min(responseNanos, HIGHEST_TRACKABLE_NANOS));
+            errors.increment();
+        }
+
+        void reset() {
+            responseTime.reset();
+            serviceTime.reset();
+            ok.reset();
+            rejected.reset();
+            errors.reset();
+        }
+    }
+
+    /**
+     * Throughput and latency percentiles per endpoint for the measured period.
+     * Throughput is over the scheduled window, excluding the drain.
+     */
+    static final class Report {
+        private static final double NANOS_PER_MS = 1_000_000.0;
+
+        record Row(String endpoint, long requests, long ok, long rejected, long errors, double throughput,
+                Histogram responseTime, Histogram serviceTime) {
+        }
+
+        final double seconds;
+        final List<Row> rows;
+
+        Report(double seconds, List<Row> rows) {
+            this.seconds = seconds;
+            this.rows = rows;
+        }
+
+        long requests() {
+            return rows.stream().mapToLong(Row::requests).sum();
+        }
+
+        double errorRate() {
+            long requests = requests();
+            return requests == 0 ? 0 : rows.stream().mapToLong(Row::errors).sum() / (double) requests;
+        }
+
+        String toTable() {
+            StringBuilder table = new StringBuilder(String.format(Locale.ROOT,
+                    "%-42s %8s %7s %7s %7s %8s %9s %9s %9s %9s %9s %12s%n", "endpoint", "requests", "ok", "4xx",
+                    "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms"));
+            for (Row row : rows) {
+                table.append(String.format(Locale.ROOT,
+                        "%-42s %8d %7d %7d %7d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f %12.2f%n", row.endpoint(),
+                        row.requests(), row.ok(), row.rejected(), row.errors(), row.throughput(),
+                        ms(row.responseTime(), 50), ms(row.responseTime(), 90), ms(row.responseTime(), 99),
+                        ms(row.responseTime(), 99.9), row.responseTime().getMaxValue() / NANOS_PER_MS,
+                        ms(row.serviceTime(), 99)));
+            }
+            table.append(String.format(Locale.ROOT, "%d requests in %.1f s (%.1f req/s), error rate %.4f%n",
+                    requests(), seconds, requests() / seconds, errorRate()));
+            return table.toString();
+        }
+
+        void writeCsv(Path file) throws IOException {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+                out.println("endpoint,requests,ok,rejected,errors,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,"
+                        + "service_p99_ms");
+                for (Row row : rows) {
+                    out.println(String.format(Locale.ROOT, "\"%s\",%d,%d,%d,%d,%.2f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                            row.endpoint(), row.requests(), row.ok(), row.rejected(), row.errors(), row.throughput(),
+                            ms(row.responseTime(), 50), ms(row.responseTime(), 90), ms(row.responseTime(), 99),
+                            ms(row.responseTime(), 99.9), row.responseTime().getMaxValue() / NANOS_PER_MS,
+                            ms(row.serviceTime(), 99)));
+                }
+            }
+        }
+
+        private static double ms(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / NANOS_PER_MS;
+        }
+    }
+}
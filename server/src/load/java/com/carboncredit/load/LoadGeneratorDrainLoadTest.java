@@ -0,0 +1,50 @@
+package com.carboncredit.load;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the generator's own bookkeeping against a stub server, without
+ * booting the application or a MongoDB. Runs with the rest of
+ * {@code mvn -Pload test}.
+ */
+public class LoadGeneratorDrainLoadTest {
+
+    @Test
+    public void countsArrivalsLeftAtTheDrainDeadlineAsErrors() throws Exception {
+        // Answers after 3 s, so one worker gets through none of a 1 s burst within a 1 s drain
+        HttpServer slow = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        slow.setExecutor(Executors.newCachedThreadPool());
+        slow.createContext("/", exchange -> {
+            try {
+                Thread.sleep(3000);
+                exchange.sendResponseHeaders(200, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        slow.start();
+        try {
+            LoadGenerator generator = new LoadGenerator("http://localhost:" + slow.getAddress().getPort(),
+                    List.of(new LoadGenerator.Trader("trader", "token")), "wallet:1", () -> 10.0);
+            LoadGenerator.Report report = generator.run(20, 1, 0, 1, 1);
+
+            // 20 arrivals scheduled: one interrupted in flight, the rest never sent
+            assertEquals(20, report.requests());
+            assertEquals(1.0, report.errorRate());
+            // Over the 1 s window, not the 2 s it took to give up on them
+            assertEquals(1.0, report.seconds);
+            assertEquals(20.0, report.rows.get(0).throughput());
+        } finally {
+            slow.stop(0);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.carboncredit.load;
+
+import com.carboncredit.model.Wallet;
+import com.carboncredit.service.PricingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the full application against a throwaway MongoDB, signs in synthetic
+ * traders and drives the configured request mix at them. Run with
+ * {@code mvn -Pload test}; knobs live in application-load.properties and can be
+ * overridden with -Dload.rate=..., -Dload.concurrency=... and so on.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("load")
+public class LoadGeneratorLoadTest {
+
+    private static final String PASSWORD = "load-test-password";
+    private static final double STARTING_BALANCE = 10_000_000;
+    private static final double STARTING_CREDITS = 100_000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PricingService pricingService;
+
+    @Value("${load.users:50}")
+    private int users = 50;
+
+    @Value("${load.rate:200}")
+    private double rate = 200;
+
+    @Value("${load.concurrency:32}")
+    private int concurrency = 32;
+
+    @Value("${load.warmup-seconds:10}")
+    private int warmupSeconds = 10;
+
+    @Value("${load.duration-seconds:60}")
+    private int durationSeconds = 60;
+
+    @Value("${load.mix:place:30,cancel:10,wallet:25,dashboard:15,usage:20}")
+    private String mix = "place:30,cancel:10,wallet:25,dashboard:15,usage:20";
+
+    @Value("${load.drain-seconds:120}")
+    private int drainSeconds = 120;
+
+    @Value("${load.max-error-rate:0.01}")
+    private double maxErrorRate = 0.01;
+
+    @Value("${load.report-file:target/load-report.csv}")
+    private String reportFile = "target/load-report.csv";
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> EmbeddedMongo.uri(System.getProperty("load.mongo-uri"),
+                System.getProperty("load.mongo-version", "7.0")));
+    }
+
+    @Test
+    public void sustainsMixedTraffic() throws Exception {
+        List<LoadGenerator.Trader> traders = signInTraders();
+
+        LoadGenerator generator = new LoadGenerator("http://localhost:" + port, traders, mix,
+                pricingService::getLastTradedPrice);
+        LoadGenerator.Report report = generator.run(rate, concurrency, warmupSeconds, durationSeconds,
+                drainSeconds);
+
+        System.out.printf("%nLoad: %d users, %s, concurrency %d, mix %s%n", users,
+                rate > 0 ? rate + " req/s open loop" : "closed loop", concurrency, mix);
+        System.out.print(report.toTable());
+        report.writeCsv(Path.of(reportFile));
+
+        assertTrue(report.requests() > 0, "No requests were issued");
+        assertTrue(report.errorRate() <= maxErrorRate,
+                "Error rate " + report.errorRate() + " exceeds " + maxErrorRate);
+    }
+
+    private List<LoadGenerator.Trader> signInTraders() throws Exception {
+        long run = System.currentTimeMillis();
+        List<LoadGenerator.Trader> traders = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String email = "load-" + run + "-" + i + "@example.com";
+            HttpResponse<String> signup = post("/api/auth/signup", Map.of("name", "Load Trader " + i,
+                    "email", email, "password", PASSWORD, "organization", "Load Test", "country", "Nowhere"));
+            assertEquals(200, signup.statusCode(), "Signup failed: " + signup.body());
+
+            HttpResponse<String> signin = post("/api/auth/signin", Map.of("email", email, "password", PASSWORD));
+            assertEquals(200, signin.statusCode(), "Signin failed: " + signin.body());
+            JsonNode jwt = objectMapper.readTree(signin.body());
+            String userId = jwt.path("id").asText();
+
+            // Fund both sides so orders are limited by the book, not by balances
+            mongoTemplate.upsert(Query.query(Criteria.where("userId").is(userId)),
+                    new Update().set("balance", STARTING_BALANCE).set("carbonCreditBalance", STARTING_CREDITS),
+                    Wallet.class);
+            traders.add(new LoadGenerator.Trader(userId, jwt.path("token").asText()));
+        }
+        return traders;
+    }
+
+    private HttpResponse<String> post(String path, Map<String, String> body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,57 @@
+package com.carboncredit.config;
+
+import com.carboncredit.service.MongoCommandMonitor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wires {@link MongoCommandMonitor} into the MongoClient and tags every
+ * repository call with its "Repository.method" origin, so driver commands can be
+ * attributed to the Spring Data method that issued them.
+ */
+@Configuration
+public class MongoMonitoringConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoCommandMonitorCustomizer(MongoCommandMonitor monitor) {
+        return settings -> settings.addCommandListener(monitor);
+    }
+
+    // Static: post-processors are created before regular beans
+    @Bean
+    public static BeanPostProcessor repositoryOriginPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(
+                                    originInterceptor(repositoryInformation.getRepositoryInterface()))));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static MethodInterceptor originInterceptor(Class<?> repositoryInterface) {
+        Map<Method, String> origins = new ConcurrentHashMap<>();
+        String prefix = repositoryInterface.getSimpleName() + ".";
+        return invocation -> {
+            String origin = origins.computeIfAbsent(invocation.getMethod(), method -> prefix + method.getName());
+            String previous = MongoCommandMonitor.enterOrigin(origin);
+            try {
+                return invocation.proceed();
+            } finally {
+                MongoCommandMonitor.restoreOrigin(previous);
+            }
+        };
+    }
+}
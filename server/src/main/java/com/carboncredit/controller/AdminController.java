@@ -2,19 +2,35 @@ package com.carboncredit.controller;
 
 import com.carboncredit.model.*;
 import com.carboncredit.repository.*;
+import com.carboncredit.security.AuthAdmissionService;
 import com.carboncredit.security.UserDetailsImpl;
+import com.carboncredit.service.AuditLogWriter;
+import com.carboncredit.service.CreditIssuanceService;
+import com.carboncredit.service.FlightRecorderService;
+import com.carboncredit.service.Keyset;
+import com.carboncredit.service.LatencyRecorder;
+import com.carboncredit.service.MarketActivityService;
+import com.carboncredit.service.MongoCommandMonitor;
+import com.carboncredit.service.OrderRateLimiter;
+import com.carboncredit.service.PlatformStatsCache;
+import com.carboncredit.service.StreamingListWriter;
+import com.carboncredit.service.UserActivityService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -22,6 +38,11 @@ import java.util.*;
 @RequestMapping({ "/api/admin", "/admin" })
 public class AdminController {
 
+    private static final Keyset<Verification> VERIFICATION_KEYSET = Keyset.of("createdAt", Sort.Direction.DESC,
+            Verification::getCreatedAt, Verification::getId);
+
+    private static final Keyset<User> USER_KEYSET = Keyset.byId(Sort.Direction.ASC, User::getId);
+
     @Autowired
     private ProjectRepository projectRepository;
 
@@ -40,6 +61,39 @@ public class AdminController {
     @Autowired
     private TradeRepository tradeRepository;
 
+    @Autowired
+    private UserActivityService userActivityService;
+
+    @Autowired
+    private MarketActivityService marketActivityService;
+
+    @Autowired
+    private PlatformStatsCache platformStatsCache;
+
+    @Autowired
+    private StreamingListWriter streamingListWriter;
+
+    @Autowired
+    private CreditIssuanceService creditIssuanceService;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
+    @Autowired
+    private AuthAdmissionService authAdmissionService;
+
+    @Autowired
+    private OrderRateLimiter orderRateLimiter;
+
+    @Autowired
+    private LatencyRecorder latencyRecorder;
+
+    @Autowired
+    private MongoCommandMonitor mongoCommandMonitor;
+
+    @Autowired
+    private FlightRecorderService flightRecorderService;
+
     @PostMapping("/verify/{projectId}")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public ResponseEntity<?> verifyProject(@PathVariable String projectId,
@@ -74,20 +128,138 @@ public class AdminController {
                     verification.setStatus(Verification.VerificationStatus.valueOf(status));
                     verification.setCompletedAt(LocalDateTime.now());
                     verificationRepository.save(verification);
+                    auditLogWriter.record(AuditLog.ActionType.VERIFY, "Project", projectId,
+                            "Verification " + status);
 
                     Map<String, Object> response = new HashMap<>();
                     response.put("project", updatedProject);
                     response.put("verification", verification);
+                    if (updatedProject.getStatus() == Project.ProjectStatus.VERIFIED
+                            && !updatedProject.isCreditsGenerated()) {
+                        response.put("creditIssuanceJob",
+                                creditIssuanceService.submit(List.of(projectId), userDetails.getId()));
+                    }
 
                     return ResponseEntity.ok(response);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // Queues credit issuance for the given projects, or for every verified project
+    // still waiting for its credits when no ids are passed
+    @PostMapping("/credits/issue")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<CreditIssuanceService.Job> issueCredits(
+            @RequestBody(required = false) Map<String, List<String>> requestBody) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+
+        List<String> projectIds = requestBody != null ? requestBody.get("projectIds") : null;
+        CreditIssuanceService.Job job = projectIds == null || projectIds.isEmpty()
+                ? creditIssuanceService.submitPending(userDetails.getId())
+                : creditIssuanceService.submit(projectIds, userDetails.getId());
+        return ResponseEntity.accepted().body(job);
+    }
+
+    // Sign-in admission (hashing pool, rate limits) and BCrypt timing
+    @GetMapping("/auth/stats")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> getAuthStats() {
+        return authAdmissionService.getStats();
+    }
+
+    // Marketplace requests rejected by the per-user budgets, by action
+    @GetMapping("/marketplace/rate-limit/stats")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> getMarketplaceRateLimitStats() {
+        return orderRateLimiter.getStats();
+    }
+
+    // Order entry and matching latency percentiles per stage (HdrHistogram)
+    @GetMapping("/latency")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> getLatency() {
+        return latencyRecorder.getSnapshot();
+    }
+
+    @PostMapping("/latency/reset")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> resetLatency() {
+        latencyRecorder.reset();
+        return ResponseEntity.ok().build();
+    }
+
+    // Mongo commands by issuing repository method and collection, most total time first
+    @GetMapping("/mongo/commands")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public List<Map<String, Object>> getMongoCommands() {
+        return mongoCommandMonitor.getTopCommands();
+    }
+
+    // Bounded JFR recording with the application's trade/settlement/ingestion/auth events
+    @PostMapping("/jfr/start")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> startRecording(@RequestParam(required = false) String settings,
+            @RequestParam(required = false) Integer durationMinutes) {
+        try {
+            return ResponseEntity.ok(flightRecorderService.start(settings, durationMinutes));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/jfr/stop")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> stopRecording() {
+        try {
+            return ResponseEntity.ok(flightRecorderService.stop());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/jfr")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> getRecordingStatus() {
+        return flightRecorderService.getStatus();
+    }
+
+    // Downloads the recording; a snapshot so far if it is still running
+    @GetMapping("/jfr/recording")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public void downloadRecording(HttpServletResponse response) throws IOException {
+        if ("NONE".equals(flightRecorderService.getStatus().get("state"))) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Error: No recording to download");
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"carbon-credit-" + LocalDate.now() + ".jfr\"");
+        flightRecorderService.dump(response.getOutputStream());
+    }
+
+    @GetMapping("/jobs/credit-issuance")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public List<CreditIssuanceService.Job> getCreditIssuanceJobs() {
+        return creditIssuanceService.getJobs();
+    }
+
+    @GetMapping("/jobs/credit-issuance/{id}")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<CreditIssuanceService.Job> getCreditIssuanceJob(@PathVariable String id) {
+        return creditIssuanceService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Streams all verifications; pass limit/after for newest-first keyset pages
     @GetMapping("/verifications")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
-    public List<Verification> getAllVerifications() {
-        return verificationRepository.findAll();
+    public void getAllVerifications(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, HttpServletResponse response) throws IOException {
+        streamingListWriter.write(response, Verification.class, null, VERIFICATION_KEYSET, after, limit);
     }
 
     @GetMapping("/verifications/{id}")
@@ -99,10 +271,12 @@ public class AdminController {
     }
 
     // User management
+    // Streams all users; pass limit/after for keyset pages in id order
     @GetMapping("/users")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    public void getAllUsers(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, HttpServletResponse response) throws IOException {
+        streamingListWriter.write(response, User.class, null, USER_KEYSET, after, limit);
     }
 
     @PutMapping("/users/{id}")
@@ -110,6 +284,11 @@ public class AdminController {
     public ResponseEntity<User> updateUser(@PathVariable String id, @RequestBody User userDetails) {
         return userRepository.findById(id)
                 .map(user -> {
+                    // Outstanding tokens carry the old email and roles
+                    if (!Objects.equals(user.getEmail(), userDetails.getEmail())
+                            || !Objects.equals(user.getRoles(), userDetails.getRoles())) {
+                        user.setTokenVersion(user.getTokenVersion() + 1);
+                    }
                     user.setName(userDetails.getName());
                     user.setEmail(userDetails.getEmail());
                     user.setOrganization(userDetails.getOrganization());
@@ -120,6 +299,19 @@ public class AdminController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // Invalidates every token issued to the user so far
+    @PostMapping("/users/{id}/revoke-tokens")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> revokeUserTokens(@PathVariable String id) {
+        return userRepository.findById(id)
+                .map(user -> {
+                    user.setTokenVersion(user.getTokenVersion() + 1);
+                    userRepository.save(user);
+                    return ResponseEntity.ok().build();
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @DeleteMapping("/users/{id}")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public ResponseEntity<?> deleteUser(@PathVariable String id) {
@@ -135,7 +327,9 @@ public class AdminController {
     @PostMapping("/credits")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public CarbonCredit createCredit(@RequestBody CarbonCredit credit) {
-        return carbonCreditRepository.save(credit);
+        CarbonCredit saved = carbonCreditRepository.save(credit);
+        userActivityService.recordCredit(saved.getOwnerId(), 1);
+        return saved;
     }
 
     @PutMapping("/credits/{id}")
@@ -143,6 +337,10 @@ public class AdminController {
     public ResponseEntity<CarbonCredit> updateCredit(@PathVariable String id, @RequestBody CarbonCredit creditDetails) {
         return carbonCreditRepository.findById(id)
                 .map(credit -> {
+                    if (!Objects.equals(credit.getOwnerId(), creditDetails.getOwnerId())) {
+                        userActivityService.recordCredit(credit.getOwnerId(), -1);
+                        userActivityService.recordCredit(creditDetails.getOwnerId(), 1);
+                    }
                     credit.setProjectId(creditDetails.getProjectId());
                     credit.setQuantity(creditDetails.getQuantity());
                     credit.setVintageYear(creditDetails.getVintageYear());
@@ -160,6 +358,7 @@ public class AdminController {
         return carbonCreditRepository.findById(id)
                 .map(credit -> {
                     carbonCreditRepository.delete(credit);
+                    userActivityService.recordCredit(credit.getOwnerId(), -1);
                     return ResponseEntity.ok().build();
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -169,31 +368,19 @@ public class AdminController {
     @GetMapping("/stats")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public ResponseEntity<?> getSystemStats() {
+        PlatformStatsCache.Snapshot snapshot = platformStatsCache.get();
+
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalUsers", userRepository.count());
-        stats.put("totalProjects", projectRepository.count());
-        stats.put("totalCredits", carbonCreditRepository.count());
-        stats.put("totalTrades", tradeRepository.count());
-
-        // Calculate average trade price
-        List<Trade> allTrades = tradeRepository.findAll();
-        double avgPrice = allTrades.stream()
-                .mapToDouble(Trade::getPricePerUnit)
-                .average()
-                .orElse(0.0);
-        stats.put("averageTradePrice", avgPrice);
-
-        // Calculate Market Demand (Active Buy Orders)
-        List<Order> buyOrders = orderRepository.findByTypeAndStatus(Order.OrderType.BUY, Order.OrderStatus.PENDING);
-        buyOrders.addAll(orderRepository.findByTypeAndStatus(Order.OrderType.BUY, Order.OrderStatus.PARTIAL));
-        double marketDemand = buyOrders.stream().mapToDouble(Order::getQuantity).sum();
-        stats.put("marketDemand", marketDemand);
-
-        // Calculate Market Supply (Active Sell Orders)
-        List<Order> sellOrders = orderRepository.findByTypeAndStatus(Order.OrderType.SELL, Order.OrderStatus.PENDING);
-        sellOrders.addAll(orderRepository.findByTypeAndStatus(Order.OrderType.SELL, Order.OrderStatus.PARTIAL));
-        double marketSupply = sellOrders.stream().mapToDouble(Order::getQuantity).sum();
-        stats.put("marketSupply", marketSupply);
+        stats.put("totalUsers", snapshot.getTotalUsers());
+        stats.put("totalProjects", snapshot.getTotalProjects());
+        stats.put("totalCredits", snapshot.getTotalCredits());
+        stats.put("totalTrades", snapshot.getTotalTrades());
+        stats.put("averageTradePrice", snapshot.getAverageTradePrice());
+
+        // Market Demand (Active Buy Orders) and Supply (Active Sell Orders)
+        stats.put("marketDemand", snapshot.getMarketDemand());
+        stats.put("marketSupply", snapshot.getMarketSupply());
+        stats.put("snapshotAgeMs", snapshot.getAgeMs());
 
         return ResponseEntity.ok(stats);
     }
@@ -208,36 +395,7 @@ public class AdminController {
         LocalDate endDate = (to != null) ? to : LocalDate.now();
         LocalDate startDate = (from != null) ? from : endDate.minusMonths(6);
 
-        List<String> labels = new ArrayList<>();
-        List<Long> tradesData = new ArrayList<>();
-        List<Long> creditsData = new ArrayList<>();
-
-        // Iterate by month
-        LocalDate current = startDate;
-        while (!current.isAfter(endDate)) {
-            LocalDateTime startOfMonth = current.withDayOfMonth(1).atStartOfDay();
-            LocalDateTime endOfMonth = current.withDayOfMonth(current.lengthOfMonth()).atTime(LocalTime.MAX);
-
-            // Format label (e.g., "Jan 2023")
-            labels.add(current.format(DateTimeFormatter.ofPattern("MMM yyyy")));
-
-            // Count trades
-            long tradesCount = tradeRepository.countByExecutedAtBetween(startOfMonth, endOfMonth);
-            tradesData.add(tradesCount);
-
-            // Count new credits
-            long creditsCount = carbonCreditRepository.countByIssuedAtBetween(startOfMonth, endOfMonth);
-            creditsData.add(creditsCount);
-
-            current = current.plusMonths(1);
-        }
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("labels", labels);
-        response.put("trades", tradesData);
-        response.put("newCredits", creditsData);
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(marketActivityService.getMarketActivity(startDate, endDate));
     }
 
     // Override records (with audit log)
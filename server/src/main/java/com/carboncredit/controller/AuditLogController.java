@@ -1,80 +1,139 @@
 package com.carboncredit.controller;
 
 import com.carboncredit.model.AuditLog;
-import com.carboncredit.repository.AuditLogRepository;
 import com.carboncredit.security.UserDetailsImpl;
+import com.carboncredit.service.AuditLogArchiver;
+import com.carboncredit.service.AuditLogPartitions;
+import com.carboncredit.service.AuditLogWriter;
+import com.carboncredit.service.Keyset;
+import com.carboncredit.service.StreamingListWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping({ "/api/audit-logs", "/audit-logs" })
 public class AuditLogController {
 
+    private static final Keyset<AuditLog> AUDIT_LOG_KEYSET = Keyset.of("timestamp", Sort.Direction.DESC,
+            AuditLog::getTimestamp, AuditLog::getId);
+
+    @Autowired
+    private AuditLogPartitions auditLogPartitions;
+
     @Autowired
-    private AuditLogRepository auditLogRepository;
+    private AuditLogArchiver auditLogArchiver;
 
+    @Autowired
+    private StreamingListWriter streamingListWriter;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
+    // Streams all hot audit logs (monthly partitions, newest first); pass limit/after for keyset pages
     @GetMapping
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
-    public List<AuditLog> getAllAuditLogs() {
-        return auditLogRepository.findAll();
+    public void getAllAuditLogs(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, HttpServletResponse response) throws IOException {
+        streamingListWriter.write(response, AuditLog.class, auditLogPartitions.hotCollections(), null,
+                AUDIT_LOG_KEYSET, after, limit, null);
     }
 
     @GetMapping("/user")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
-    public List<AuditLog> getUserAuditLogs() {
+    public void getUserAuditLogs(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, HttpServletResponse response) throws IOException {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        return auditLogRepository.findByUserId(userDetails.getId());
+        streamingListWriter.write(response, AuditLog.class, auditLogPartitions.hotCollections(),
+                Criteria.where("userId").is(userDetails.getId()), AUDIT_LOG_KEYSET, after, limit, null);
     }
 
     @GetMapping("/entity/{entityType}/{entityId}")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
-    public List<AuditLog> getAuditLogsByEntity(@PathVariable String entityType, @PathVariable String entityId) {
-        return auditLogRepository.findByEntityTypeAndEntityId(entityType, entityId);
+    public void getAuditLogsByEntity(@PathVariable String entityType, @PathVariable String entityId,
+            @RequestParam(required = false) String after, @RequestParam(required = false) Integer limit,
+            HttpServletResponse response) throws IOException {
+        streamingListWriter.write(response, AuditLog.class, auditLogPartitions.hotCollections(),
+                Criteria.where("entityType").is(entityType).and("entityId").is(entityId),
+                AUDIT_LOG_KEYSET, after, limit, null);
     }
 
     @PostMapping
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public AuditLog createAuditLog(@RequestBody AuditLog auditLog) {
-        return auditLogRepository.save(auditLog);
+        auditLogPartitions.insert(List.of(auditLog));
+        return auditLog;
     }
 
-    // Helper method to log actions (can be called from other controllers)
-    public void logAction(AuditLog.ActionType action, String entityType, String entityId, String details) {
+    // Archived (closed) months, newest first
+    @GetMapping("/archive")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public List<AuditLogArchiver.Segment> getArchivedSegments() throws IOException {
+        return auditLogArchiver.listSegments();
+    }
+
+    // Streams one archived month (YYYY-MM) as NDJSON, optionally filtered by user or entity
+    @GetMapping("/archive/{month}")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public void scanArchivedSegment(@PathVariable String month, @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String entityType, @RequestParam(required = false) String entityId,
+            HttpServletResponse response) throws IOException {
+        Optional<AuditLogArchiver.Segment> segment;
         try {
-            AuditLog auditLog = new AuditLog();
-
-            // Try to get current user
-            try {
-                Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-                if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl) {
-                    UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-                    auditLog.setUserId(userDetails.getId());
-                }
-            } catch (Exception e) {
-                // If we can't get user info, log without it
-                auditLog.setUserId("system");
-            }
-
-            auditLog.setAction(action);
-            auditLog.setEntityType(entityType);
-            auditLog.setEntityId(entityId);
-            auditLog.setDetails(details);
-            // In a real implementation, we would get the actual IP address
-            auditLog.setIpAddress("127.0.0.1");
-
-            auditLogRepository.save(auditLog);
-        } catch (Exception e) {
-            // Log error but don't fail the main operation
-            System.err.println("Failed to log audit action: " + e.getMessage());
+            segment = auditLogArchiver.getSegment(YearMonth.parse(month));
+        } catch (DateTimeParseException e) {
+            writeError(response, HttpStatus.BAD_REQUEST, "Error: Month must be YYYY-MM");
+            return;
+        }
+        if (segment.isEmpty()) {
+            writeError(response, HttpStatus.NOT_FOUND, "Error: No archived audit logs for " + month);
+            return;
+        }
+        if (!auditLogArchiver.verify(segment.get())) {
+            writeError(response, HttpStatus.CONFLICT, "Error: Archived segment for " + month + " failed checksum verification");
+            return;
         }
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        auditLogArchiver.scan(segment.get(), userId, entityType, entityId, response.getOutputStream());
+    }
+
+    // Write-behind entries waiting, written, dropped and failed
+    @GetMapping("/stats")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> getAuditLogStats() {
+        return auditLogWriter.getStats();
+    }
+
+    // Helper method to log actions (can be called from other controllers).
+    // Queued for the background writer, so it adds no latency to the caller
+    public void logAction(AuditLog.ActionType action, String entityType, String entityId, String details) {
+        auditLogWriter.record(action, entityType, entityId, details);
+    }
+
+    private static void writeError(HttpServletResponse response, HttpStatus status, String message)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
     }
-}
\ No newline at end of file
+}
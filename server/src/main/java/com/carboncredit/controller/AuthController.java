@@ -8,9 +8,12 @@ import com.carboncredit.payload.response.JwtResponse;
 import com.carboncredit.payload.response.MessageResponse;
 import com.carboncredit.repository.UserRepository;
 import com.carboncredit.repository.WalletRepository;
+import com.carboncredit.security.AuthAdmissionService;
 import com.carboncredit.security.JwtUtils;
 import com.carboncredit.security.UserDetailsImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -19,6 +22,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import java.util.HashSet;
 import java.util.List;
@@ -49,13 +53,20 @@ public class AuthController {
     @Autowired
     JwtUtils jwtUtils;
 
+    @Autowired
+    AuthAdmissionService authAdmissionService;
+
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+            HttpServletRequest request) {
         logger.info("Attempting to authenticate user: {}", loginRequest.getEmail());
 
         try {
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+            // BCrypt runs on the bounded hashing pool, not on this request thread's budget
+            Authentication authentication = authAdmissionService.execute(loginRequest.getEmail(),
+                    request.getRemoteAddr(), () -> authenticationManager.authenticate(
+                            new UsernamePasswordAuthenticationToken(loginRequest.getEmail(),
+                                    loginRequest.getPassword())));
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
             String jwt = jwtUtils.generateJwtToken(authentication);
@@ -71,6 +82,9 @@ public class AuthController {
                     userDetails.getId(),
                     userDetails.getUsername(),
                     roles));
+        } catch (AuthAdmissionService.Throttled e) {
+            logger.warn("Sign-in throttled for user: {} ({})", loginRequest.getEmail(), e.getMessage());
+            return tooManyRequests(e);
         } catch (Exception e) {
             logger.error("Authentication failed for user: {}", loginRequest.getEmail(), e);
             return ResponseEntity.badRequest().body(new MessageResponse("Error: Authentication failed!"));
@@ -78,18 +92,30 @@ public class AuthController {
     }
 
     @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
+    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest,
+            HttpServletRequest request) {
         if (userRepository.existsByEmail(signUpRequest.getEmail())) {
             return ResponseEntity
                     .badRequest()
                     .body(new MessageResponse("Error: Email is already in use!"));
         }
 
+        String encodedPassword;
+        try {
+            encodedPassword = authAdmissionService.execute(signUpRequest.getEmail(), request.getRemoteAddr(),
+                    () -> encoder.encode(signUpRequest.getPassword()));
+        } catch (AuthAdmissionService.Throttled e) {
+            return tooManyRequests(e);
+        } catch (Exception e) {
+            logger.error("Password hashing failed for user: {}", signUpRequest.getEmail(), e);
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Registration failed!"));
+        }
+
         // Create new user's account
         User user = new User();
         user.setName(signUpRequest.getName());
         user.setEmail(signUpRequest.getEmail());
-        user.setPassword(encoder.encode(signUpRequest.getPassword()));
+        user.setPassword(encodedPassword);
         user.setOrganization(signUpRequest.getOrganization());
         user.setCountry(signUpRequest.getCountry());
 
@@ -121,6 +147,12 @@ public class AuthController {
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
 
+    private ResponseEntity<?> tooManyRequests(AuthAdmissionService.Throttled e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: " + e.getMessage() + ", please retry later"));
+    }
+
     @GetMapping("/debug/users")
     public ResponseEntity<?> debugUsers() {
         long count = userRepository.count();
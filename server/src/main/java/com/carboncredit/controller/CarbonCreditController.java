@@ -1,25 +1,50 @@
 package com.carboncredit.controller;
 
 import com.carboncredit.model.CarbonCredit;
+import com.carboncredit.model.CreditBlock;
 import com.carboncredit.repository.CarbonCreditRepository;
+import com.carboncredit.service.CreditSearchService;
+import com.carboncredit.service.Keyset;
+import com.carboncredit.service.SerialBlockRegistry;
+import com.carboncredit.service.StreamingListWriter;
+import com.carboncredit.service.UserActivityService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping({ "/api/credits", "/credits" })
 public class CarbonCreditController {
+    private static final Keyset<CarbonCredit> CREDIT_KEYSET = Keyset.of("issuedAt", Sort.Direction.DESC,
+            CarbonCredit::getIssuedAt, CarbonCredit::getId);
+
     @Autowired
     private CarbonCreditRepository carbonCreditRepository;
 
+    @Autowired
+    private UserActivityService userActivityService;
+
+    @Autowired
+    private CreditSearchService creditSearchService;
+
+    @Autowired
+    private StreamingListWriter streamingListWriter;
+
+    @Autowired
+    private SerialBlockRegistry serialBlockRegistry;
+
+    // Streams all credits; pass limit/after for newest-first keyset pages
     @GetMapping
-    public List<CarbonCredit> getAllCredits() {
-        return carbonCreditRepository.findAll();
+    public void getAllCredits(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, HttpServletResponse response) throws IOException {
+        streamingListWriter.write(response, CarbonCredit.class, null, CREDIT_KEYSET, after, limit);
     }
 
     @GetMapping("/{id}")
@@ -49,6 +74,25 @@ public class CarbonCreditController {
         return carbonCreditRepository.findByOwnerId(userDetails.getId());
     }
 
+    // Who holds a serial, and whether (and by which retirement) it was retired
+    @GetMapping("/serials/{projectId}/{vintageYear}/{serial}")
+    public ResponseEntity<CreditBlock> getSerialBlock(@PathVariable String projectId, @PathVariable int vintageYear,
+            @PathVariable long serial) {
+        return serialBlockRegistry.findBySerial(projectId, vintageYear, serial)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/serials/my")
+    @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
+    public List<CreditBlock> getMySerialBlocks() {
+        org.springframework.security.core.Authentication authentication = org.springframework.security.core.context.SecurityContextHolder
+                .getContext().getAuthentication();
+        com.carboncredit.security.UserDetailsImpl userDetails = (com.carboncredit.security.UserDetailsImpl) authentication
+                .getPrincipal();
+        return serialBlockRegistry.getActiveBlocks(userDetails.getId());
+    }
+
     @GetMapping("/status/{status}")
     public List<CarbonCredit> getCreditsByStatus(@PathVariable CarbonCredit.CreditStatus status) {
         return carbonCreditRepository.findByStatus(status);
@@ -57,7 +101,9 @@ public class CarbonCreditController {
     @PostMapping
     @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
     public CarbonCredit createCredit(@RequestBody CarbonCredit credit) {
-        return carbonCreditRepository.save(credit);
+        CarbonCredit saved = carbonCreditRepository.save(credit);
+        userActivityService.recordCredit(saved.getOwnerId(), 1);
+        return saved;
     }
 
     @PutMapping("/{id}")
@@ -103,16 +149,26 @@ public class CarbonCreditController {
             @RequestParam(required = false) CarbonCredit.CreditStatus status,
             @RequestParam(required = false) Double minPrice,
             @RequestParam(required = false) Double maxPrice) {
+        return creditSearchService.find(projectId, vintageYear, status, minPrice, maxPrice);
+    }
 
-        List<CarbonCredit> allCredits = carbonCreditRepository.findAll();
-
-        return allCredits.stream()
-                .filter(credit -> projectId == null || credit.getProjectId().equals(projectId))
-                .filter(credit -> vintageYear == null || credit.getVintageYear() == vintageYear)
-                .filter(credit -> status == null || credit.getStatus() == status)
-                .filter(credit -> minPrice == null || credit.getPricePerUnit() >= minPrice)
-                .filter(credit -> maxPrice == null || credit.getPricePerUnit() <= maxPrice)
-                .collect(Collectors.toList());
+    // Paged search: the same filters; pass the previous response's nextCursor as "after"
+    @GetMapping("/search/page")
+    public ResponseEntity<?> searchCreditsPage(
+            @RequestParam(required = false) String projectId,
+            @RequestParam(required = false) Integer vintageYear,
+            @RequestParam(required = false) CarbonCredit.CreditStatus status,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String fields) {
+        try {
+            return ResponseEntity.ok(creditSearchService.search(projectId, vintageYear, status, minPrice, maxPrice,
+                    after, size, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @Autowired
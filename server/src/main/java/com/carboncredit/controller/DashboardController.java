@@ -3,15 +3,31 @@ package com.carboncredit.controller;
 import com.carboncredit.model.*;
 import com.carboncredit.repository.*;
 import com.carboncredit.security.UserDetailsImpl;
+import com.carboncredit.service.PlatformStatsCache;
+import com.mongodb.MongoExecutionTimeoutException;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -42,18 +58,35 @@ public class DashboardController {
     @Autowired
     private com.carboncredit.service.PricingService pricingService;
 
+    @Autowired
+    private com.carboncredit.service.UserActivityService userActivityService;
+
+    @Autowired
+    private PlatformStatsCache platformStatsCache;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Upper bound on /user-stats latency; sections still running are reported as TIMEOUT
+    @Value("${dashboard.user-stats.deadline-ms:2000}")
+    private long userStatsDeadlineMs = 2000;
+
+    private final ExecutorService dashboardExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
     @GetMapping("/stats")
     @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
     public ResponseEntity<?> getDashboardStats() {
         try {
             DashboardStats stats = new DashboardStats();
+            PlatformStatsCache.Snapshot snapshot = platformStatsCache.get();
 
-            // Overall platform statistics
-            stats.setTotalProjects(projectRepository.count());
-            stats.setTotalCredits(carbonCreditRepository.count());
-            stats.setTotalUsers(userRepository.count());
-            stats.setTotalTrades((int) tradeRepository.count());
-            stats.setTotalRetirements((int) retirementRepository.count());
+            // Overall platform statistics (served from the refresh-ahead cache)
+            stats.setTotalProjects(snapshot.getTotalProjects());
+            stats.setTotalCredits(snapshot.getTotalCredits());
+            stats.setTotalUsers(snapshot.getTotalUsers());
+            stats.setTotalTrades((int) snapshot.getTotalTrades());
+            stats.setTotalRetirements((int) snapshot.getTotalRetirements());
+            stats.setSnapshotAgeMs(snapshot.getAgeMs());
 
             // Credits by status - REMOVED
             // Map<String, Long> creditsByStatus = new HashMap<>();
@@ -64,8 +97,7 @@ public class DashboardController {
             // stats.setCreditsByStatus(creditsByStatus);
 
             // Recent trades
-            List<Trade> recentTrades = tradeRepository.findTop10ByOrderByExecutedAtDesc();
-            stats.setRecentTrades(recentTrades);
+            stats.setRecentTrades(snapshot.getRecentTrades());
 
             // Top projects by credits issued - REMOVED
             // List<Project> projects = projectRepository.findAll();
@@ -95,44 +127,48 @@ public class DashboardController {
             String userId = userDetails.getId();
             UserDashboardStats stats = new UserDashboardStats();
 
+            // Each section is an independent Mongo lookup, so issue them all at once
+            // and bound the whole request by a single deadline. Counters come from the
+            // materialized user_activity document rather than loading full lists.
+            // Cancelling a future does not stop its query, so each query also carries
+            // the time left as maxTimeMS and the server abandons it at the deadline.
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(userStatsDeadlineMs);
+            CompletableFuture<Wallet> walletF = submit(() -> mongoTemplate.findOne(
+                    new Query(Criteria.where("userId").is(userId)).maxTime(timeLeft(deadline)), Wallet.class));
+            CompletableFuture<Double> priceF = submit(() -> pricingService.getLastTradedPrice(timeLeft(deadline)));
+            CompletableFuture<UserActivity> activityF = submit(
+                    () -> userActivityService.getActivity(userId, timeLeft(deadline)));
+            CompletableFuture<List<Order>> ordersF = activityF.thenApplyAsync(
+                    activity -> loadRecentOrders(activity, timeLeft(deadline)), dashboardExecutor);
+
+            Map<String, String> sections = new LinkedHashMap<>();
+
             // User's wallet balance
-            Wallet wallet = walletRepository.findByUserId(userId);
-            double creditBalance = 0.0;
-            if (wallet != null) {
-                creditBalance = wallet.getCarbonCreditBalance();
-                stats.setCreditBalance(creditBalance);
-            } else {
-                stats.setCreditBalance(0.0);
-            }
+            Wallet wallet = await(walletF, deadline, "wallet", sections);
+            double creditBalance = (wallet != null) ? wallet.getCarbonCreditBalance() : 0.0;
+            stats.setCreditBalance(creditBalance);
 
             // Calculate Portfolio Value
-            double lastTradedPrice = pricingService.getLastTradedPrice();
-            stats.setPortfolioValue(creditBalance * lastTradedPrice);
-
-            // User's projects (if issuer)
-            List<Project> userProjects = projectRepository.findByIssuerId(userId);
-            stats.setUserProjectsCount(userProjects.size());
-
-            // User's credits
-            List<CarbonCredit> userCredits = carbonCreditRepository.findByOwnerId(userId);
-            stats.setUserCreditsCount(userCredits.size());
-
-            // User's trades
-            List<Trade> userTrades = new ArrayList<>();
-            userTrades.addAll(tradeRepository.findByBuyerId(userId));
-            userTrades.addAll(tradeRepository.findBySellerId(userId));
-            stats.setUserTradesCount(userTrades.size());
+            Double lastTradedPrice = await(priceF, deadline, "portfolioValue", sections);
+            if (lastTradedPrice != null) {
+                stats.setPortfolioValue(creditBalance * lastTradedPrice);
+            }
 
-            // User's retirements
-            List<Retirement> userRetirements = retirementRepository.findByUserId(userId);
-            stats.setUserRetirementsCount(userRetirements.size());
+            // User's projects, credits, trades and retirements
+            UserActivity activity = await(activityF, deadline, "activity", sections);
+            if (activity != null) {
+                stats.setUserProjectsCount((int) activity.getProjectsCount());
+                stats.setUserCreditsCount((int) activity.getCreditsCount());
+                stats.setUserTradesCount((int) activity.getTradesCount());
+                stats.setUserRetirementsCount((int) activity.getRetirementsCount());
+            }
 
             // Recent user activity
-            List<Order> userOrders = orderRepository.findByUserId(userId);
-            stats.setRecentOrders(userOrders.stream()
-                    .sorted((o1, o2) -> o2.getCreatedAt().compareTo(o1.getCreatedAt()))
-                    .limit(5)
-                    .collect(Collectors.toList()));
+            List<Order> recentOrders = await(ordersF, deadline, "recentOrders", sections);
+            stats.setRecentOrders(recentOrders != null ? recentOrders : new ArrayList<>());
+
+            stats.setSections(sections);
+            stats.setPartial(sections.values().stream().anyMatch(status -> !"OK".equals(status)));
 
             return ResponseEntity.ok(stats);
         } catch (Exception e) {
@@ -140,6 +176,62 @@ public class DashboardController {
         }
     }
 
+    @PreDestroy
+    public void shutdownExecutor() {
+        dashboardExecutor.shutdownNow();
+    }
+
+    private List<Order> loadRecentOrders(UserActivity activity, Duration maxTime) {
+        if (activity == null || activity.getRecentOrderIds().isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Order> orders = mongoTemplate.find(
+                new Query(Criteria.where("_id").in(activity.getRecentOrderIds())).maxTime(maxTime), Order.class);
+        orders.sort((o1, o2) -> o2.getCreatedAt().compareTo(o1.getCreatedAt()));
+        return orders;
+    }
+
+    // At least 1ms: maxTimeMS of 0 means no limit
+    private static Duration timeLeft(long deadlineNanos) {
+        return Duration.ofNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(1), deadlineNanos - System.nanoTime()));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> lookup) {
+        return CompletableFuture.supplyAsync(lookup, dashboardExecutor);
+    }
+
+    // Waits for a section until the shared deadline; records OK, TIMEOUT or ERROR
+    // for it and returns null if it did not complete successfully. A query the
+    // server stopped at its maxTimeMS, or a section depending on one cancelled at
+    // the deadline, counts as TIMEOUT.
+    private <T> T await(CompletableFuture<T> future, long deadlineNanos, String section,
+            Map<String, String> sections) {
+        try {
+            T value = future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            sections.put(section, "OK");
+            return value;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            sections.put(section, "TIMEOUT");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sections.put(section, "TIMEOUT");
+        } catch (ExecutionException e) {
+            sections.put(section, isTimeout(e.getCause()) ? "TIMEOUT" : "ERROR");
+        }
+        return null;
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoExecutionTimeoutException || cause instanceof QueryTimeoutException
+                    || cause instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // @GetMapping("/market-data") - REMOVED
     // public ResponseEntity<?> getMarketData() { ... }
 
@@ -151,6 +243,7 @@ public class DashboardController {
         private int totalTrades;
         private int totalRetirements;
         private List<Trade> recentTrades;
+        private long snapshotAgeMs;
         // private Map<String, Long> creditsByStatus; // REMOVED
         // private Map<String, Double> topProjectsByCredits; // REMOVED
 
@@ -203,6 +296,14 @@ public class DashboardController {
             this.recentTrades = recentTrades;
         }
 
+        public long getSnapshotAgeMs() {
+            return snapshotAgeMs;
+        }
+
+        public void setSnapshotAgeMs(long snapshotAgeMs) {
+            this.snapshotAgeMs = snapshotAgeMs;
+        }
+
         // Getters and setters for removed fields commented out
         // public Map<String, Long> getCreditsByStatus() { return creditsByStatus; }
         // public void setCreditsByStatus(Map<String, Long> creditsByStatus) {
@@ -221,6 +322,8 @@ public class DashboardController {
         private int userTradesCount;
         private int userRetirementsCount;
         private List<Order> recentOrders;
+        private Map<String, String> sections;
+        private boolean partial;
 
         // Getters and setters
         public double getCreditBalance() {
@@ -278,6 +381,22 @@ public class DashboardController {
         public void setRecentOrders(List<Order> recentOrders) {
             this.recentOrders = recentOrders;
         }
+
+        public Map<String, String> getSections() {
+            return sections;
+        }
+
+        public void setSections(Map<String, String> sections) {
+            this.sections = sections;
+        }
+
+        public boolean isPartial() {
+            return partial;
+        }
+
+        public void setPartial(boolean partial) {
+            this.partial = partial;
+        }
     }
 
     // MarketData class removed
@@ -0,0 +1,129 @@
+package com.carboncredit.controller;
+
+import com.carboncredit.service.ExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+// Compliance exports. Responses are written as they are read (chunked, no
+// Content-Length), gzip-encoded when the client's Accept-Encoding allows it, e.g.
+// GET /admin/export/trades?format=csv&from=2024-01-01&to=2024-03-31&userId=...
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping({ "/api/admin/export", "/admin/export" })
+public class ExportController {
+
+    @Autowired
+    private ExportService exportService;
+
+    @GetMapping("/trades")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public void exportTrades(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String userId,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        export("trades", format, request, response,
+                (out, f) -> exportService.exportTrades(out, f, from, to, userId));
+    }
+
+    @GetMapping("/retirements")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public void exportRetirements(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String userId,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        export("retirements", format, request, response,
+                (out, f) -> exportService.exportRetirements(out, f, from, to, userId));
+    }
+
+    // Trades and retirements interleaved by time
+    @GetMapping("/ledger")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public void exportLedger(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String userId,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        export("ledger", format, request, response,
+                (out, f) -> exportService.exportLedger(out, f, from, to, userId));
+    }
+
+    private void export(String name, String formatParam, HttpServletRequest request, HttpServletResponse response,
+            ExportWriter writer) throws IOException {
+        ExportService.Format format;
+        try {
+            format = ExportService.Format.parse(formatParam);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write(e.getMessage());
+            return;
+        }
+
+        response.setContentType(format.getContentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + name + "-" + LocalDate.now() + "." + format.getExtension() + "\"");
+
+        if (!acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            writer.write(response.getOutputStream(), format);
+            return;
+        }
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        try (GZIPOutputStream gzip = new GZIPOutputStream(response.getOutputStream(), 64 * 1024)) {
+            writer.write(gzip, format);
+        }
+    }
+
+    // True if the header accepts gzip, by name or through *, with a non-zero q
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String token = parts[0].trim();
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0.0;
+                    }
+                }
+            }
+            if (token.equalsIgnoreCase("gzip")) {
+                gzip = quality;
+            } else if (token.equals("*")) {
+                any = quality;
+            }
+        }
+        Double quality = (gzip != null) ? gzip : any;
+        return quality != null && quality > 0;
+    }
+
+    @FunctionalInterface
+    private interface ExportWriter {
+        void write(OutputStream out, ExportService.Format format) throws IOException;
+    }
+}
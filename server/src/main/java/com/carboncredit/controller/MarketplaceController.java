@@ -4,14 +4,21 @@ import com.carboncredit.model.Order;
 import com.carboncredit.model.Trade;
 import com.carboncredit.repository.OrderRepository;
 import com.carboncredit.repository.TradeRepository;
+import com.carboncredit.service.Keyset;
+import com.carboncredit.service.LatencyRecorder;
 import com.carboncredit.service.OrderMatchingService;
 import com.carboncredit.service.PricingService;
+import com.carboncredit.service.StreamingListWriter;
+import com.carboncredit.service.UserActivityService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,6 +28,9 @@ import java.util.stream.Collectors;
 @RequestMapping({ "/api/marketplace", "/marketplace" })
 public class MarketplaceController {
 
+    private static final Keyset<Trade> TRADE_KEYSET = Keyset.of("executedAt", Sort.Direction.DESC,
+            Trade::getExecutedAt, Trade::getId);
+
     @Autowired
     private OrderRepository orderRepository;
 
@@ -36,6 +46,15 @@ public class MarketplaceController {
     @Autowired
     private com.carboncredit.service.WalletService walletService;
 
+    @Autowired
+    private UserActivityService userActivityService;
+
+    @Autowired
+    private StreamingListWriter streamingListWriter;
+
+    @Autowired
+    private LatencyRecorder latencyRecorder;
+
     // --- Orders (Buy & Sell) ---
 
     @GetMapping("/orders")
@@ -81,6 +100,7 @@ public class MarketplaceController {
     @PreAuthorize("hasAuthority('ROLE_USER')")
     @Transactional
     public ResponseEntity<?> createOrder(@RequestBody Order order) {
+        long start = System.nanoTime();
         org.springframework.security.core.Authentication authentication = org.springframework.security.core.context.SecurityContextHolder
                 .getContext().getAuthentication();
         com.carboncredit.security.UserDetailsImpl userDetails = (com.carboncredit.security.UserDetailsImpl) authentication
@@ -102,6 +122,7 @@ public class MarketplaceController {
                     "Price must be within ±10%% of the last traded price (%.2f). Allowed range: %.2f - %.2f",
                     lastTradedPrice, minPrice, maxPrice));
         }
+        long stageStart = latencyRecorder.record(LatencyRecorder.Stage.VALIDATION, start);
 
         try {
             if (order.getType() == Order.OrderType.SELL) {
@@ -119,16 +140,21 @@ public class MarketplaceController {
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Insufficient funds or credits to place order.");
         }
+        stageStart = latencyRecorder.record(LatencyRecorder.Stage.RESERVATION, stageStart);
 
         order.setStatus(Order.OrderStatus.PENDING);
         order.setTotalAmount(order.getQuantity() * order.getPricePerUnit());
         order.setCreatedAt(LocalDateTime.now());
 
         Order savedOrder = orderRepository.save(order);
+        userActivityService.recordOrder(savedOrder.getUserId(), savedOrder.getId());
+        latencyRecorder.record(LatencyRecorder.Stage.PERSISTENCE, stageStart);
 
-        // Add to In-Memory Order Book and Trigger Matching
+        // Add to In-Memory Order Book and Trigger Matching (book insertion and
+        // matching are recorded there)
         orderMatchingService.addOrder(savedOrder);
 
+        latencyRecorder.record(LatencyRecorder.Stage.ORDER_TOTAL, start);
         return ResponseEntity.ok(savedOrder);
     }
 
@@ -167,16 +193,20 @@ public class MarketplaceController {
 
                     order.setStatus(Order.OrderStatus.CANCELLED);
                     order.setCompletedAt(LocalDateTime.now());
-                    return ResponseEntity.ok(orderRepository.save(order));
+                    Order cancelled = orderRepository.save(order);
+                    userActivityService.recordOrderCancelled(cancelled.getUserId());
+                    return ResponseEntity.ok(cancelled);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
     // --- Trades ---
 
+    // Streams all trades; pass limit/after for newest-first keyset pages
     @GetMapping("/trades")
-    public List<Trade> getAllTrades() {
-        return tradeRepository.findAll();
+    public void getAllTrades(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, HttpServletResponse response) throws IOException {
+        streamingListWriter.write(response, Trade.class, null, TRADE_KEYSET, after, limit);
     }
 
     @GetMapping("/trades/buyer/{buyerId}")
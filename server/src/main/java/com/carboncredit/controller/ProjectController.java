@@ -1,35 +1,60 @@
 package com.carboncredit.controller;
 
+import com.carboncredit.model.AuditLog;
 import com.carboncredit.model.Project;
 import com.carboncredit.repository.ProjectRepository;
 import com.carboncredit.security.UserDetailsImpl;
+import com.carboncredit.service.AuditLogWriter;
+import com.carboncredit.service.CreditIssuanceService;
+import com.carboncredit.service.Keyset;
+import com.carboncredit.service.OwnerLookupService;
+import com.carboncredit.service.ProjectSearchService;
+import com.carboncredit.service.StreamingListWriter;
+import com.carboncredit.service.UserActivityService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping({ "/api/projects", "/projects" })
 public class ProjectController {
 
+    static final String CREDIT_ISSUANCE_JOB_HEADER = "X-Credit-Issuance-Job";
+
+    private static final Keyset<Project> PROJECT_KEYSET = Keyset.of("createdAt", Sort.Direction.DESC,
+            Project::getCreatedAt, Project::getId);
+
     @Autowired
     private ProjectRepository projectRepository;
 
     @Autowired
-    private com.carboncredit.repository.UserRepository userRepository;
+    private OwnerLookupService ownerLookupService;
+
+    @Autowired
+    private UserActivityService userActivityService;
 
+    @Autowired
+    private ProjectSearchService projectSearchService;
+
+    @Autowired
+    private StreamingListWriter streamingListWriter;
+
+    // Streams all projects; pass limit/after for newest-first keyset pages
     @GetMapping
     @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
-    public List<Project> getAllProjects() {
-        List<Project> projects = projectRepository.findAll();
-        projects.forEach(this::populateOwner);
-        return projects;
+    public void getAllProjects(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, HttpServletResponse response) throws IOException {
+        streamingListWriter.write(response, Project.class, null, PROJECT_KEYSET, after, limit, this::populateOwners);
     }
 
     @GetMapping("/{id}")
@@ -56,6 +81,7 @@ public class ProjectController {
         project.setStatus(Project.ProjectStatus.PENDING);
 
         Project savedProject = projectRepository.save(project);
+        userActivityService.recordProject(savedProject.getIssuerId(), 1);
         populateOwner(savedProject);
         return savedProject;
     }
@@ -80,7 +106,10 @@ public class ProjectController {
     }
 
     @Autowired
-    private com.carboncredit.service.CreditService creditService;
+    private CreditIssuanceService creditIssuanceService;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
 
     @PutMapping("/{id}/verify")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
@@ -89,6 +118,7 @@ public class ProjectController {
         return projectRepository.findById(id)
                 .map(project -> {
                     String status = statusUpdate.get("status");
+                    boolean issueCredits = false;
                     if (status != null) {
                         try {
                             System.out.println("Verifying project: " + id + " to status: " + status);
@@ -100,14 +130,11 @@ public class ProjectController {
 
                                 if (!project.isCreditsGenerated()) {
                                     System.out.println(
-                                            "Project " + id + " verified. Crediting user with carbon credits...");
+                                            "Project " + id + " verified. Queuing credit issuance...");
 
                                     // Generate credits for ALL approved projects
                                     // Admin approval means the user is authorized to emit/offset this amount
-                                    creditService.generateCredits(project.getId(), project.getTotalCarbonCredits(),
-                                            project.getIssuerId());
-
-                                    project.setCreditsGenerated(true);
+                                    issueCredits = true;
                                 } else {
                                     System.out.println(
                                             "Project " + id + " verified, but credits were already generated.");
@@ -122,6 +149,13 @@ public class ProjectController {
                     }
                     Project savedProject = projectRepository.save(project);
                     populateOwner(savedProject);
+                    auditLogWriter.record(AuditLog.ActionType.VERIFY, "Project", id, "Status set to " + status);
+                    if (issueCredits) {
+                        // Queued only once the VERIFIED status is stored; the job claims
+                        // creditsGenerated itself, so a repeated verify is harmless
+                        CreditIssuanceService.Job job = creditIssuanceService.submit(List.of(id), currentUserId());
+                        return ResponseEntity.ok().header(CREDIT_ISSUANCE_JOB_HEADER, job.getId()).body(savedProject);
+                    }
                     return ResponseEntity.ok(savedProject);
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -151,6 +185,7 @@ public class ProjectController {
         return projectRepository.findById(id)
                 .map(project -> {
                     projectRepository.delete(project);
+                    userActivityService.recordProject(project.getIssuerId(), -1);
                     return ResponseEntity.ok().build();
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -163,40 +198,61 @@ public class ProjectController {
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
         List<Project> projects = projectRepository.findByIssuerId(userDetails.getId());
-        projects.forEach(this::populateOwner);
+        populateOwners(projects);
         return projects;
     }
 
     // Search and filter endpoints
+    // q: ranked full-text search over name/description/location
+    // name, location: case-insensitive prefix match
     @GetMapping("/search")
     @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
     public List<Project> searchProjects(
+            @RequestParam(required = false) String q,
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String location,
             @RequestParam(required = false) Project.ProjectType type,
             @RequestParam(required = false) Project.ProjectStatus status) {
 
-        List<Project> allProjects = projectRepository.findAll();
+        List<Project> projects = projectSearchService.find(q, name, location, type, status);
+        populateOwners(projects);
+        return projects;
+    }
+
+    // Paged search: the same filters, plus total and type/status facet counts
+    @GetMapping("/search/page")
+    @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> searchProjectsPage(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String location,
+            @RequestParam(required = false) Project.ProjectType type,
+            @RequestParam(required = false) Project.ProjectStatus status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        Map<String, Object> result = projectSearchService.search(q, name, location, type, status, page, size);
 
-        List<Project> filteredProjects = allProjects.stream()
-                .filter(project -> name == null || project.getName().toLowerCase().contains(name.toLowerCase()))
-                .filter(project -> location == null
-                        || project.getLocation().toLowerCase().contains(location.toLowerCase()))
-                .filter(project -> type == null || project.getType() == type)
-                .filter(project -> status == null || project.getStatus() == status)
-                .collect(Collectors.toList());
+        @SuppressWarnings("unchecked")
+        List<Project> content = (List<Project>) result.get("content");
+        populateOwners(content);
+        return result;
+    }
 
-        filteredProjects.forEach(this::populateOwner);
-        return filteredProjects;
+    // Same identifier AdminController records as requestedBy
+    private String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl userDetails
+                ? userDetails.getId()
+                : null;
     }
 
     private void populateOwner(Project project) {
-        if (project.getIssuerId() != null) {
-            userRepository.findById(project.getIssuerId()).ifPresent(user -> {
-                // Create a safe user object to avoid exposing password/roles if not needed
-                // Or just rely on JsonIgnore in User model (which exists for password)
-                project.setOwner(user);
-            });
-        }
+        populateOwners(List.of(project));
+    }
+
+    // One batched lookup per page instead of one findById per project
+    private void populateOwners(List<Project> projects) {
+        ownerLookupService.populate(projects, Project::getIssuerId, Project::setOwner);
     }
 }
\ No newline at end of file
@@ -1,25 +1,42 @@
 package com.carboncredit.controller;
 
+import com.carboncredit.model.AuditLog;
 import com.carboncredit.model.Retirement;
 import com.carboncredit.repository.RetirementRepository;
 import com.carboncredit.repository.CarbonCreditRepository;
 import com.carboncredit.repository.WalletRepository;
 import com.carboncredit.security.UserDetailsImpl;
+import com.carboncredit.service.AuditLogWriter;
+import com.carboncredit.service.Keyset;
+import com.carboncredit.service.RetiredSerialIndex;
+import com.carboncredit.service.RetirementCertificateService;
+import com.carboncredit.service.SerialBlockRegistry;
+import com.carboncredit.service.StreamingListWriter;
+import com.carboncredit.service.UserActivityService;
 import com.carboncredit.service.WalletService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping({ "/api/retirements", "/retirements" })
 public class RetirementController {
 
+    private static final Keyset<Retirement> RETIREMENT_KEYSET = Keyset.of("retiredAt", Sort.Direction.DESC,
+            Retirement::getRetiredAt, Retirement::getId);
+
     @Autowired
     private RetirementRepository retirementRepository;
 
@@ -29,6 +46,24 @@ public class RetirementController {
     @Autowired
     private WalletService walletService;
 
+    @Autowired
+    private UserActivityService userActivityService;
+
+    @Autowired
+    private StreamingListWriter streamingListWriter;
+
+    @Autowired
+    private SerialBlockRegistry serialBlockRegistry;
+
+    @Autowired
+    private RetiredSerialIndex retiredSerialIndex;
+
+    @Autowired
+    private RetirementCertificateService retirementCertificateService;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
     @PostMapping
     @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
     public ResponseEntity<?> retireCredits(@RequestBody RetirementRequest request) {
@@ -42,6 +77,13 @@ public class RetirementController {
                 return ResponseEntity.badRequest().body("Quantity must be greater than 0");
             }
 
+            // Refuse a double retirement before anything is debited
+            try {
+                serialBlockRegistry.checkRetirable(userId, request.getQuantity());
+            } catch (RetiredSerialIndex.AlreadyRetired e) {
+                return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+            }
+
             // Deduct credits from unified wallet balance atomically
             try {
                 walletService.retireCredits(userId, request.getQuantity());
@@ -49,8 +91,20 @@ public class RetirementController {
                 return ResponseEntity.badRequest().body("Insufficient credits in wallet");
             }
 
+            // The id is needed for the serials before the record is saved
+            String retirementId = new ObjectId().toHexString();
+            List<String> serialRanges;
+            try {
+                serialRanges = serialBlockRegistry.recordRetirement(userId, request.getQuantity(), retirementId);
+            } catch (RetiredSerialIndex.AlreadyRetired e) {
+                // Lost a race with another retirement after the check: give the credits back
+                walletService.updateBalance(userId, 0.0, request.getQuantity());
+                return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+            }
+
             // Create retirement record
             Retirement retirement = new Retirement();
+            retirement.setId(retirementId);
             retirement.setUserId(userId);
             // retirement.setCreditId(request.getCreditId()); // Removed
             retirement.setQuantity(request.getQuantity());
@@ -58,8 +112,14 @@ public class RetirementController {
             retirement.setRetirementReason(request.getRetirementReason());
             retirement
                     .setCertificateUrl("https://carbon-credit-platform.com/certificates/" + System.currentTimeMillis());
+            if (!serialRanges.isEmpty()) {
+                retirement.setSerialRanges(serialRanges);
+            }
 
             Retirement savedRetirement = retirementRepository.save(retirement);
+            userActivityService.recordRetirement(userId);
+            auditLogWriter.record(AuditLog.ActionType.RETIRE, "Retirement", savedRetirement.getId(),
+                    "Retired " + request.getQuantity() + " credits for " + request.getBeneficiaryName());
 
             return ResponseEntity.ok(savedRetirement);
         } catch (Exception e) {
@@ -76,10 +136,55 @@ public class RetirementController {
         return retirementRepository.findByUserId(userDetails.getId());
     }
 
+    // Streams all retirements; pass limit/after for newest-first keyset pages
     @GetMapping("/all")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
-    public List<Retirement> getAllRetirements() {
-        return retirementRepository.findAll();
+    public void getAllRetirements(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit, HttpServletResponse response) throws IOException {
+        streamingListWriter.write(response, Retirement.class, null, RETIREMENT_KEYSET, after, limit);
+    }
+
+    @GetMapping("/{id}/certificate")
+    @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> getCertificate(@PathVariable String id) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        boolean isAdmin = userDetails.getAuthorities().stream()
+                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN"));
+
+        return retirementRepository.findById(id)
+                .filter(retirement -> isAdmin || userDetails.getId().equals(retirement.getUserId()))
+                .map(retirement -> ResponseEntity.ok(retirementCertificateService.issue(retirement)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/certificates/verify")
+    @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> verifyCertificate(@RequestBody Map<String, Object> certificate) {
+        return retirementCertificateService.verify(certificate);
+    }
+
+    // Answered from the retired serial bitmaps
+    @GetMapping("/serials/{projectId}/{vintageYear}/{serial}")
+    @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> isSerialRetired(@PathVariable String projectId, @PathVariable int vintageYear,
+            @PathVariable long serial) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("retired", retiredSerialIndex.isRetired(projectId, vintageYear, serial));
+        return response;
+    }
+
+    @GetMapping("/serials/{projectId}/{vintageYear}/count")
+    @PreAuthorize("hasAuthority('ROLE_USER') or hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> countRetiredSerials(@PathVariable String projectId, @PathVariable int vintageYear,
+            @RequestParam long from, @RequestParam long to) {
+        if (!RetiredSerialIndex.isValidRange(from, to)) {
+            return ResponseEntity.badRequest().body("Error: serial range must satisfy 0 <= from <= to <= 4294967295");
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("retired", retiredSerialIndex.countRetired(projectId, vintageYear, from, to));
+        response.put("total", to - from + 1);
+        return ResponseEntity.ok(response);
     }
 
     // Request DTO
@@ -2,15 +2,25 @@ package com.carboncredit.controller;
 
 import com.carboncredit.model.UsageConfig;
 import com.carboncredit.model.UsageEntry;
+import com.carboncredit.security.UserDetailsImpl;
+import com.carboncredit.service.UsageAlertService;
 import com.carboncredit.service.UsageService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping({ "/api/usage", "/usage" })
@@ -18,6 +28,7 @@ import java.util.Map;
 public class UsageController {
 
     private final UsageService usageService;
+    private final UsageAlertService usageAlertService;
 
     @GetMapping("/summary")
     public ResponseEntity<Map<String, Object>> getSummary(@AuthenticationPrincipal UserDetails userDetails) {
@@ -44,6 +55,16 @@ public class UsageController {
         return ResponseEntity.ok(usageService.getUsageSummary(getUserId(userDetails)));
     }
 
+    /**
+     * Push channel for usage alerts (net credits going negative, burn-rate
+     * spikes), evaluated as readings are ingested so clients need not poll
+     * /summary.
+     */
+    @GetMapping(value = "/alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts(@AuthenticationPrincipal UserDetails userDetails) {
+        return usageAlertService.subscribe(getUserId(userDetails));
+    }
+
     @GetMapping("/recent")
     public ResponseEntity<List<UsageEntry>> getRecent(@AuthenticationPrincipal UserDetails userDetails) {
         return ResponseEntity.ok(usageService.getRecentUsage(getUserId(userDetails)));
@@ -65,11 +86,40 @@ public class UsageController {
         return ResponseEntity.ok(usageService.saveUsageConfig(getUserId(userDetails), config));
     }
 
+    /**
+     * Bulk ingestion for gateway devices that aggregate meters for many users.
+     * Accepts NDJSON (one usage record per line, each carrying userId or email),
+     * optionally gzip-compressed via Content-Encoding, and streams it straight
+     * into UsageService without buffering the body.
+     */
+    @PostMapping(value = "/ingest", consumes = { "application/x-ndjson", "application/json", "text/plain" })
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<?> ingestBatch(HttpServletRequest request) {
+        try (InputStream body = openBody(request)) {
+            return ResponseEntity.ok(usageService.ingestNdjson(body));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Error reading batch: " + e.getMessage());
+        }
+    }
+
+    private InputStream openBody(HttpServletRequest request) throws IOException {
+        InputStream in = request.getInputStream();
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (encoding != null && encoding.toLowerCase().contains("gzip")) {
+            return new GZIPInputStream(in, 8192);
+        }
+        return in;
+    }
+
     // Helper to get userId.
     // I will inject UserRepository to find the user by email (username).
     private final com.carboncredit.repository.UserRepository userRepository;
 
     private String getUserId(UserDetails userDetails) {
+        // JWT-authenticated principals already carry the id
+        if (userDetails instanceof UserDetailsImpl) {
+            return ((UserDetailsImpl) userDetails).getId();
+        }
         return userRepository.findByEmail(userDetails.getUsername())
                 .map(com.carboncredit.model.User::getId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -1,14 +1,21 @@
 package com.carboncredit.model;
 
 import lombok.Data;
-import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Data
+// New entries go to monthly partitions (see AuditLogPartitions); audit_logs holds older ones
 @Document(collection = "audit_logs")
+@CompoundIndexes({
+    @CompoundIndex(name = "timestamp_id", def = "{ 'timestamp': -1, '_id': -1 }"),
+    @CompoundIndex(name = "user_timestamp", def = "{ 'userId': 1, 'timestamp': -1 }"),
+    @CompoundIndex(name = "entity_timestamp", def = "{ 'entityType': 1, 'entityId': 1, 'timestamp': -1 }")
+})
 public class AuditLog {
     @Id
     private String id;
@@ -25,7 +32,8 @@ public class AuditLog {
     
     private String ipAddress;
     
-    @CreatedDate
+    // When the action happened; set when the entry is recorded, not when the
+    // write-behind queue gets to it
     private LocalDateTime timestamp;
     
     public enum ActionType {
@@ -3,12 +3,19 @@ package com.carboncredit.model;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Data
 @Document(collection = "carbon_credits")
+@CompoundIndexes({
+        @CompoundIndex(name = "status_vintage_price", def = "{ 'status': 1, 'vintageYear': 1, 'pricePerUnit': 1 }"),
+        @CompoundIndex(name = "project_status", def = "{ 'projectId': 1, 'status': 1 }"),
+        @CompoundIndex(name = "issued_at_id", def = "{ 'issuedAt': -1, '_id': -1 }")
+})
 public class CarbonCredit {
     @Id
     private String id;
@@ -23,7 +30,8 @@ public class CarbonCredit {
     
     private int vintageYear;
     
-    private double pricePerUnit;
+    // Null until the credit is priced
+    private Double pricePerUnit;
     
     private CreditStatus status;
     
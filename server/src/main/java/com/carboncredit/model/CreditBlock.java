@@ -0,0 +1,54 @@
+package com.carboncredit.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A contiguous range of credit serials [start, end] of one project and vintage,
+ * all held by the same owner in the same state. One serial is one tonne.
+ */
+@Data
+@Document(collection = "credit_blocks")
+@CompoundIndex(name = "project_vintage_start", def = "{ 'projectId': 1, 'vintageYear': 1, 'start': 1 }", unique = true)
+public class CreditBlock {
+    @Id
+    private String id;
+
+    private String projectId;
+
+    private int vintageYear;
+
+    private long start;
+
+    private long end;
+
+    private String ownerId;
+
+    private BlockStatus status;
+
+    private String retirementId;
+
+    // Set on blocks issued under an issuance id (see SerialBlockRegistry.issue);
+    // blocks of different issuances are never merged, so the id outlives splits
+    private String issuanceId;
+
+    private LocalDateTime updatedAt;
+
+    public long size() {
+        return end - start + 1;
+    }
+
+    // e.g. "64f1c2...-2024-000000001-000000500"
+    public String getSerialRange() {
+        return String.format("%s-%d-%09d-%09d", projectId, vintageYear, start, end);
+    }
+
+    public enum BlockStatus {
+        ACTIVE,
+        RETIRED
+    }
+}
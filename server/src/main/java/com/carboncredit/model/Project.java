@@ -1,15 +1,26 @@
 package com.carboncredit.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TextScore;
 
 import java.time.LocalDateTime;
 
 @Data
 @Document(collection = "projects")
+@CompoundIndexes({
+        @CompoundIndex(name = "type_status", def = "{ 'type': 1, 'status': 1 }"),
+        @CompoundIndex(name = "created_at_id", def = "{ 'createdAt': -1, '_id': -1 }")
+})
 public class Project {
     @org.springframework.data.annotation.Transient
     private User owner;
@@ -17,10 +28,16 @@ public class Project {
     @Id
     private String id;
 
+    // Text index (ranked search) plus case-insensitive index for prefix search
+    @TextIndexed(weight = 3)
+    @Indexed(name = "name_ci", collation = "{ 'locale': 'en', 'strength': 2 }")
     private String name;
 
+    @TextIndexed
     private String description;
 
+    @TextIndexed(weight = 2)
+    @Indexed(name = "location_ci", collation = "{ 'locale': 'en', 'strength': 2 }")
     private String location;
 
     private ProjectType type;
@@ -37,12 +54,21 @@ public class Project {
 
     private boolean creditsGenerated = false;
 
+    // Set while a credit issuance job holds the claim; a stale value means it died midway
+    @JsonIgnore
+    private LocalDateTime creditIssuanceStartedAt;
+
     @CreatedDate
     private LocalDateTime createdAt;
 
     @LastModifiedDate
     private LocalDateTime updatedAt;
 
+    // Relevance of a full-text search hit; not persisted
+    @TextScore
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Float score;
+
     public enum ProjectType {
         // Reducing Projects (Generate Credits)
         RENEWABLE_ENERGY,
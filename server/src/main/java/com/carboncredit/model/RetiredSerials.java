@@ -0,0 +1,30 @@
+package com.carboncredit.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Retired serials of one project/vintage as a serialized Roaring bitmap
+ * (see RetiredSerialIndex).
+ */
+@Data
+@Document(collection = "retired_serials")
+@CompoundIndex(name = "project_vintage", def = "{ 'projectId': 1, 'vintageYear': 1 }", unique = true)
+public class RetiredSerials {
+    @Id
+    private String id;
+
+    private String projectId;
+
+    private int vintageYear;
+
+    private byte[] bitmap;
+
+    private long retiredCount;
+
+    private LocalDateTime updatedAt;
+}
@@ -3,12 +3,15 @@ package com.carboncredit.model;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Document(collection = "retirements")
+@CompoundIndex(name = "retired_at_id", def = "{ 'retiredAt': -1, '_id': -1 }")
 public class Retirement {
     @Id
     private String id;
@@ -25,6 +28,9 @@ public class Retirement {
 
     private String certificateUrl;
 
+    // Serial ranges retired by this retirement (whole tonnes only)
+    private List<String> serialRanges;
+
     @CreatedDate
     private LocalDateTime retiredAt;
 }
\ No newline at end of file
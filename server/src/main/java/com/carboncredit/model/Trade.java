@@ -3,12 +3,14 @@ package com.carboncredit.model;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Data
 @Document(collection = "trades")
+@CompoundIndex(name = "executed_at_id", def = "{ 'executedAt': -1, '_id': -1 }")
 public class Trade {
     @Id
     private String id;
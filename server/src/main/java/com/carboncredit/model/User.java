@@ -36,6 +36,11 @@ public class User {
 
     private String website;
 
+    // Bumped whenever roles or email change (or sessions are revoked); tokens
+    // carrying an older version are rejected
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private long tokenVersion = 0;
+
     public enum Role {
         ROLE_ADMIN,
         ROLE_USER
@@ -0,0 +1,45 @@
+package com.carboncredit.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Materialized per-user activity counters, maintained by the write paths so
+ * the user dashboard can read them with a single point lookup instead of
+ * loading every project, credit, trade, retirement and order.
+ */
+@Data
+@Document(collection = "user_activity")
+public class UserActivity {
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private String userId;
+
+    private long projectsCount;
+
+    private long creditsCount;
+
+    private long tradesCount;
+
+    private long retirementsCount;
+
+    // Orders that were not cancelled
+    private long ordersCount;
+
+    // Newest first, capped (see UserActivityService.RECENT_ORDERS_LIMIT)
+    private List<String> recentOrderIds = new ArrayList<>();
+
+    // Bumped by every counter update, so a rebuild can tell it raced with one
+    private long revision;
+
+    // Null until the counters were first rebuilt; such a document is not read
+    private LocalDateTime rebuiltAt;
+}
@@ -3,12 +3,14 @@ package com.carboncredit.model;
 import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Data
 @Document(collection = "verifications")
+@CompoundIndex(name = "created_at_id", def = "{ 'createdAt': -1, '_id': -1 }")
 public class Verification {
     @Id
     private String id;
@@ -13,6 +13,7 @@ public class Wallet {
     @Id
     private String id;
 
+    // Uniquely indexed by WalletService.ensureUserIdIndex, after merging old duplicates
     private String userId;
 
     private double balance; // Monetary balance
@@ -41,7 +42,8 @@ public class Wallet {
             SALE,
             CREDIT_PURCHASE,
             CREDIT_SALE,
-            CREDIT_RETIREMENT
+            CREDIT_RETIREMENT,
+            CREDIT_ISSUANCE
         }
     }
 }
\ No newline at end of file
@@ -3,9 +3,5 @@ package com.carboncredit.repository;
 import com.carboncredit.model.AuditLog;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-import java.util.List;
-
 public interface AuditLogRepository extends MongoRepository<AuditLog, String> {
-    List<AuditLog> findByUserId(String userId);
-    List<AuditLog> findByEntityTypeAndEntityId(String entityType, String entityId);
 }
\ No newline at end of file
@@ -10,6 +10,8 @@ public interface CarbonCreditRepository extends MongoRepository<CarbonCredit, St
 
     List<CarbonCredit> findByProjectId(String projectId);
 
+    long countByOwnerId(String ownerId);
+
     List<CarbonCredit> findByStatus(CarbonCredit.CreditStatus status);
 
     long countByStatus(CarbonCredit.CreditStatus status);
@@ -0,0 +1,7 @@
+package com.carboncredit.repository;
+
+import com.carboncredit.model.CreditBlock;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface CreditBlockRepository extends MongoRepository<CreditBlock, String> {
+}
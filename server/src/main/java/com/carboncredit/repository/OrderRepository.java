@@ -7,6 +7,9 @@ import java.util.List;
 
 public interface OrderRepository extends MongoRepository<Order, String> {
     List<Order> findByUserId(String userId);
+    long countByUserId(String userId);
+    long countByUserIdAndStatusNot(String userId, Order.OrderStatus status);
+    List<Order> findTop5ByUserIdOrderByCreatedAtDesc(String userId);
     List<Order> findByType(Order.OrderType type);
     List<Order> findByStatus(Order.OrderStatus status);
     List<Order> findByTypeAndStatus(Order.OrderType type, Order.OrderStatus status);
@@ -8,4 +8,5 @@ import java.util.List;
 public interface ProjectRepository extends MongoRepository<Project, String> {
     List<Project> findByIssuerId(String issuerId);
     List<Project> findByStatus(Project.ProjectStatus status);
+    long countByIssuerId(String issuerId);
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import java.util.List;
 
 public interface RetirementRepository extends MongoRepository<Retirement, String> {
     List<Retirement> findByUserId(String userId);
+    long countByUserId(String userId);
     // List<Retirement> findByCreditId(String creditId); // Removed as creditId was
     // removed from Retirement model
 }
\ No newline at end of file
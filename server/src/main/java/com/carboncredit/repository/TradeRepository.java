@@ -14,6 +14,10 @@ public interface TradeRepository extends MongoRepository<Trade, String> {
 
     List<Trade> findBySellOrderId(String sellOrderId);
 
+    long countByBuyerId(String buyerId);
+
+    long countBySellerId(String sellerId);
+
     List<Trade> findTop10ByOrderByExecutedAtDesc();
 
     List<Trade> findByBuyerIdOrSellerId(String buyerId, String sellerId);
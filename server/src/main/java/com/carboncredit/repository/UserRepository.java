@@ -3,9 +3,12 @@ package com.carboncredit.repository;
 import com.carboncredit.model.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByEmail(String email);
+    List<User> findByEmailIn(Collection<String> emails);
     Boolean existsByEmail(String email);
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package com.carboncredit.security;
+
+import com.carboncredit.service.TokenBuckets;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for sign-in and sign-up, the only places that run BCrypt.
+ *
+ * Each attempt first takes a token from a per-account and a per-IP bucket, then
+ * runs on a small dedicated pool with a bounded queue. The pool caps how much
+ * CPU hashing can take from marketplace traffic; once it and its queue are full,
+ * further attempts fail fast with {@link Throttled} (a 429) instead of piling
+ * up on request threads.
+ */
+@Component
+public class AuthAdmissionService {
+    private static final Logger logger = LoggerFactory.getLogger(AuthAdmissionService.class);
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Value("${auth.hashing.threads:2}")
+    private int threads = 2;
+
+    @Value("${auth.hashing.queue-size:32}")
+    private int queueSize = 32;
+
+    // Upper bound on queue wait plus hashing before the caller gives up
+    @Value("${auth.hashing.timeout-ms:5000}")
+    private long timeoutMs = 5000;
+
+    @Value("${auth.rate-limit.account.capacity:10}")
+    private int accountCapacity = 10;
+
+    @Value("${auth.rate-limit.account.per-minute:5}")
+    private int accountPerMinute = 5;
+
+    @Value("${auth.rate-limit.ip.capacity:30}")
+    private int ipCapacity = 30;
+
+    @Value("${auth.rate-limit.ip.per-minute:30}")
+    private int ipPerMinute = 30;
+
+    @Value("${auth.rate-limit.max-keys:100000}")
+    private int maxKeys = 100000;
+
+    private ThreadPoolExecutor executor;
+    private TokenBuckets accountBuckets;
+    private TokenBuckets ipBuckets;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread thread = new Thread(r, "auth-hashing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        accountBuckets = new TokenBuckets(accountCapacity, accountPerMinute, maxKeys);
+        ipBuckets = new TokenBuckets(ipCapacity, ipPerMinute, maxKeys);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs a hashing task for the given account and client IP on the hashing pool
+     * and waits for its result.
+     *
+     * @throws Throttled if a rate limit is exceeded or the pool is saturated
+     */
+    public <T> T execute(String account, String clientIp, Callable<T> task) throws Exception {
+        long waitMs = Math.max(
+                account != null ? accountBuckets.tryAcquire(account.toLowerCase(Locale.ROOT)) : 0,
+                clientIp != null ? ipBuckets.tryAcquire(clientIp) : 0);
+        if (waitMs > 0) {
+            rateLimited.increment();
+            throw new Throttled("Too many sign-in attempts", waitMs);
+        }
+
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Auth hashing pool saturated ({} queued), rejecting attempt", executor.getQueue().size());
+            throw new Throttled("Sign-in is busy", 1000);
+        }
+        admitted.increment();
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.increment();
+            throw new Throttled("Sign-in is busy", 1000);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", queueSize);
+        stats.put("admitted", admitted.sum());
+        stats.put("rateLimited", rateLimited.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("timedOut", timedOut.sum());
+        if (passwordEncoder instanceof TimedPasswordEncoder) {
+            stats.putAll(((TimedPasswordEncoder) passwordEncoder).getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * The attempt was not admitted; the caller should answer 429 with Retry-After.
+     */
+    public static class Throttled extends RuntimeException {
+        private final long retryAfterMs;
+
+        public Throttled(String message, long retryAfterMs) {
+            super(message);
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public long getRetryAfterSeconds() {
+            return Math.max(1, (retryAfterMs + 999) / 1000);
+        }
+    }
+}
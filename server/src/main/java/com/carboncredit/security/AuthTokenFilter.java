@@ -1,5 +1,7 @@
 package com.carboncredit.security;
 
+import com.carboncredit.service.FlightRecorderEvents;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +25,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private TokenVersionService tokenVersionService;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
@@ -33,34 +38,67 @@ public class AuthTokenFilter extends OncePerRequestFilter {
 
         // Skip JWT check for auth endpoints
         if (path.startsWith("/auth") || path.startsWith("/api/auth")) {
-            logger.info("AuthTokenFilter: Skipping JWT check for auth endpoint: {}", path);
+            logger.debug("AuthTokenFilter: Skipping JWT check for auth endpoint: {}", path);
             filterChain.doFilter(request, response);
             return;
         }
 
+        FlightRecorderEvents.RequestAuthentication event = new FlightRecorderEvents.RequestAuthentication();
+        event.begin();
+        String outcome = "none";
+        String userId = null;
         try {
             String jwt = parseJwt(request);
-            logger.info("AuthTokenFilter: JWT parsed: {}", jwt);
             if (jwt != null) {
-                boolean isValid = jwtUtils.validateJwtToken(jwt);
-                logger.info("AuthTokenFilter: JWT valid: {}", isValid);
-                if (isValid) {
-                    String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                    logger.info("AuthTokenFilter: Username from JWT: {}", username);
-
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                    logger.info("AuthTokenFilter: Authentication set for user: {}", username);
+                outcome = "invalid";
+                // One verification (usually a cache hit) yields the claims; the token itself is never logged
+                Claims claims = jwtUtils.parseJwtToken(jwt);
+                logger.debug("AuthTokenFilter: JWT valid: {}", claims != null);
+                if (claims != null) {
+                    String username = claims.getSubject();
+                    logger.debug("AuthTokenFilter: Username from JWT: {}", username);
+
+                    UserDetails userDetails = jwtUtils.getUserDetailsFromClaims(claims);
+                    if (userDetails == null) {
+                        // Token issued before identity claims were added
+                        userDetails = userDetailsService.loadUserByUsername(username);
+                        outcome = "legacy";
+                    } else if (!tokenVersionService.isCurrent(((UserDetailsImpl) userDetails).getId(),
+                            ((UserDetailsImpl) userDetails).getTokenVersion())) {
+                        logger.info("AuthTokenFilter: Token for user {} has been revoked", username);
+                        userId = ((UserDetailsImpl) userDetails).getId();
+                        userDetails = null;
+                        outcome = "revoked";
+                    } else {
+                        outcome = "authenticated";
+                    }
+
+                    if (userDetails != null) {
+                        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                                userDetails, null, userDetails.getAuthorities());
+                        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                        SecurityContextHolder.getContext().setAuthentication(authentication);
+                        logger.debug("AuthTokenFilter: Authentication set for user: {}", username);
+                        if (userDetails instanceof UserDetailsImpl) {
+                            userId = ((UserDetailsImpl) userDetails).getId();
+                        }
+                    }
                 }
             } else {
-                logger.info("AuthTokenFilter: No JWT found in request");
+                logger.debug("AuthTokenFilter: No JWT found in request");
             }
         } catch (Exception e) {
+            outcome = "error";
             logger.error("Cannot set user authentication: {}", e);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.path = path;
+                event.userId = userId;
+                event.outcome = outcome;
+                event.commit();
+            }
         }
 
         filterChain.doFilter(request, response);
@@ -1,55 +1,182 @@
 package com.carboncredit.security;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.io.Decoders;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
-import java.util.Date;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+    // Identity claims, so authenticating a request needs no user lookup
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLES = "roles";
+    static final String CLAIM_TOKEN_VERSION = "ver";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
     @Value("${jwt.expirationMs}")
     private int jwtExpirationMs;
 
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private int verifiedCacheMaxSize = 10000;
+
+    // Built once from the (base64) secret and shared by signing and verification
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    // SHA-256 of the token -> claims of a token whose signature already checked out.
+    // Keyed by digest so raw tokens are not kept in memory; entries die at token expiry
+    private final Map<String, VerifiedToken> verifiedTokens = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+            return size() > verifiedCacheMaxSize;
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        signingKey = new SecretKeySpec(Decoders.BASE64.decode(jwtSecret), SignatureAlgorithm.HS512.getJcaName());
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
     public String generateJwtToken(Authentication authentication) {
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+        List<String> roles = userPrincipal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList());
 
         return Jwts.builder()
                 .setSubject((userPrincipal.getUsername()))
+                .claim(CLAIM_USER_ID, userPrincipal.getId())
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_TOKEN_VERSION, userPrincipal.getTokenVersion())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+        Claims claims = parseJwtToken(token);
+        return claims != null ? claims.getSubject() : null;
     }
 
-    public boolean validateJwtToken(String authToken) {
+    /**
+     * Verifies the token and returns its claims, or null if it is invalid or
+     * expired. Verified tokens are cached until they expire, so a client reusing
+     * its token costs one digest lookup instead of a signature check.
+     */
+    public Claims parseJwtToken(String token) {
+        if (token == null || token.isEmpty()) {
+            logger.error("JWT claims string is empty");
+            return null;
+        }
+        String digest = digest(token);
+        long now = System.currentTimeMillis();
+        synchronized (verifiedTokens) {
+            VerifiedToken cached = verifiedTokens.get(digest);
+            if (cached != null) {
+                if (now < cached.expiresAt) {
+                    return cached.claims;
+                }
+                verifiedTokens.remove(digest);
+                logger.error("JWT token is expired");
+                return null;
+            }
+        }
+
+        Claims claims;
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            return true;
+            claims = parser.parseClaimsJws(token).getBody();
         } catch (SignatureException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
+            return null;
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
+            return null;
         } catch (ExpiredJwtException e) {
             logger.error("JWT token is expired: {}", e.getMessage());
+            return null;
         } catch (UnsupportedJwtException e) {
             logger.error("JWT token is unsupported: {}", e.getMessage());
+            return null;
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+            return null;
         }
 
-        return false;
+        // Tokens without an expiry are verified every time rather than cached forever
+        if (claims.getExpiration() != null) {
+            synchronized (verifiedTokens) {
+                verifiedTokens.put(digest, new VerifiedToken(claims, claims.getExpiration().getTime()));
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Builds the principal from the token's claims alone. Returns null for tokens
+     * issued before identity claims were added; those need a user lookup.
+     */
+    public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        Number version = claims.get(CLAIM_TOKEN_VERSION, Number.class);
+        if (userId == null || roles == null || version == null) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> new SimpleGrantedAuthority(String.valueOf(role)))
+                .collect(Collectors.toList());
+        return new UserDetailsImpl(userId, claims.getSubject(), null, authorities, version.longValue());
+    }
+
+    public boolean validateJwtToken(String authToken) {
+        return parseJwtToken(authToken) != null;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.verified-cache.sweep-ms:60000}")
+    public void evictExpiredTokens() {
+        long now = System.currentTimeMillis();
+        synchronized (verifiedTokens) {
+            verifiedTokens.values().removeIf(token -> token.expiresAt <= now);
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class VerifiedToken {
+        private final Claims claims;
+        private final long expiresAt;
+
+        private VerifiedToken(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package com.carboncredit.security;
+
+import com.carboncredit.service.OrderRateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Applies the per-user OrderRateLimiter budgets to marketplace requests right
+ * after authentication, before they reach the controller, the matching engine
+ * or Mongo. Over-budget requests get 429 with Retry-After. Unauthenticated
+ * requests pass through and are rejected by the security chain as before.
+ */
+public class MarketplaceRateLimitFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(MarketplaceRateLimitFilter.class);
+
+    @Autowired
+    private OrderRateLimiter orderRateLimiter;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !(path.startsWith("/marketplace/") || path.startsWith("/api/marketplace/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        UserDetailsImpl user = (UserDetailsImpl) authentication.getPrincipal();
+        boolean admin = user.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        OrderRateLimiter.Action action = classify(request);
+
+        long waitMs = orderRateLimiter.tryAcquire(user.getId(), admin, action);
+        if (waitMs > 0) {
+            logger.debug("Rate limited {} request from user {}", action, user.getId());
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (waitMs + 999) / 1000)));
+            response.setContentType("text/plain");
+            response.getWriter().write("Too many " + action.name().toLowerCase() + " requests, please retry later");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    static OrderRateLimiter.Action classify(HttpServletRequest request) {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return OrderRateLimiter.Action.READ;
+        }
+        if (request.getServletPath().endsWith("/cancel")) {
+            return OrderRateLimiter.Action.CANCEL;
+        }
+        // Order placement and manual matching both drive the engine
+        return OrderRateLimiter.Action.PLACE;
+    }
+}
@@ -0,0 +1,75 @@
+package com.carboncredit.security;
+
+import com.carboncredit.service.MetricsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps the BCrypt encoder and records how long each hash and verification
+ * takes, so the cost factor can be tuned against real hardware. Each call is
+ * recorded on the auth.password.hash timer; the totals below back
+ * /admin/auth/stats.
+ */
+public class TimedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final int cost;
+    private final MetricsService metricsService;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public TimedPasswordEncoder(PasswordEncoder delegate, int cost, MetricsService metricsService) {
+        this.delegate = delegate;
+        this.cost = cost;
+        this.metricsService = metricsService;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        long start = System.nanoTime();
+        try {
+            return delegate.encode(rawPassword);
+        } finally {
+            record("encode", start);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = System.nanoTime();
+        try {
+            return delegate.matches(rawPassword, encodedPassword);
+        } finally {
+            record("matches", start);
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public Map<String, Object> getStats() {
+        long hashes = count.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bcryptCost", cost);
+        stats.put("hashes", hashes);
+        stats.put("meanHashMs", hashes == 0 ? 0.0 : totalNanos.sum() / (double) hashes / 1_000_000.0);
+        stats.put("maxHashMs", maxNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    private void record(String operation, long start) {
+        long nanos = System.nanoTime() - start;
+        metricsService.recordPasswordHash(operation, cost, start);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+}
@@ -0,0 +1,102 @@
+package com.carboncredit.security;
+
+import com.carboncredit.model.User;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides whether a token's version is still the user's current one. Versions
+ * are cached for a short TTL, so a role change or revocation takes effect on
+ * every instance within jwt.version-check-ttl-ms (immediately on the instance
+ * that made it) while steady-state requests cost no database call.
+ */
+@Component
+public class TokenVersionService extends AbstractMongoEventListener<User> {
+
+    // Cached for users that no longer exist, so their tokens stay rejected
+    private static final long DELETED = -1;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${jwt.version-check-ttl-ms:30000}")
+    private long ttlMs = 30000;
+
+    @Value("${jwt.version-cache.max-size:10000}")
+    private int maxSize = 10000;
+
+    private final Map<String, CachedVersion> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedVersion> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    public boolean isCurrent(String userId, long tokenVersion) {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            CachedVersion cached = cache.get(userId);
+            if (cached != null && now - cached.loadedAt < ttlMs) {
+                return cached.version == tokenVersion;
+            }
+        }
+
+        Query query = new Query(Criteria.where("_id").is(userId));
+        query.fields().include("tokenVersion");
+        User user = mongoTemplate.findOne(query, User.class);
+        long version = user != null ? user.getTokenVersion() : DELETED;
+        synchronized (cache) {
+            cache.put(userId, new CachedVersion(version, now));
+        }
+        return version == tokenVersion;
+    }
+
+    public void evict(String userId) {
+        synchronized (cache) {
+            cache.remove(userId);
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        evict(event.getSource().getId());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        Document filter = event.getSource();
+        Object id = filter.get("_id");
+        if (filter.size() == 1 && id != null && !(id instanceof Document)) {
+            evict(id.toString());
+        } else {
+            clear();
+        }
+    }
+
+    private static final class CachedVersion {
+        private final long version;
+        private final long loadedAt;
+
+        private CachedVersion(long version, long loadedAt) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
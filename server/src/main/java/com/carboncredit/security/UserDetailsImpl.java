@@ -18,13 +18,21 @@ public class UserDetailsImpl implements UserDetails {
     @JsonIgnore
     private String password;
     private Collection<? extends GrantedAuthority> authorities;
+    @JsonIgnore
+    private long tokenVersion;
 
     public UserDetailsImpl(String id, String email, String password,
                            Collection<? extends GrantedAuthority> authorities) {
+        this(id, email, password, authorities, 0);
+    }
+
+    public UserDetailsImpl(String id, String email, String password,
+                           Collection<? extends GrantedAuthority> authorities, long tokenVersion) {
         this.id = id;
         this.email = email;
         this.password = password;
         this.authorities = authorities;
+        this.tokenVersion = tokenVersion;
     }
 
     public static UserDetailsImpl build(User user) {
@@ -36,13 +44,18 @@ public class UserDetailsImpl implements UserDetails {
                 user.getId(),
                 user.getEmail(),
                 user.getPassword(),
-                authorities);
+                authorities,
+                user.getTokenVersion());
     }
 
     public String getId() {
         return id;
     }
 
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
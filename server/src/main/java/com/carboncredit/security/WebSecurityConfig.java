@@ -1,5 +1,6 @@
 package com.carboncredit.security;
 
+import com.carboncredit.service.MetricsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -31,9 +32,17 @@ public class WebSecurityConfig {
     @Autowired
     private AuthEntryPointJwt unauthorizedHandler;
 
+    @Autowired
+    private MetricsService metricsService;
+
     @Value("${cors.allowed.origins}")
     private String allowedOrigins;
 
+    // Each +1 doubles hashing time; watch the auth.password.hash timer (or meanHashMs
+    // in /admin/auth/stats) when changing it
+    @Value("${auth.bcrypt.cost:10}")
+    private int bcryptCost;
+
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
         return new AuthTokenFilter();
@@ -48,6 +57,21 @@ public class WebSecurityConfig {
         return registration;
     }
 
+    @Bean
+    public MarketplaceRateLimitFilter marketplaceRateLimitFilter() {
+        return new MarketplaceRateLimitFilter();
+    }
+
+    // Runs inside the security chain (after authentication) only
+    @Bean
+    public org.springframework.boot.web.servlet.FilterRegistrationBean<MarketplaceRateLimitFilter> rateLimitRegistration(
+            MarketplaceRateLimitFilter filter) {
+        org.springframework.boot.web.servlet.FilterRegistrationBean<MarketplaceRateLimitFilter> registration = new org.springframework.boot.web.servlet.FilterRegistrationBean<>(
+                filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
@@ -63,7 +87,7 @@ public class WebSecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new TimedPasswordEncoder(new BCryptPasswordEncoder(bcryptCost), bcryptCost, metricsService);
     }
 
     @Bean
@@ -89,10 +113,14 @@ public class WebSecurityConfig {
                         .requestMatchers("/api/test/**").permitAll()
                         .requestMatchers("/api/public/**").permitAll()
                         .requestMatchers(org.springframework.http.HttpMethod.OPTIONS, "/**").permitAll()
+                        // Served on the internal management port only (management.server.port)
+                        .requestMatchers("/actuator/health/**", "/actuator/prometheus").permitAll()
+                        .requestMatchers("/actuator/**").hasAuthority("ROLE_ADMIN")
                         .anyRequest().authenticated());
 
         http.authenticationProvider(authenticationProvider());
         http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterAfter(marketplaceRateLimitFilter(), AuthTokenFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,368 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves closed audit months out of Mongo into segment files on local disk.
+ *
+ * A segment is the month's entries as gzipped NDJSON
+ * (audit_logs_YYYY_MM.ndjson.gz), oldest first within each partition archived
+ * into it, next to a manifest with the entry count, time range and the SHA-256
+ * of the file. The partition is detached before it is read, so entries written
+ * to the month meanwhile go to a new partition, which a later run appends to
+ * the segment. A detached partition is only dropped once the file has been
+ * fsynced, re-reads to the recorded checksum and entry count, and its manifest
+ * (which lists the detached collections it holds) is on disk; segments are
+ * checked again before every scan, so a damaged file is reported instead of
+ * returning partial history. Closed months still in the legacy audit_logs
+ * collection are first moved into their monthly partitions so they are archived
+ * the same way.
+ *
+ * Archiving deletes history from Mongo, so it is off by default and only runs
+ * with an absolute audit.archive.dir, which must be a persistent (and, with
+ * several instances, shared) volume.
+ */
+@Service
+@Slf4j
+public class AuditLogArchiver {
+
+    static final String SEGMENT_SUFFIX = ".ndjson.gz";
+    static final String MANIFEST_SUFFIX = ".manifest.json";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AuditLogPartitions auditLogPartitions;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${audit.archive.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${audit.archive.dir:}")
+    private String archiveDir = "";
+
+    // Closed months kept in Mongo before they are archived
+    @Value("${audit.archive.hot-months:3}")
+    private int hotMonths = 3;
+
+    @PostConstruct
+    public void checkConfiguration() {
+        if (enabled) {
+            // Fail startup rather than archive (and drop) months into a directory that may not survive
+            archivePath();
+            log.info("Audit archiving enabled: months older than {} are moved to {}", hotMonths, archiveDir);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${audit.archive.interval-ms:3600000}",
+            initialDelayString = "${audit.archive.initial-delay-ms:300000}")
+    public void archiveClosedMonths() {
+        if (!enabled) {
+            return;
+        }
+        YearMonth cutoff = YearMonth.now().minusMonths(hotMonths);
+        try {
+            long moved = auditLogPartitions.migrateLegacy(cutoff);
+            if (moved > 0) {
+                log.info("Moved {} legacy audit log entries older than {} into monthly partitions", moved, cutoff);
+            }
+        } catch (Exception e) {
+            log.error("Failed to move legacy audit logs into monthly partitions", e);
+        }
+        // Months left detached by an interrupted run are finished whatever the cutoff
+        Set<YearMonth> months = new TreeSet<>(auditLogPartitions.listDetachedMonths());
+        for (YearMonth month : auditLogPartitions.listMonths()) {
+            if (month.isBefore(cutoff)) {
+                months.add(month);
+            }
+        }
+        for (YearMonth month : months) {
+            try {
+                archive(month);
+            } catch (Exception e) {
+                // The partition stays in Mongo and is retried on the next run
+                log.error("Failed to archive audit logs for {}", month, e);
+            }
+        }
+    }
+
+    /**
+     * Appends the month's partition to its segment and drops it.
+     *
+     * @return the month's segment, or null if there was no partition to archive
+     */
+    public synchronized Segment archive(YearMonth month) throws IOException {
+        Path dir = Files.createDirectories(archivePath());
+        // Whatever an interrupted run left detached goes first, in the order it was detached
+        List<String> sources = new ArrayList<>(auditLogPartitions.detached(month));
+        String detached = auditLogPartitions.detach(month);
+        if (detached != null) {
+            sources.add(detached);
+        }
+        Segment segment = null;
+        for (String source : sources) {
+            segment = archive(month, dir, source);
+        }
+        return segment;
+    }
+
+    // Writes the month's segment with the detached collection's entries added, then drops the collection
+    private Segment archive(YearMonth month, Path dir, String source) throws IOException {
+        String collection = AuditLogPartitions.collectionFor(month);
+        Segment previous = getSegment(month).orElse(null);
+        if (previous != null && previous.getSources().contains(source)) {
+            // Interrupted after the manifest was written: only the drop is left
+            auditLogPartitions.dropDetached(source);
+            return previous;
+        }
+        if (previous != null && !verify(previous)) {
+            throw new IOException("Archived segment " + previous.getFile() + " does not match its manifest");
+        }
+
+        // A new file each time, so the manifest on disk always names a complete one
+        Path segmentFile = dir.resolve((previous == null ? collection : source) + SEGMENT_SUFFIX);
+        Path tmp = dir.resolve(segmentFile.getFileName() + ".tmp");
+
+        Segment segment = new Segment();
+        segment.setMonth(month.toString());
+        segment.setFile(segmentFile.getFileName().toString());
+        long entries = 0;
+        if (previous != null) {
+            segment.setFirstTimestamp(previous.getFirstTimestamp());
+            segment.setLastTimestamp(previous.getLastTimestamp());
+            segment.getSources().addAll(previous.getSources());
+            entries = previous.getEntries();
+        }
+
+        MessageDigest digest = sha256();
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "timestamp", "_id")).cursorBatchSize(1000);
+        try (DigestOutputStream file = new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE), digest);
+                GZIPOutputStream out = new GZIPOutputStream(file, BUFFER_SIZE);
+                Stream<AuditLog> rows = mongoTemplate.stream(query, AuditLog.class, source)) {
+            if (previous != null) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(dir.resolve(previous.getFile())),
+                        BUFFER_SIZE)) {
+                    in.transferTo(out);
+                }
+            }
+            for (AuditLog row : (Iterable<AuditLog>) rows::iterator) {
+                out.write(objectMapper.writeValueAsBytes(row));
+                out.write('\n');
+                entries++;
+                LocalDateTime at = row.getTimestamp();
+                if (at != null && (segment.getFirstTimestamp() == null || at.isBefore(segment.getFirstTimestamp()))) {
+                    segment.setFirstTimestamp(at);
+                }
+                if (at != null && (segment.getLastTimestamp() == null || at.isAfter(segment.getLastTimestamp()))) {
+                    segment.setLastTimestamp(at);
+                }
+            }
+        }
+        segment.setEntries(entries);
+        segment.setSha256(HexFormat.of().formatHex(digest.digest()));
+        segment.getSources().add(source);
+        fsync(tmp);
+
+        Files.move(tmp, segmentFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fsyncDirectory(dir);
+        segment.setBytes(Files.size(segmentFile));
+        segment.setArchivedAt(LocalDateTime.now());
+        if (!verify(segment) || countEntries(segmentFile) != entries) {
+            Files.deleteIfExists(segmentFile);
+            throw new IOException("Archived segment " + segmentFile + " does not match what was written");
+        }
+        writeManifest(dir, collection, segment);
+        if (previous != null) {
+            Files.deleteIfExists(dir.resolve(previous.getFile()));
+        }
+
+        auditLogPartitions.dropDetached(source);
+        log.info("Archived {} audit log entries for {} to {}",
+                entries - (previous != null ? previous.getEntries() : 0), month, segmentFile);
+        return segment;
+    }
+
+    /**
+     * Archived segments, newest month first.
+     */
+    public List<Segment> listSegments() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        if (archiveDir.isBlank() || !Files.isDirectory(Paths.get(archiveDir))) {
+            return segments;
+        }
+        try (DirectoryStream<Path> manifests = Files.newDirectoryStream(Paths.get(archiveDir),
+                "*" + MANIFEST_SUFFIX)) {
+            for (Path manifest : manifests) {
+                segments.add(objectMapper.readValue(manifest.toFile(), Segment.class));
+            }
+        }
+        segments.sort(Comparator.comparing(Segment::getMonth).reversed());
+        return segments;
+    }
+
+    public Optional<Segment> getSegment(YearMonth month) throws IOException {
+        if (archiveDir.isBlank()) {
+            return Optional.empty();
+        }
+        Path manifest = Paths.get(archiveDir).resolve(AuditLogPartitions.collectionFor(month) + MANIFEST_SUFFIX);
+        if (!Files.exists(manifest)) {
+            return Optional.empty();
+        }
+        return Optional.of(objectMapper.readValue(manifest.toFile(), Segment.class));
+    }
+
+    /**
+     * Re-hashes the segment file and compares it with its manifest.
+     */
+    public boolean verify(Segment segment) throws IOException {
+        Path file = Paths.get(archiveDir).resolve(segment.getFile());
+        if (!Files.exists(file)) {
+            return false;
+        }
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest()).equals(segment.getSha256());
+    }
+
+    /**
+     * Streams the segment's entries matching the given (optional) fields to out
+     * as NDJSON, in segment order. The segment should be verified first.
+     *
+     * @return the number of entries written
+     */
+    public long scan(Segment segment, String userId, String entityType, String entityId, OutputStream out)
+            throws IOException {
+        Path file = Paths.get(archiveDir).resolve(segment.getFile());
+        ObjectReader reader = objectMapper.readerFor(AuditLog.class);
+        long matched = 0;
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                AuditLog entry = reader.readValue(line);
+                if ((userId == null || userId.equals(entry.getUserId()))
+                        && (entityType == null || entityType.equals(entry.getEntityType()))
+                        && (entityId == null || entityId.equals(entry.getEntityId()))) {
+                    out.write(line.getBytes(StandardCharsets.UTF_8));
+                    out.write('\n');
+                    matched++;
+                }
+            }
+        }
+        out.flush();
+        return matched;
+    }
+
+    private void writeManifest(Path dir, String collection, Segment segment) throws IOException {
+        Path manifest = dir.resolve(collection + MANIFEST_SUFFIX);
+        Path tmp = dir.resolve(collection + MANIFEST_SUFFIX + ".tmp");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), segment);
+        fsync(tmp);
+        Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fsyncDirectory(dir);
+    }
+
+    private Path archivePath() {
+        Path dir = archiveDir.isBlank() ? null : Paths.get(archiveDir);
+        if (dir == null || !dir.isAbsolute()) {
+            throw new IllegalStateException(
+                    "audit.archive.dir must be an absolute path on a persistent volume, got '" + archiveDir + "'");
+        }
+        return dir;
+    }
+
+    // Decompresses the whole file, so a truncated or corrupt gzip stream fails here too
+    private static long countEntries(Path file) throws IOException {
+        long lines = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static void fsync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    // Makes the rename durable; not every platform can open a directory for this
+    private static void fsyncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not fsync directory {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Manifest of one archived month.
+     */
+    @Data
+    public static class Segment {
+        private String month;
+        private String file;
+        private long entries;
+        private long bytes;
+        private String sha256;
+        private LocalDateTime firstTimestamp;
+        private LocalDateTime lastTimestamp;
+        private LocalDateTime archivedAt;
+        // Detached collections whose entries the segment holds
+        private List<String> sources = new ArrayList<>();
+    }
+}
@@ -0,0 +1,241 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.AuditLog;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Audit entries live in one collection per month (audit_logs_YYYY_MM), so a
+ * closed month can be archived and dropped as a whole. Each partition gets the
+ * indexes the audit queries need the first time it is written to.
+ *
+ * The original audit_logs collection is still read as the oldest partition
+ * until its closed months are moved into monthly partitions by the archiver.
+ * The list of hot collections is cached briefly so list requests don't have to
+ * ask Mongo for every collection name.
+ *
+ * A partition being archived is first detached: renamed to
+ * audit_logs_YYYY_MM_archiving_<millis>, which writers never use, so an entry
+ * written to that month afterwards lands in a new partition instead of one
+ * about to be dropped. Detached partitions are not read as hot collections.
+ */
+@Service
+public class AuditLogPartitions {
+
+    public static final String LEGACY_COLLECTION = "audit_logs";
+
+    private static final String PREFIX = "audit_logs_";
+    private static final Pattern PARTITION = Pattern.compile("audit_logs_(\\d{4})_(\\d{2})");
+    private static final Pattern DETACHED = Pattern.compile("(audit_logs_\\d{4}_\\d{2})_archiving_\\d+");
+    private static final long HOT_COLLECTIONS_TTL_MS = 60_000;
+    private static final int MIGRATION_BATCH = 1000;
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Partitions whose indexes are known to exist
+    private final Set<String> indexed = ConcurrentHashMap.newKeySet();
+
+    private volatile List<String> hotCollections;
+    private volatile long hotCollectionsLoadedAt;
+
+    public static String collectionFor(YearMonth month) {
+        return String.format("%s%04d_%02d", PREFIX, month.getYear(), month.getMonthValue());
+    }
+
+    public static Optional<YearMonth> monthOf(String collection) {
+        Matcher matcher = PARTITION.matcher(collection);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+    }
+
+    /**
+     * Inserts the entries into their months' partitions, one insertMany per
+     * partition.
+     */
+    public void insert(Collection<AuditLog> entries) {
+        Map<String, List<AuditLog>> byPartition = new LinkedHashMap<>();
+        for (AuditLog entry : entries) {
+            if (entry.getTimestamp() == null) {
+                entry.setTimestamp(LocalDateTime.now());
+            }
+            byPartition.computeIfAbsent(collectionFor(YearMonth.from(entry.getTimestamp())),
+                    k -> new ArrayList<>()).add(entry);
+        }
+        byPartition.forEach((collection, batch) -> {
+            ensureIndexes(collection);
+            mongoTemplate.insert(batch, collection);
+        });
+    }
+
+    /**
+     * Monthly partitions currently in Mongo, newest first.
+     */
+    public List<YearMonth> listMonths() {
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : mongoTemplate.getCollectionNames()) {
+            monthOf(name).ifPresent(months::add);
+        }
+        months.sort(Comparator.reverseOrder());
+        return months;
+    }
+
+    /**
+     * Every collection holding hot (not yet archived) entries, newest first, so
+     * reading them in order yields entries newest first.
+     */
+    public List<String> hotCollections() {
+        List<String> cached = hotCollections;
+        if (cached != null && System.currentTimeMillis() - hotCollectionsLoadedAt < HOT_COLLECTIONS_TTL_MS) {
+            return cached;
+        }
+        List<String> collections = new ArrayList<>();
+        for (YearMonth month : listMonths()) {
+            collections.add(collectionFor(month));
+        }
+        if (mongoTemplate.collectionExists(LEGACY_COLLECTION)) {
+            collections.add(LEGACY_COLLECTION);
+        }
+        hotCollections = List.copyOf(collections);
+        hotCollectionsLoadedAt = System.currentTimeMillis();
+        return hotCollections;
+    }
+
+    /**
+     * Renames the month's partition out of the writers' way.
+     *
+     * @return the detached collection, or null if the month has no partition
+     */
+    public String detach(YearMonth month) {
+        String collection = collectionFor(month);
+        if (!mongoTemplate.collectionExists(collection)) {
+            return null;
+        }
+        String detached = collection + "_archiving_" + System.currentTimeMillis();
+        MongoCollection<Document> partition = mongoTemplate.getCollection(collection);
+        partition.renameCollection(new MongoNamespace(partition.getNamespace().getDatabaseName(), detached));
+        indexed.remove(collection);
+        hotCollections = null;
+        return detached;
+    }
+
+    /**
+     * Collections detached from the month's partition and not dropped yet,
+     * oldest first. More than one is left only by interrupted archiving.
+     */
+    public List<String> detached(YearMonth month) {
+        String collection = collectionFor(month);
+        List<String> detached = new ArrayList<>();
+        for (String name : mongoTemplate.getCollectionNames()) {
+            Matcher matcher = DETACHED.matcher(name);
+            if (matcher.matches() && matcher.group(1).equals(collection)) {
+                detached.add(name);
+            }
+        }
+        detached.sort(Comparator.comparing(String::length).thenComparing(Comparator.naturalOrder()));
+        return detached;
+    }
+
+    /**
+     * Months with a detached collection left behind by interrupted archiving.
+     */
+    public Set<YearMonth> listDetachedMonths() {
+        Set<YearMonth> months = new TreeSet<>();
+        for (String name : mongoTemplate.getCollectionNames()) {
+            Matcher matcher = DETACHED.matcher(name);
+            if (matcher.matches()) {
+                monthOf(matcher.group(1)).ifPresent(months::add);
+            }
+        }
+        return months;
+    }
+
+    public void dropDetached(String detached) {
+        mongoTemplate.dropCollection(detached);
+    }
+
+    /**
+     * Moves legacy audit_logs entries from months before the given one into
+     * their monthly partitions, in batches. Each batch is inserted before it is
+     * removed from the legacy collection, and entries already copied by an
+     * interrupted run are skipped, so nothing is lost or duplicated.
+     *
+     * @return the number of entries moved
+     */
+    public long migrateLegacy(YearMonth before) {
+        if (!mongoTemplate.collectionExists(LEGACY_COLLECTION)) {
+            return 0;
+        }
+        Query query = Query.query(Criteria.where("timestamp").lt(before.atDay(1).atStartOfDay()))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp", "_id")).limit(MIGRATION_BATCH);
+        long moved = 0;
+        List<AuditLog> batch;
+        while (!(batch = mongoTemplate.find(query, AuditLog.class, LEGACY_COLLECTION)).isEmpty()) {
+            Map<String, List<AuditLog>> byPartition = new LinkedHashMap<>();
+            List<String> ids = new ArrayList<>(batch.size());
+            for (AuditLog entry : batch) {
+                byPartition.computeIfAbsent(collectionFor(YearMonth.from(entry.getTimestamp())),
+                        k -> new ArrayList<>()).add(entry);
+                ids.add(entry.getId());
+            }
+            byPartition.forEach(this::insertSkippingDuplicates);
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), LEGACY_COLLECTION);
+            moved += batch.size();
+        }
+        if (moved > 0) {
+            hotCollections = null;
+        }
+        return moved;
+    }
+
+    private void insertSkippingDuplicates(String collection, List<AuditLog> entries) {
+        ensureIndexes(collection);
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AuditLog.class, collection)
+                    .insert(entries).execute();
+        } catch (BulkOperationException e) {
+            if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                throw e;
+            }
+        }
+    }
+
+    private void ensureIndexes(String collection) {
+        if (indexed.contains(collection)) {
+            return;
+        }
+        IndexOperations indexOps = mongoTemplate.indexOps(collection);
+        // Same indexes as the legacy collection declares on AuditLog
+        indexOps.ensureIndex(new Index().named("timestamp_id")
+                .on("timestamp", Sort.Direction.DESC).on("_id", Sort.Direction.DESC));
+        indexOps.ensureIndex(new Index().named("user_timestamp")
+                .on("userId", Sort.Direction.ASC).on("timestamp", Sort.Direction.DESC));
+        indexOps.ensureIndex(new Index().named("entity_timestamp")
+                .on("entityType", Sort.Direction.ASC).on("entityId", Sort.Direction.ASC)
+                .on("timestamp", Sort.Direction.DESC));
+        indexed.add(collection);
+        // Possibly a new partition
+        hotCollections = null;
+    }
+}
@@ -0,0 +1,185 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.AuditLog;
+import com.carboncredit.security.UserDetailsImpl;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit pipeline. Callers append to a bounded lock-free queue and return
+ * immediately; one background writer inserts the entries in batches, as soon
+ * as a full batch is waiting or after audit.flush-interval-ms otherwise. When
+ * the queue is full new entries are dropped (and counted) rather than blocking
+ * the request. Whatever is still queued is written on shutdown.
+ *
+ * The user and client IP are taken on the calling thread, so entries recorded
+ * from background work (e.g. matching) carry "system" and no IP.
+ */
+@Service
+@Slf4j
+public class AuditLogWriter {
+
+    static final String SYSTEM_USER = "system";
+
+    @Autowired
+    private AuditLogPartitions auditLogPartitions;
+
+    @Value("${audit.queue.capacity:10000}")
+    private int capacity = 10000;
+
+    @Value("${audit.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${audit.flush-interval-ms:1000}")
+    private long flushIntervalMs = 1000;
+
+    private final ConcurrentLinkedQueue<AuditLog> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The loop drains before exiting; this catches anything appended meanwhile
+        flush();
+        log.info("Audit log writer stopped: {} written, {} dropped, {} failed",
+                written.sum(), dropped.sum(), failed.sum());
+    }
+
+    /**
+     * Queues an audit entry for the current user and request. Never blocks and
+     * never throws.
+     */
+    public void record(AuditLog.ActionType action, String entityType, String entityId, String details) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUserId(currentUserId());
+        auditLog.setIpAddress(currentClientIp());
+        auditLog.setAction(action);
+        auditLog.setEntityType(entityType);
+        auditLog.setEntityId(entityId);
+        auditLog.setDetails(details);
+        enqueue(auditLog);
+    }
+
+    public boolean enqueue(AuditLog auditLog) {
+        if (auditLog.getTimestamp() == null) {
+            auditLog.setTimestamp(LocalDateTime.now());
+        }
+        // Reserve a slot first so the queue can never grow past capacity
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+        queue.offer(auditLog);
+        if (queued.get() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queued.get());
+        stats.put("capacity", capacity);
+        stats.put("written", written.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+
+    private void writeLoop() {
+        while (running) {
+            if (queued.get() < batchSize) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+            }
+            flush();
+        }
+        flush();
+    }
+
+    // Writes everything queued, batchSize entries per insert (split by month partition)
+    synchronized void flush() {
+        List<AuditLog> batch = new ArrayList<>(Math.min(batchSize, Math.max(queued.get(), 1)));
+        AuditLog next;
+        while ((next = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(next);
+            if (batch.size() >= batchSize) {
+                insert(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert(batch);
+        }
+    }
+
+    private void insert(List<AuditLog> batch) {
+        try {
+            auditLogPartitions.insert(batch);
+            written.add(batch.size());
+        } catch (Exception e) {
+            // Auditing must never take the application down; the loss is counted
+            failed.add(batch.size());
+            log.error("Failed to write {} audit log entries", batch.size(), e);
+        }
+    }
+
+    private static String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl) {
+            return ((UserDetailsImpl) authentication.getPrincipal()).getId();
+        }
+        return SYSTEM_USER;
+    }
+
+    // With server.forward-headers-strategy=native this is the client behind a trusted proxy
+    private static String currentClientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            return ((ServletRequestAttributes) attributes).getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+}
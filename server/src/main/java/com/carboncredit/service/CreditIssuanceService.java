@@ -0,0 +1,522 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CarbonCredit;
+import com.carboncredit.model.CreditBlock;
+import com.carboncredit.model.Project;
+import com.carboncredit.model.Wallet;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Issues credits for verified projects as queued background jobs.
+ *
+ * Jobs run one at a time in submission order; each job splits its projects into
+ * batches that are processed in parallel. Every project is claimed first by
+ * flipping creditsGenerated false -> true in a single findAndModify, which also
+ * stamps creditIssuanceStartedAt. A batch then creates missing wallets, credits
+ * each project with one guarded update in an unordered bulk write, and inserts
+ * its CarbonCredit records in one call; the stamp is cleared once all of that
+ * is done.
+ *
+ * Each step can be repeated safely: a project's ledger entry has a fixed id
+ * and the wallet update only matches while that entry is absent, its serials
+ * are issued under that id (a repeat returns the same range), and its
+ * CarbonCredit record has a fixed id as well. So projects whose wallet write
+ * failed or is in doubt are released for a later job, and projects left
+ * stamped by a crashed instance are picked up again by a periodic recovery job
+ * once the stamp is older than credits.issuance.stale-claim-ms.
+ *
+ * Job status is kept in memory for the most recent jobs only.
+ */
+@Service
+@Slf4j
+public class CreditIssuanceService {
+
+    private static final int MAX_JOB_ERRORS = 20;
+    private static final int DUPLICATE_KEY = 11000;
+    private static final String ISSUANCE_ID_PREFIX = "credit-issuance-";
+    static final String RECOVERY_REQUESTER = "system";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SerialBlockRegistry serialBlockRegistry;
+
+    @Autowired
+    private UserActivityService userActivityService;
+
+    @Value("${credits.issuance.threads:4}")
+    private int threads = 4;
+
+    @Value("${credits.issuance.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${credits.issuance.retained-jobs:100}")
+    private int retainedJobs = 100;
+
+    // A claim older than this belongs to a job that died before finishing
+    @Value("${credits.issuance.stale-claim-ms:600000}")
+    private long staleClaimMs = 600_000;
+
+    // Runs jobs one after another; the job's batches go to the worker pool
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "credit-issuance-dispatch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ExecutorService workers;
+
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > retainedJobs && eldest.getValue().isFinished();
+        }
+    });
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "credit-issuance-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queues issuance for the given projects and returns immediately. Projects
+     * that are not VERIFIED or already have their credits are skipped.
+     */
+    public Job submit(Collection<String> projectIds, String requestedBy) {
+        return submit(new Job(new ArrayList<>(new LinkedHashSet<>(projectIds)), requestedBy, false));
+    }
+
+    private Job submit(Job job) {
+        jobs.put(job.getId(), job);
+        dispatcher.execute(() -> run(job));
+        log.info("Queued credit issuance job {} for {} project(s)", job.getId(), job.getTotal());
+        return job;
+    }
+
+    /**
+     * Queues issuance for every VERIFIED project whose credits have not been
+     * generated yet.
+     */
+    public Job submitPending(String requestedBy) {
+        Query query = new Query(Criteria.where("status").is(Project.ProjectStatus.VERIFIED)
+                .and("creditsGenerated").ne(true));
+        query.fields().include("_id");
+        List<String> ids = mongoTemplate.find(query, Project.class).stream().map(Project::getId).toList();
+        return submit(ids, requestedBy);
+    }
+
+    /**
+     * Queues a recovery job for projects whose issuance was claimed but never
+     * finished (the instance running it died). Their wallet credits and credit
+     * records are completed without being applied twice.
+     */
+    @Scheduled(fixedDelayString = "${credits.issuance.recovery-interval-ms:300000}",
+            initialDelayString = "${credits.issuance.recovery-initial-delay-ms:60000}")
+    public void recoverStaleClaims() {
+        Query query = new Query(Criteria.where("creditIssuanceStartedAt").lt(staleBefore()));
+        query.fields().include("_id");
+        List<String> ids = mongoTemplate.find(query, Project.class).stream().map(Project::getId).toList();
+        if (!ids.isEmpty()) {
+            log.warn("Resuming interrupted credit issuance for {} project(s)", ids.size());
+            submit(new Job(ids, RECOVERY_REQUESTER, true));
+        }
+    }
+
+    public Optional<Job> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public List<Job> getJobs() {
+        synchronized (jobs) {
+            List<Job> recent = new ArrayList<>(jobs.values());
+            Collections.reverse(recent);
+            return recent;
+        }
+    }
+
+    void run(Job job) {
+        job.started();
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        List<String> projectIds = job.getProjectIds();
+        for (int from = 0; from < projectIds.size(); from += batchSize) {
+            List<String> batch = projectIds.subList(from, Math.min(from + batchSize, projectIds.size()));
+            batches.add(CompletableFuture.runAsync(() -> processBatch(job, batch), workers));
+        }
+        try {
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).join();
+        } catch (RuntimeException e) {
+            // Batch failures are recorded on the job; this only catches the unexpected
+            job.error("Job aborted: " + e.getMessage());
+        }
+        job.finished();
+        log.info("Credit issuance job {} finished: {} issued, {} skipped, {} failed",
+                job.getId(), job.getIssued(), job.getSkipped(), job.getFailed());
+    }
+
+    void processBatch(Job job, List<String> projectIds) {
+        List<Project> claimed = new ArrayList<>();
+        for (String projectId : projectIds) {
+            Project project = job.isRecovery() ? reclaim(projectId) : claim(projectId);
+            if (project == null) {
+                job.skipped.incrementAndGet();
+            } else {
+                claimed.add(project);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        Set<String> failedProjects;
+        try {
+            failedProjects = creditWallets(claimed);
+        } catch (RuntimeException e) {
+            // Some updates may have been applied; releasing is still safe as none can apply twice
+            failedProjects = claimed.stream().map(Project::getId).collect(Collectors.toSet());
+            log.error("Credit issuance job {} failed to credit wallets", job.getId(), e);
+        }
+        if (!failedProjects.isEmpty()) {
+            // Hand those projects back for a later job
+            Set<String> failed = failedProjects;
+            List<Project> notCredited = claimed.stream().filter(p -> failed.contains(p.getId())).toList();
+            release(notCredited);
+            job.failed.addAndGet(notCredited.size());
+            job.error("Wallet update failed for projects " + failedProjects);
+            claimed.removeAll(notCredited);
+            if (claimed.isEmpty()) {
+                return;
+            }
+        }
+
+        // Wallets are authoritative; serials and credit records follow, and are
+        // retried by recovery if they fail
+        try {
+            recordCredits(claimed, job.isRecovery());
+            finish(claimed);
+        } catch (RuntimeException e) {
+            // Still claimed, so the recovery job completes them
+            job.failed.addAndGet(claimed.size());
+            job.error("Credit records incomplete for " + claimed.size() + " project(s), left for recovery: "
+                    + e.getMessage());
+            log.error("Credit issuance job {} failed to record credits", job.getId(), e);
+            return;
+        }
+        for (Project project : claimed) {
+            job.issued.incrementAndGet();
+            job.addCredits(project.getTotalCarbonCredits());
+        }
+    }
+
+    // Returns the project if this call flipped creditsGenerated, null otherwise
+    private Project claim(String projectId) {
+        Query query = new Query(Criteria.where("_id").is(projectId)
+                .and("status").is(Project.ProjectStatus.VERIFIED)
+                .and("creditsGenerated").ne(true));
+        return mongoTemplate.findAndModify(query,
+                new Update().set("creditsGenerated", true).set("creditIssuanceStartedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true), Project.class);
+    }
+
+    // Takes over a stale claim; only one recovering instance can win it
+    private Project reclaim(String projectId) {
+        Query query = new Query(Criteria.where("_id").is(projectId)
+                .and("creditsGenerated").is(true)
+                .and("creditIssuanceStartedAt").lt(staleBefore()));
+        return mongoTemplate.findAndModify(query, new Update().set("creditIssuanceStartedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true), Project.class);
+    }
+
+    private void release(List<Project> projects) {
+        List<String> ids = projects.stream().map(Project::getId).toList();
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)),
+                new Update().set("creditsGenerated", false).unset("creditIssuanceStartedAt"), Project.class);
+    }
+
+    private void finish(List<Project> projects) {
+        List<String> ids = projects.stream().map(Project::getId).toList();
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)),
+                new Update().unset("creditIssuanceStartedAt"), Project.class);
+    }
+
+    private LocalDateTime staleBefore() {
+        return LocalDateTime.now().minusNanos(staleClaimMs * 1_000_000);
+    }
+
+    static String issuanceId(String projectId) {
+        return ISSUANCE_ID_PREFIX + projectId;
+    }
+
+    // Returns the ids of the projects whose wallet was not credited
+    private Set<String> creditWallets(List<Project> projects) {
+        createMissingWallets(projects);
+
+        long now = System.currentTimeMillis();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Wallet.class);
+        for (Project project : projects) {
+            Wallet.Transaction tx = new Wallet.Transaction();
+            tx.setId(issuanceId(project.getId()));
+            tx.setType(Wallet.Transaction.TransactionType.CREDIT_ISSUANCE);
+            tx.setAmount(0.0);
+            tx.setCarbonCredits(project.getTotalCarbonCredits());
+            tx.setRelatedEntityId(project.getId());
+            tx.setDescription("Issued " + project.getTotalCarbonCredits() + " credits for project " + project.getName());
+            tx.setTimestamp(now);
+            // Matches only while this project's entry is absent, so a retry cannot credit it twice
+            Query query = new Query(Criteria.where("userId").is(project.getIssuerId())
+                    .and("transactions.id").ne(tx.getId()));
+            bulk.updateOne(query, new Update()
+                    .inc("carbonCreditBalance", project.getTotalCarbonCredits())
+                    .push("transactions", tx));
+        }
+        try {
+            BulkWriteResult result = bulk.execute();
+            if (result.getMatchedCount() == projects.size()) {
+                return Collections.emptySet();
+            }
+        } catch (BulkOperationException e) {
+            log.warn("Credit issuance wallet update had {} error(s), checking which projects were credited",
+                    e.getErrors().size());
+        }
+        // Some updates did not match (already credited, or the wallet is gone) or failed
+        return notCredited(projects);
+    }
+
+    // One upsert per owner with insert-only defaults; a no-op for existing wallets
+    private void createMissingWallets(List<Project> projects) {
+        Set<String> owners = new LinkedHashSet<>();
+        projects.forEach(project -> owners.add(project.getIssuerId()));
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Wallet.class);
+        for (String ownerId : owners) {
+            bulk.upsert(new Query(Criteria.where("userId").is(ownerId)), WalletService.walletDefaults()
+                    .setOnInsert("carbonCreditBalance", 0.0)
+                    .setOnInsert("transactions", new ArrayList<>()));
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // A duplicate key means another request created the wallet first, which is fine
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Set<String> notCredited(List<Project> projects) {
+        Set<String> owners = new HashSet<>();
+        List<String> entryIds = new ArrayList<>();
+        for (Project project : projects) {
+            owners.add(project.getIssuerId());
+            entryIds.add(issuanceId(project.getId()));
+        }
+        Query query = new Query(Criteria.where("userId").in(owners).and("transactions.id").in(entryIds));
+        query.fields().include("userId").include("transactions.id");
+        Set<String> credited = new HashSet<>();
+        for (Wallet wallet : mongoTemplate.find(query, Wallet.class)) {
+            wallet.getTransactions().forEach(tx -> credited.add(tx.getId()));
+        }
+        Set<String> failed = new LinkedHashSet<>();
+        for (Project project : projects) {
+            if (!credited.contains(issuanceId(project.getId()))) {
+                failed.add(project.getId());
+            }
+        }
+        return failed;
+    }
+
+    private void recordCredits(List<Project> projects, boolean recovery) {
+        if (recovery) {
+            // Skip projects whose records were written before the interruption
+            List<String> ids = projects.stream().map(p -> issuanceId(p.getId())).toList();
+            Query query = new Query(Criteria.where("_id").in(ids));
+            query.fields().include("projectId");
+            Set<String> recorded = new HashSet<>();
+            mongoTemplate.find(query, CarbonCredit.class).forEach(c -> recorded.add(c.getProjectId()));
+            projects = projects.stream().filter(p -> !recorded.contains(p.getId())).toList();
+        }
+        int vintageYear = LocalDate.now().getYear();
+        List<CarbonCredit> credits = new ArrayList<>();
+        Map<String, Integer> countByOwner = new HashMap<>();
+        for (Project project : projects) {
+            CarbonCredit credit = new CarbonCredit();
+            credit.setId(issuanceId(project.getId()));
+            credit.setProjectId(project.getId());
+            credit.setOwnerId(project.getIssuerId());
+            credit.setQuantity(project.getTotalCarbonCredits());
+            credit.setVintageYear(vintageYear);
+            credit.setStatus(CarbonCredit.CreditStatus.ISSUED);
+            credit.setIssuedAt(LocalDateTime.now());
+            long tonnes = SerialBlockRegistry.wholeTonnes(project.getTotalCarbonCredits());
+            if (tonnes > 0) {
+                CreditBlock block = serialBlockRegistry.issue(credit.getId(), project.getId(), vintageYear,
+                        project.getIssuerId(), tonnes);
+                credit.setSerialNumber(block.getSerialRange());
+            }
+            credits.add(credit);
+            countByOwner.merge(project.getIssuerId(), 1, Integer::sum);
+        }
+        if (credits.isEmpty()) {
+            return;
+        }
+        mongoTemplate.insertAll(credits);
+        countByOwner.forEach(userActivityService::recordCredit);
+    }
+
+    /**
+     * Progress of one issuance job, serialized as-is by the job-status endpoints.
+     */
+    public static class Job {
+
+        public enum Status {
+            QUEUED,
+            RUNNING,
+            COMPLETED,
+            COMPLETED_WITH_ERRORS
+        }
+
+        private final String id = UUID.randomUUID().toString();
+        private final List<String> projectIds;
+        private final String requestedBy;
+        private final boolean recovery;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile Status status = Status.QUEUED;
+        private final AtomicInteger issued = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private double creditsIssued;
+        private final List<String> errors = new ArrayList<>();
+
+        Job(List<String> projectIds, String requestedBy) {
+            this(projectIds, requestedBy, false);
+        }
+
+        Job(List<String> projectIds, String requestedBy, boolean recovery) {
+            this.projectIds = projectIds;
+            this.requestedBy = requestedBy;
+            this.recovery = recovery;
+        }
+
+        void started() {
+            startedAt = LocalDateTime.now();
+            status = Status.RUNNING;
+        }
+
+        void finished() {
+            finishedAt = LocalDateTime.now();
+            status = failed.get() > 0 || !getErrors().isEmpty() ? Status.COMPLETED_WITH_ERRORS : Status.COMPLETED;
+        }
+
+        synchronized void addCredits(double amount) {
+            creditsIssued += amount;
+        }
+
+        synchronized void error(String message) {
+            if (errors.size() < MAX_JOB_ERRORS) {
+                errors.add(message);
+            }
+        }
+
+        public boolean isFinished() {
+            return status == Status.COMPLETED || status == Status.COMPLETED_WITH_ERRORS;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public List<String> getProjectIds() {
+            return projectIds;
+        }
+
+        public String getRequestedBy() {
+            return requestedBy;
+        }
+
+        public boolean isRecovery() {
+            return recovery;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public LocalDateTime getFinishedAt() {
+            return finishedAt;
+        }
+
+        public int getTotal() {
+            return projectIds.size();
+        }
+
+        public int getProcessed() {
+            return issued.get() + skipped.get() + failed.get();
+        }
+
+        public int getIssued() {
+            return issued.get();
+        }
+
+        public int getSkipped() {
+            return skipped.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public synchronized double getCreditsIssued() {
+            return creditsIssued;
+        }
+
+        public synchronized List<String> getErrors() {
+            return new ArrayList<>(errors);
+        }
+    }
+}
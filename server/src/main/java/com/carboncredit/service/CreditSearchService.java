@@ -0,0 +1,118 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CarbonCredit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Credit registry search. All filters are pushed into one Mongo query served by
+ * the status_vintage_price and project_status indexes, and results are paged by
+ * keyset (pricePerUnit, _id) so that deep pages cost the same as the first one.
+ *
+ * Credits without a price are returned unless a price bound is given, and sort
+ * first, as Mongo orders nulls; their cursors carry the null itself.
+ */
+@Service
+public class CreditSearchService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    // Fields a caller may request through "fields"; id and price are always
+    // returned because the cursor is built from them
+    private static final Set<String> PROJECTABLE_FIELDS = Set.of(
+            "serialNumber", "projectId", "ownerId", "quantity", "vintageYear", "pricePerUnit", "status",
+            "verificationId", "issuedAt", "verifiedAt", "retiredAt");
+
+    private static final Keyset<CarbonCredit> KEYSET = Keyset.of("pricePerUnit", Sort.Direction.ASC,
+            CarbonCredit::getPricePerUnit, CarbonCredit::getId);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Every matching credit, in keyset order
+    public List<CarbonCredit> find(String projectId, Integer vintageYear, CarbonCredit.CreditStatus status,
+            Double minPrice, Double maxPrice) {
+        Query query = query(criteria(projectId, vintageYear, status, minPrice, maxPrice));
+        return mongoTemplate.find(query.with(KEYSET.sort()), CarbonCredit.class);
+    }
+
+    /**
+     * @param after  opaque cursor from a previous page's nextCursor, or null
+     * @param fields comma-separated subset of credit fields to return, or null
+     * @throws IllegalArgumentException on an unreadable cursor or unknown field
+     */
+    public Map<String, Object> search(String projectId, Integer vintageYear, CarbonCredit.CreditStatus status,
+            Double minPrice, Double maxPrice, String after, Integer size, String fields) {
+        int limit = (size == null) ? DEFAULT_PAGE_SIZE : Math.min(Math.max(1, size), MAX_PAGE_SIZE);
+
+        List<Criteria> criteria = criteria(projectId, vintageYear, status, minPrice, maxPrice);
+        if (after != null && !after.isBlank()) {
+            criteria.add(KEYSET.after(after));
+        }
+
+        Query query = query(criteria);
+        query.with(KEYSET.sort());
+        // One extra row tells us whether another page exists
+        query.limit(limit + 1);
+
+        if (fields != null && !fields.isBlank()) {
+            query.fields().include("pricePerUnit");
+            for (String field : fields.split(",")) {
+                String name = field.trim();
+                if (name.isEmpty() || name.equals("id")) {
+                    continue;
+                }
+                if (!PROJECTABLE_FIELDS.contains(name)) {
+                    throw new IllegalArgumentException("Unknown field: " + name);
+                }
+                query.fields().include(name);
+            }
+        }
+
+        List<CarbonCredit> content = mongoTemplate.find(query, CarbonCredit.class);
+        String nextCursor = null;
+        if (content.size() > limit) {
+            content = content.subList(0, limit);
+            nextCursor = KEYSET.cursorFor(content.get(limit - 1));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", content);
+        result.put("size", limit);
+        result.put("nextCursor", nextCursor);
+        return result;
+    }
+
+    private static List<Criteria> criteria(String projectId, Integer vintageYear, CarbonCredit.CreditStatus status,
+            Double minPrice, Double maxPrice) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (projectId != null) {
+            criteria.add(Criteria.where("projectId").is(projectId));
+        }
+        if (status != null) {
+            criteria.add(Criteria.where("status").is(status));
+        }
+        if (vintageYear != null) {
+            criteria.add(Criteria.where("vintageYear").is(vintageYear));
+        }
+        if (minPrice != null) {
+            criteria.add(Criteria.where("pricePerUnit").gte(minPrice));
+        }
+        if (maxPrice != null) {
+            criteria.add(Criteria.where("pricePerUnit").lte(maxPrice));
+        }
+        return criteria;
+    }
+
+    // Mongo rejects an empty $and, so no filters means no criteria at all
+    private static Query query(List<Criteria> criteria) {
+        return criteria.isEmpty() ? new Query() : new Query(new Criteria().andOperator(criteria));
+    }
+}
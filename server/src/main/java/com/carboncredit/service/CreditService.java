@@ -1,12 +1,19 @@
 package com.carboncredit.service;
 
+import com.carboncredit.model.CarbonCredit;
+import com.carboncredit.model.CreditBlock;
 import com.carboncredit.model.Project;
+import com.carboncredit.repository.CarbonCreditRepository;
 import com.carboncredit.repository.ProjectRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+
 @Service
+@Slf4j
 public class CreditService {
 
     @Autowired
@@ -15,9 +22,18 @@ public class CreditService {
     @Autowired
     private WalletService walletService;
 
+    @Autowired
+    private CarbonCreditRepository carbonCreditRepository;
+
+    @Autowired
+    private SerialBlockRegistry serialBlockRegistry;
+
+    @Autowired
+    private UserActivityService userActivityService;
+
     @Transactional
     public void generateCredits(String projectId, double amount, String userId) {
-        System.out.println("Generating credits. Project: " + projectId + ", Amount: " + amount + ", User: " + userId);
+        log.info("Generating credits. Project: {}, Amount: {}, User: {}", projectId, amount, userId);
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new RuntimeException("Project not found"));
 
@@ -29,12 +45,28 @@ public class CreditService {
         // Update Wallet - Add credits to user's account
         walletService.createWalletIfNotExists(userId);
         walletService.updateBalance(userId, 0.0, amount);
-        System.out.println("Credits generated successfully.");
+
+        // Issue serials for the whole tonnes as one contiguous block
+        int vintageYear = LocalDate.now().getYear();
+        CarbonCredit credit = new CarbonCredit();
+        credit.setProjectId(projectId);
+        credit.setOwnerId(userId);
+        credit.setQuantity(amount);
+        credit.setVintageYear(vintageYear);
+        credit.setStatus(CarbonCredit.CreditStatus.ISSUED);
+        long tonnes = SerialBlockRegistry.wholeTonnes(amount);
+        if (tonnes > 0) {
+            CreditBlock block = serialBlockRegistry.issue(projectId, vintageYear, userId, tonnes);
+            credit.setSerialNumber(block.getSerialRange());
+        }
+        carbonCreditRepository.save(credit);
+        userActivityService.recordCredit(userId, 1);
+        log.info("Credits generated successfully. Serials: {}", credit.getSerialNumber());
     }
 
     @Transactional
     public void consumeCredits(String projectId, double amount, String userId) {
-        System.out.println("Consuming credits. Project: " + projectId + ", Amount: " + amount + ", User: " + userId);
+        log.info("Consuming credits. Project: {}, Amount: {}, User: {}", projectId, amount, userId);
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new RuntimeException("Project not found"));
 
@@ -50,9 +82,13 @@ public class CreditService {
 
         // Update Wallet - Simple stock-like credit deduction
         walletService.createWalletIfNotExists(userId);
+        // Refuse a double retirement before the wallet is touched
+        serialBlockRegistry.checkRetirable(userId, amount);
         // Use negative amount to deduct
         walletService.updateBalance(userId, 0.0, -amount);
-        System.out.println("Credits consumed successfully.");
+        // Consumed credits offset the project's emissions, so their serials are retired
+        serialBlockRegistry.recordRetirement(userId, amount, "CONSUMPTION-" + projectId);
+        log.info("Credits consumed successfully.");
     }
 
     private boolean isReducingProject(Project.ProjectType type) {
@@ -0,0 +1,247 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Retirement;
+import com.carboncredit.model.Trade;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Bulk exports of trades, retirements and the combined credit ledger for
+ * compliance. Rows are read from a Mongo cursor in date order and written to
+ * the output one at a time, so memory use does not grow with the export size.
+ */
+@Service
+public class ExportService {
+
+    private static final int CURSOR_BATCH_SIZE = 1000;
+
+    private static final List<String> TRADE_COLUMNS = List.of(
+            "id", "executedAt", "buyerId", "sellerId", "creditId", "buyOrderId", "sellOrderId",
+            "quantity", "pricePerUnit", "totalAmount");
+
+    private static final List<String> RETIREMENT_COLUMNS = List.of(
+            "id", "retiredAt", "userId", "quantity", "beneficiaryName", "retirementReason", "certificateUrl");
+
+    // Trades and retirements merged into one timeline; for trades userId is the
+    // buyer and counterpartyId the seller
+    private static final List<String> LEDGER_COLUMNS = List.of(
+            "timestamp", "type", "id", "userId", "counterpartyId", "quantity", "pricePerUnit", "totalAmount");
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported export format: " + value);
+        }
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void exportTrades(OutputStream out, Format format, LocalDate from, LocalDate to, String userId)
+            throws IOException {
+        try (Stream<Trade> trades = streamTrades(from, to, userId)) {
+            writeRows(out, format, TRADE_COLUMNS, trades.iterator(), trade -> new Object[] {
+                    trade.getId(), trade.getExecutedAt(), trade.getBuyerId(), trade.getSellerId(),
+                    trade.getCreditId(), trade.getBuyOrderId(), trade.getSellOrderId(),
+                    trade.getQuantity(), trade.getPricePerUnit(), trade.getTotalAmount() });
+        }
+    }
+
+    public void exportRetirements(OutputStream out, Format format, LocalDate from, LocalDate to, String userId)
+            throws IOException {
+        try (Stream<Retirement> retirements = streamRetirements(from, to, userId)) {
+            writeRows(out, format, RETIREMENT_COLUMNS, retirements.iterator(), retirement -> new Object[] {
+                    retirement.getId(), retirement.getRetiredAt(), retirement.getUserId(),
+                    retirement.getQuantity(), retirement.getBeneficiaryName(),
+                    retirement.getRetirementReason(), retirement.getCertificateUrl() });
+        }
+    }
+
+    public void exportLedger(OutputStream out, Format format, LocalDate from, LocalDate to, String userId)
+            throws IOException {
+        try (Stream<Trade> trades = streamTrades(from, to, userId);
+                Stream<Retirement> retirements = streamRetirements(from, to, userId)) {
+            Iterator<Object[]> ledger = new MergingIterator(
+                    trades.map(trade -> new Object[] {
+                            trade.getExecutedAt(), "TRADE", trade.getId(), trade.getBuyerId(), trade.getSellerId(),
+                            trade.getQuantity(), trade.getPricePerUnit(), trade.getTotalAmount() }).iterator(),
+                    retirements.map(retirement -> new Object[] {
+                            retirement.getRetiredAt(), "RETIREMENT", retirement.getId(), retirement.getUserId(),
+                            null, retirement.getQuantity(), null, null }).iterator());
+            writeRows(out, format, LEDGER_COLUMNS, ledger, row -> row);
+        }
+    }
+
+    private Stream<Trade> streamTrades(LocalDate from, LocalDate to, String userId) {
+        Query query = dateRange("executedAt", from, to);
+        if (userId != null) {
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("buyerId").is(userId), Criteria.where("sellerId").is(userId)));
+        }
+        return mongoTemplate.stream(query.with(Sort.by("executedAt", "_id")), Trade.class);
+    }
+
+    private Stream<Retirement> streamRetirements(LocalDate from, LocalDate to, String userId) {
+        Query query = dateRange("retiredAt", from, to);
+        if (userId != null) {
+            query.addCriteria(Criteria.where("userId").is(userId));
+        }
+        return mongoTemplate.stream(query.with(Sort.by("retiredAt", "_id")), Retirement.class);
+    }
+
+    // "to" is inclusive
+    private Query dateRange(String field, LocalDate from, LocalDate to) {
+        Query query = new Query().cursorBatchSize(CURSOR_BATCH_SIZE);
+        if (from != null || to != null) {
+            Criteria range = Criteria.where(field);
+            if (from != null) {
+                range.gte(from.atStartOfDay());
+            }
+            if (to != null) {
+                range.lt(to.plusDays(1).atStartOfDay());
+            }
+            query.addCriteria(range);
+        }
+        return query;
+    }
+
+    private <T> void writeRows(OutputStream out, Format format, List<String> columns, Iterator<T> rows,
+            Function<T, Object[]> values) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) {
+            writeCsvLine(writer, columns.toArray());
+            while (rows.hasNext()) {
+                writeCsvLine(writer, values.apply(rows.next()));
+            }
+        } else {
+            ObjectWriter json = objectMapper.writer();
+            Map<String, Object> record = new LinkedHashMap<>();
+            while (rows.hasNext()) {
+                Object[] row = values.apply(rows.next());
+                for (int i = 0; i < row.length; i++) {
+                    record.put(columns.get(i), row[i]);
+                }
+                writer.write(json.writeValueAsString(record));
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeCsvLine(Writer writer, Object[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (row[i] instanceof String text) {
+                writer.write(csvEscape(neutralizeFormula(text)));
+            } else if (row[i] != null) {
+                writer.write(csvEscape(row[i].toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    // User-entered text such as beneficiaryName must not be run as a formula when
+    // the file is opened in a spreadsheet; numbers are written as they are
+    private static String neutralizeFormula(String value) {
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            return "'" + value;
+        }
+        return value;
+    }
+
+    private static String csvEscape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Merges two iterators of ledger rows that are each already ordered by their
+     * first column (timestamp, nulls first), keeping one row of lookahead each.
+     */
+    private static final class MergingIterator implements Iterator<Object[]> {
+        private static final Comparator<LocalDateTime> ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+        private final Iterator<Object[]> left;
+        private final Iterator<Object[]> right;
+        private Object[] nextLeft;
+        private Object[] nextRight;
+
+        private MergingIterator(Iterator<Object[]> left, Iterator<Object[]> right) {
+            this.left = left;
+            this.right = right;
+            this.nextLeft = left.hasNext() ? left.next() : null;
+            this.nextRight = right.hasNext() ? right.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextLeft != null || nextRight != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] row;
+            if (nextRight == null || (nextLeft != null
+                    && ORDER.compare((LocalDateTime) nextLeft[0], (LocalDateTime) nextRight[0]) <= 0)) {
+                row = nextLeft;
+                nextLeft = left.hasNext() ? left.next() : null;
+            } else {
+                row = nextRight;
+                nextRight = right.hasNext() ? right.next() : null;
+            }
+            return row;
+        }
+    }
+}
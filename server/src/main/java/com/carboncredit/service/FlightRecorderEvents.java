@@ -0,0 +1,105 @@
+package com.carboncredit.service;
+
+import jdk.jfr.*;
+
+/**
+ * Custom JFR events for the marketplace and ingestion paths. They are recorded by
+ * any JFR recording (continuous -XX:StartFlightRecording or one started from
+ * /admin/jfr), so GC pauses and lock contention in the same recording can be tied
+ * to individual trades, settlements and messages.
+ *
+ * Usage: begin(), do the work, end(), then fill the fields and commit() only if
+ * shouldCommit(); with no recording running this costs next to nothing.
+ */
+public final class FlightRecorderEvents {
+
+    public static final String CATEGORY = "Carbon Credit";
+
+    private FlightRecorderEvents() {
+    }
+
+    @Name("com.carboncredit.TradeExecution")
+    @Label("Trade Execution")
+    @Description("Matched buy and sell orders executed as a trade, including settlement and refund")
+    @Category({ CATEGORY, "Marketplace" })
+    @StackTrace(false)
+    public static class TradeExecution extends Event {
+        @Label("Trade ID")
+        public String tradeId;
+
+        @Label("Buy Order ID")
+        public String buyOrderId;
+
+        @Label("Sell Order ID")
+        public String sellOrderId;
+
+        @Label("Quantity")
+        public double quantity;
+
+        @Label("Price")
+        public double price;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("com.carboncredit.TradeSettlement")
+    @Label("Trade Settlement")
+    @Description("Buyer and seller wallet updates for one trade")
+    @Category({ CATEGORY, "Marketplace" })
+    @StackTrace(false)
+    public static class TradeSettlement extends Event {
+        @Label("Buyer ID")
+        public String buyerId;
+
+        @Label("Seller ID")
+        public String sellerId;
+
+        @Label("Quantity")
+        public double quantity;
+
+        @Label("Price")
+        public double price;
+
+        @Label("Outcome")
+        @Description("settled, or which side's wallet did not match")
+        public String outcome;
+    }
+
+    @Name("com.carboncredit.UsageMessage")
+    @Label("Usage Message")
+    @Description("One MQTT usage message parsed, evaluated for alerts and stored")
+    @Category({ CATEGORY, "Ingestion" })
+    @StackTrace(false)
+    public static class UsageMessage extends Event {
+        @Label("User ID")
+        public String userId;
+
+        @Label("CO2 (kg)")
+        public double co2Kg;
+
+        @Label("Payload Size")
+        @DataAmount
+        public int payloadBytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("com.carboncredit.RequestAuthentication")
+    @Label("Request Authentication")
+    @Description("JWT verification and principal lookup for one request")
+    @Category({ CATEGORY, "Security" })
+    @StackTrace(false)
+    public static class RequestAuthentication extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("User ID")
+        public String userId;
+
+        @Label("Outcome")
+        @Description("authenticated, legacy (database lookup), revoked, invalid, none or error")
+        public String outcome;
+    }
+}
@@ -0,0 +1,136 @@
+package com.carboncredit.service;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-demand JFR recordings for production profiling, driven from /admin/jfr.
+ *
+ * At most one recording exists at a time. It is bounded in size and duration
+ * (it stops by itself after the duration) and uses one of the JDK's settings
+ * ("default" or the more detailed "profile") plus the application's own events
+ * from {@link FlightRecorderEvents}. A stopped recording stays available for
+ * download until the next one is started.
+ */
+@Service
+@Slf4j
+public class FlightRecorderService {
+
+    private static final String[] APPLICATION_EVENTS = {
+            "com.carboncredit.TradeExecution",
+            "com.carboncredit.TradeSettlement",
+            "com.carboncredit.UsageMessage",
+            "com.carboncredit.RequestAuthentication" };
+
+    @Value("${jfr.recording.max-size-mb:100}")
+    private long maxSizeMb = 100;
+
+    @Value("${jfr.recording.max-duration-minutes:30}")
+    private long maxDurationMinutes = 30;
+
+    private Recording recording;
+
+    /**
+     * Starts a recording.
+     *
+     * @throws IllegalStateException    if one is already running
+     * @throws IllegalArgumentException for unknown settings or a bad duration
+     */
+    public synchronized Map<String, Object> start(String settings, Integer durationMinutes) {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        long minutes = durationMinutes == null ? maxDurationMinutes : durationMinutes;
+        if (minutes < 1 || minutes > maxDurationMinutes) {
+            throw new IllegalArgumentException("Duration must be between 1 and " + maxDurationMinutes + " minutes");
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings == null ? "default" : settings);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown recording settings: " + settings);
+        }
+
+        closeRecording();
+        Recording next = new Recording(configuration);
+        next.setName("carbon-credit-admin");
+        next.setToDisk(true);
+        next.setMaxSize(maxSizeMb * 1024 * 1024);
+        next.setDuration(Duration.ofMinutes(minutes));
+        for (String event : APPLICATION_EVENTS) {
+            next.enable(event);
+        }
+        next.start();
+        recording = next;
+        log.info("Started JFR recording ({} settings, {} min, max {} MB)", configuration.getName(), minutes,
+                maxSizeMb);
+        return getStatus();
+    }
+
+    public synchronized Map<String, Object> stop() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("No recording is running");
+        }
+        recording.stop();
+        log.info("Stopped JFR recording ({} bytes)", recording.getSize());
+        return getStatus();
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        status.put("startTime", recording.getStartTime());
+        status.put("stopTime", recording.getStopTime());
+        status.put("duration", recording.getDuration());
+        status.put("sizeBytes", recording.getSize());
+        status.put("maxSizeBytes", recording.getMaxSize());
+        return status;
+    }
+
+    /**
+     * Writes the current recording (a snapshot if it is still running) to out.
+     *
+     * @throws IllegalStateException if there is nothing to download
+     */
+    public void dump(OutputStream out) throws IOException {
+        Path file = Files.createTempFile("carbon-credit-", ".jfr");
+        try {
+            synchronized (this) {
+                if (recording == null || recording.getState() == RecordingState.NEW
+                        || recording.getState() == RecordingState.CLOSED) {
+                    throw new IllegalStateException("No recording to download");
+                }
+                recording.dump(file);
+            }
+            Files.copy(file, out);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.carboncredit.service;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Keyset (seek) pagination over a (sortField, _id) ordering. Pages are resumed
+ * from an opaque cursor holding the last row's sort value and id, so every page
+ * is an index range scan regardless of how deep the client has paged.
+ *
+ * Sort values may be LocalDateTime, numbers, strings or null (nulls order
+ * first ascending and last descending, as in Mongo).
+ */
+public final class Keyset<T> {
+
+    private static final String ID_FIELD = "_id";
+
+    private final String field;
+    private final Sort.Direction direction;
+    private final Function<T, Object> sortValue;
+    private final Function<T, String> id;
+
+    private Keyset(String field, Sort.Direction direction, Function<T, Object> sortValue, Function<T, String> id) {
+        this.field = field;
+        this.direction = direction;
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+    public static <T> Keyset<T> of(String field, Sort.Direction direction, Function<T, Object> sortValue,
+            Function<T, String> id) {
+        return new Keyset<>(field, direction, sortValue, id);
+    }
+
+    // Ordered by _id alone, for collections without a natural sort key
+    public static <T> Keyset<T> byId(Sort.Direction direction, Function<T, String> id) {
+        return new Keyset<>(ID_FIELD, direction, item -> null, id);
+    }
+
+    public Sort sort() {
+        if (ID_FIELD.equals(field)) {
+            return Sort.by(direction, ID_FIELD);
+        }
+        return Sort.by(new Sort.Order(direction, field), new Sort.Order(direction, ID_FIELD));
+    }
+
+    public String cursorFor(T last) {
+        Object value = sortValue.apply(last);
+        String encodedValue;
+        if (value == null) {
+            encodedValue = "n";
+        } else if (value instanceof LocalDateTime) {
+            encodedValue = "t" + value;
+        } else if (value instanceof Number) {
+            encodedValue = "d" + ((Number) value).doubleValue();
+        } else {
+            encodedValue = "s" + value;
+        }
+        // id first: ids never contain a newline, values are taken verbatim
+        String raw = id.apply(last) + "\n" + encodedValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Criteria selecting the rows strictly after the given cursor.
+     *
+     * @throws IllegalArgumentException if the cursor cannot be decoded
+     */
+    public Criteria after(String cursor) {
+        String lastId;
+        Object value;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('\n');
+            lastId = raw.substring(0, separator);
+            value = decodeValue(raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        boolean ascending = direction.isAscending();
+        Criteria idAfter = ascending ? Criteria.where(ID_FIELD).gt(lastId) : Criteria.where(ID_FIELD).lt(lastId);
+        if (ID_FIELD.equals(field)) {
+            return idAfter;
+        }
+
+        Criteria tie = new Criteria().andOperator(Criteria.where(field).is(value), idAfter);
+        if (value == null) {
+            // Nulls come first ascending, so every non-null row follows them
+            return ascending ? new Criteria().orOperator(tie, Criteria.where(field).ne(null)) : tie;
+        }
+        Criteria beyond = ascending ? Criteria.where(field).gt(value) : Criteria.where(field).lt(value);
+        if (ascending) {
+            return new Criteria().orOperator(beyond, tie);
+        }
+        return new Criteria().orOperator(beyond, tie, Criteria.where(field).is(null));
+    }
+
+    private static Object decodeValue(String encoded) {
+        switch (encoded.charAt(0)) {
+            case 'n':
+                return null;
+            case 't':
+                return LocalDateTime.parse(encoded.substring(1));
+            case 'd':
+                return Double.parseDouble(encoded.substring(1));
+            case 's':
+                return encoded.substring(1);
+            default:
+                throw new IllegalArgumentException("Unknown cursor value type");
+        }
+    }
+}
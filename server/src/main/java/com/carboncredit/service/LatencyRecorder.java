@@ -0,0 +1,184 @@
+package com.carboncredit.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tail-latency recording for order entry and matching, per stage, in HdrHistogram
+ * recorders. Recording is wait-free and allocation-free, so it can sit on the
+ * order path; the percentiles the Micrometer timers expose are bucket estimates,
+ * these are exact to two significant digits up to 60s.
+ *
+ * Every latency.interval-ms the recorders are swapped: the interval histogram is
+ * kept for /admin/latency, added to the since-start totals and appended to the
+ * HdrHistogram log (one file per day under latency.log.dir, read with
+ * HistogramLogProcessor or HistogramLogAnalyzer).
+ */
+@Component
+@Slf4j
+public class LatencyRecorder {
+
+    public enum Stage {
+        // MarketplaceController.createOrder, request to acknowledgement
+        VALIDATION,
+        RESERVATION,
+        PERSISTENCE,
+        BOOK_INSERT,
+        // Waiting for and running the match triggered by the new order
+        MATCHING,
+        ORDER_TOTAL,
+        // One OrderMatchingService.matchOrders pass, excluding lock wait
+        MATCH_CYCLE
+    }
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final double NANOS_PER_MS = 1_000_000.0;
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Value("${latency.log.enabled:true}")
+    private boolean logEnabled = true;
+
+    @Value("${latency.log.dir:./logs/latency}")
+    private String logDir = "./logs/latency";
+
+    @Value("${latency.log.retain-days:7}")
+    private int retainDays = 7;
+
+    private final Stage[] stages = Stage.values();
+    private final Recorder[] recorders = new Recorder[stages.length];
+    private final Histogram[] intervals = new Histogram[stages.length];
+    private final Histogram[] totals = new Histogram[stages.length];
+
+    private HistogramLogWriter logWriter;
+    private LocalDate logDate;
+
+    public LatencyRecorder() {
+        for (int i = 0; i < stages.length; i++) {
+            recorders[i] = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+            intervals[i] = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+            totals[i] = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        }
+    }
+
+    /**
+     * Records the time since startNanos (a System.nanoTime() value) for the stage.
+     *
+     * @return now, so consecutive stages can be chained
+     */
+    public long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        recorders[stage.ordinal()].recordValue(Math.min(Math.max(now - startNanos, 0), HIGHEST_TRACKABLE_NANOS));
+        return now;
+    }
+
+    @Scheduled(fixedRateString = "${latency.interval-ms:10000}", initialDelayString = "${latency.interval-ms:10000}")
+    public synchronized void rollInterval() {
+        for (int i = 0; i < stages.length; i++) {
+            recorders[i].getIntervalHistogramInto(intervals[i]);
+            totals[i].add(intervals[i]);
+        }
+        if (logEnabled) {
+            writeLog();
+        }
+    }
+
+    /**
+     * Latest interval and since-start percentiles per stage, in milliseconds.
+     */
+    public synchronized Map<String, Object> getSnapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (int i = 0; i < stages.length; i++) {
+            Map<String, Object> stage = new LinkedHashMap<>();
+            stage.put("interval", summarize(intervals[i]));
+            stage.put("total", summarize(totals[i]));
+            snapshot.put(stages[i].name(), stage);
+        }
+        return snapshot;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < stages.length; i++) {
+            recorders[i].reset();
+            intervals[i].reset();
+            totals[i].reset();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (logWriter != null) {
+            logWriter.close();
+            logWriter = null;
+        }
+    }
+
+    private void writeLog() {
+        try {
+            LocalDate today = LocalDate.now();
+            if (logWriter == null || !today.equals(logDate)) {
+                openLog(today);
+            }
+            for (int i = 0; i < stages.length; i++) {
+                if (intervals[i].getTotalCount() > 0) {
+                    intervals[i].setTag(stages[i].name());
+                    logWriter.outputIntervalHistogram(intervals[i].getStartTimeStamp() / 1000.0,
+                            intervals[i].getEndTimeStamp() / 1000.0, intervals[i], NANOS_PER_MS);
+                }
+            }
+        } catch (IOException e) {
+            // Logging is best effort; intervals stay available from the endpoint
+            log.warn("Could not write latency log: {}", e.getMessage());
+            logEnabled = false;
+        }
+    }
+
+    private void openLog(LocalDate today) throws IOException {
+        close();
+        Path dir = Files.createDirectories(Paths.get(logDir));
+        File file = dir.resolve("order-latency-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".hlog").toFile();
+        logWriter = new HistogramLogWriter(file);
+        logWriter.outputLogFormatVersion();
+        logWriter.outputComment("Values in nanoseconds, max column in milliseconds, tagged by stage");
+        logWriter.outputStartTime(System.currentTimeMillis());
+        logWriter.outputLegend();
+        logDate = today;
+
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retainDays);
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(dir, "order-latency-*.hlog")) {
+            for (Path old : logs) {
+                if (Files.getLastModifiedTime(old).toMillis() < cutoff) {
+                    Files.deleteIfExists(old);
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> summarize(Histogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("meanMs", histogram.getMean() / NANOS_PER_MS);
+        summary.put("p50Ms", histogram.getValueAtPercentile(50) / NANOS_PER_MS);
+        summary.put("p90Ms", histogram.getValueAtPercentile(90) / NANOS_PER_MS);
+        summary.put("p99Ms", histogram.getValueAtPercentile(99) / NANOS_PER_MS);
+        summary.put("p999Ms", histogram.getValueAtPercentile(99.9) / NANOS_PER_MS);
+        summary.put("maxMs", histogram.getMaxValue() / NANOS_PER_MS);
+        return summary;
+    }
+}
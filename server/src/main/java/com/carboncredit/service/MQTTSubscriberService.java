@@ -73,8 +73,8 @@ public class MQTTSubscriberService {
                     // But here we know the userId from the config context.
                     // However, the payload might be generic.
                     // We should probably enrich the payload or handle it.
-                    // For now, we just pass it. UsageService handles "raw number" by assigning to
-                    // DEFAULT_USER.
+                    // For now, we just pass it. UsageService rejects a "raw number" unless the
+                    // user is known.
                     // If we know the userId, we should probably pass it explicitly?
                     // The prompt says: "The ESP32 payload includes a userId... or There is a simple
                     // mapping logic".
@@ -0,0 +1,232 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CarbonCredit;
+import com.carboncredit.model.Trade;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Monthly trade and credit-issuance counts for the admin market activity chart.
+ * Each request runs at most one $group-by-month aggregation per collection over
+ * the months it does not already know. Counts for closed months are cached (up
+ * to market.activity.cache.max-months of them); only the current month is
+ * recomputed on every request.
+ *
+ * A closed month can still change: an admin may create a credit with a past
+ * issuedAt, trades may be back-dated, and either may be deleted. Saves evict the
+ * month they land in and deletes drop the cache; cached months also expire
+ * after market.activity.cache.ttl-ms for writes that bypass the mapping layer.
+ * The response has one entry per requested month. Months before the earliest
+ * trade or credit, and months after the current one, are reported as zeros
+ * without being aggregated or cached, so an early "from" costs nothing.
+ */
+@Service
+public class MarketActivityService extends AbstractMongoEventListener<Object> {
+
+    private static final DateTimeFormatter LABEL_FORMAT = DateTimeFormatter.ofPattern("MMM yyyy");
+    private static final String MONTH_FORMAT = "%Y-%m";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${market.activity.cache.max-months:240}")
+    private int maxCachedMonths = 240;
+
+    @Value("${market.activity.cache.ttl-ms:3600000}")
+    private long ttlMs = 3600000;
+
+    // Closed month -> {trades, newCredits}, least recently used first
+    private final Map<YearMonth, CachedMonth> closedMonths = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<YearMonth, CachedMonth> eldest) {
+            return size() > maxCachedMonths;
+        }
+    };
+
+    // Month of the oldest trade or credit; null until looked up (again)
+    private volatile YearMonth earliestMonth;
+
+    // Bumped on every eviction, so counts read before one are not cached after it
+    private final AtomicLong generation = new AtomicLong();
+
+    private record CachedMonth(long[] counts, long cachedAt) {
+    }
+
+    public Map<String, Object> getMarketActivity(LocalDate startDate, LocalDate endDate) {
+        long readGeneration = generation.get();
+        YearMonth currentMonth = YearMonth.now();
+        YearMonth first = YearMonth.from(startDate);
+        YearMonth last = YearMonth.from(endDate);
+        // Only months between the earliest data and now can hold counts
+        YearMonth earliest = earliestMonth();
+        YearMonth dataFirst = first.isBefore(earliest) ? earliest : first;
+        YearMonth dataLast = last.isAfter(currentMonth) ? currentMonth : last;
+
+        // Read what is cached, and find the span of months that is not (open or not yet seen)
+        Map<YearMonth, long[]> known = new HashMap<>();
+        YearMonth missingFrom = null;
+        YearMonth missingTo = null;
+        long now = System.currentTimeMillis();
+        synchronized (closedMonths) {
+            for (YearMonth month = dataFirst; !month.isAfter(dataLast); month = month.plusMonths(1)) {
+                CachedMonth cached = month.isBefore(currentMonth) ? closedMonths.get(month) : null;
+                if (cached != null && now - cached.cachedAt() < ttlMs) {
+                    known.put(month, cached.counts());
+                } else {
+                    if (missingFrom == null) {
+                        missingFrom = month;
+                    }
+                    missingTo = month;
+                }
+            }
+        }
+
+        Map<String, Long> trades = Collections.emptyMap();
+        Map<String, Long> credits = Collections.emptyMap();
+        if (missingFrom != null) {
+            trades = countByMonth(Trade.class, "executedAt", missingFrom, missingTo);
+            credits = countByMonth(CarbonCredit.class, "issuedAt", missingFrom, missingTo);
+        }
+
+        List<String> labels = new ArrayList<>();
+        List<Long> tradesData = new ArrayList<>();
+        List<Long> creditsData = new ArrayList<>();
+
+        long[] none = { 0L, 0L };
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            long[] counts = known.get(month);
+            if (month.isBefore(dataFirst) || month.isAfter(dataLast)) {
+                counts = none;
+            } else if (counts == null) {
+                String key = month.toString(); // yyyy-MM, same as MONTH_FORMAT
+                counts = new long[] { trades.getOrDefault(key, 0L), credits.getOrDefault(key, 0L) };
+                if (month.isBefore(currentMonth)) {
+                    synchronized (closedMonths) {
+                        if (generation.get() == readGeneration) {
+                            closedMonths.put(month, new CachedMonth(counts, now));
+                        }
+                    }
+                }
+            }
+            labels.add(month.format(LABEL_FORMAT));
+            tradesData.add(counts[0]);
+            creditsData.add(counts[1]);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("labels", labels);
+        response.put("trades", tradesData);
+        response.put("newCredits", creditsData);
+        return response;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        LocalDateTime at = null;
+        if (event.getSource() instanceof Trade trade) {
+            at = trade.getExecutedAt();
+        } else if (event.getSource() instanceof CarbonCredit credit) {
+            at = credit.getIssuedAt();
+        }
+        if (at == null) {
+            return;
+        }
+        YearMonth month = YearMonth.from(at);
+        if (!month.isBefore(YearMonth.now())) {
+            return; // the open month is never cached; the usual case for live trades
+        }
+        synchronized (closedMonths) {
+            generation.incrementAndGet();
+            closedMonths.remove(month);
+        }
+        YearMonth earliest = earliestMonth;
+        if (earliest != null && month.isBefore(earliest)) {
+            earliestMonth = month;
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        // The event only carries the delete filter, not the document's date
+        if (Trade.class.equals(event.getType()) || CarbonCredit.class.equals(event.getType())) {
+            clear();
+        }
+    }
+
+    public void clear() {
+        synchronized (closedMonths) {
+            generation.incrementAndGet();
+            closedMonths.clear();
+        }
+        earliestMonth = null;
+    }
+
+    private YearMonth earliestMonth() {
+        YearMonth earliest = earliestMonth;
+        if (earliest == null) {
+            LocalDateTime firstTrade = oldest(Trade.class, "executedAt", Trade::getExecutedAt);
+            LocalDateTime firstCredit = oldest(CarbonCredit.class, "issuedAt", CarbonCredit::getIssuedAt);
+            LocalDateTime first = firstTrade == null ? firstCredit
+                    : firstCredit == null || firstTrade.isBefore(firstCredit) ? firstTrade : firstCredit;
+            earliest = first != null ? YearMonth.from(first) : YearMonth.now();
+            earliestMonth = earliest;
+        }
+        return earliest;
+    }
+
+    // Served by the executed_at_id / issued_at_id indexes
+    private <T> LocalDateTime oldest(Class<T> entity, String dateField,
+            Function<T, LocalDateTime> date) {
+        Query query = new Query(Criteria.where(dateField).ne(null)).with(Sort.by(Sort.Direction.ASC, dateField));
+        query.fields().include(dateField);
+        T row = mongoTemplate.findOne(query, entity);
+        return row != null ? date.apply(row) : null;
+    }
+
+    private Map<String, Long> countByMonth(Class<?> entity, String dateField, YearMonth from, YearMonth to) {
+        ZoneId zone = ZoneId.systemDefault();
+        Date start = Date.from(from.atDay(1).atStartOfDay(zone).toInstant());
+        Date end = Date.from(to.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant());
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where(dateField).gte(start).lt(end)),
+                Aggregation.project()
+                        .and(DateOperators.DateToString.dateOf(dateField)
+                                .toString(MONTH_FORMAT)
+                                .withTimezone(DateOperators.Timezone.valueOf(mongoTimezone(zone))))
+                        .as("month"),
+                Aggregation.group("month").count().as("count"));
+
+        Map<String, Long> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, entity, Document.class).getMappedResults()) {
+            counts.put(row.getString("_id"), ((Number) row.get("count")).longValue());
+        }
+        return counts;
+    }
+
+    // Mongo accepts Olson ids or "+hh:mm" offsets, but not "Z"
+    private static String mongoTimezone(ZoneId zone) {
+        return ZoneOffset.UTC.equals(zone) ? "+00:00" : zone.getId();
+    }
+}
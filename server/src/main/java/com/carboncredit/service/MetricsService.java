@@ -0,0 +1,96 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Order;
+import io.micrometer.core.instrument.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the marketplace hot paths, usage ingestion and password
+ * hashing, scraped from /actuator/prometheus on the management port.
+ *
+ * Callers pass System.nanoTime() start values rather than Micrometer types, so
+ * services can be unit tested against a mocked MetricsService.
+ */
+@Component
+public class MetricsService {
+
+    public static final String APPLIED = "applied";
+    public static final String REJECTED = "rejected";
+    public static final String ERROR = "error";
+
+    private final Timer buyEntry;
+    private final Timer sellEntry;
+    private final Timer settlement;
+    private final Counter fills;
+    private final Counter fillVolume;
+    private final Meter.MeterProvider<Timer> walletUpdates;
+    private final Meter.MeterProvider<Counter> usageRecords;
+    private final Meter.MeterProvider<Timer> passwordHashes;
+
+    @Autowired
+    public MetricsService(MeterRegistry registry, OrderBook orderBook) {
+        buyEntry = orderEntryTimer(registry, "buy");
+        sellEntry = orderEntryTimer(registry, "sell");
+        settlement = Timer.builder("marketplace.settlement")
+                .description("Time from a match being found until both wallets are settled")
+                .register(registry);
+        fills = Counter.builder("marketplace.fills")
+                .description("Trades executed")
+                .register(registry);
+        fillVolume = Counter.builder("marketplace.fill.volume")
+                .description("Credits traded")
+                .baseUnit("credits")
+                .register(registry);
+        for (Order.OrderType side : Order.OrderType.values()) {
+            Gauge.builder("marketplace.book.depth", orderBook, book -> book.depth(side))
+                    .description("Resting orders in the book")
+                    .tag("side", side.name().toLowerCase())
+                    .register(registry);
+        }
+        walletUpdates = Timer.builder("wallet.update")
+                .description("Atomic wallet updates by operation and outcome (rejected: guard not met)")
+                .withRegistry(registry);
+        usageRecords = Counter.builder("usage.ingest.records")
+                .description("Usage records received by source and outcome")
+                .withRegistry(registry);
+        passwordHashes = Timer.builder("auth.password.hash")
+                .description("BCrypt hashing (encode) and verification (matches) by cost factor")
+                .withRegistry(registry);
+    }
+
+    public void recordOrderEntry(Order.OrderType side, long startNanos) {
+        (side == Order.OrderType.BUY ? buyEntry : sellEntry).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFill(double quantity, long matchedAtNanos) {
+        settlement.record(System.nanoTime() - matchedAtNanos, TimeUnit.NANOSECONDS);
+        fills.increment();
+        fillVolume.increment(quantity);
+    }
+
+    public void recordWalletUpdate(String operation, String outcome, long startNanos) {
+        walletUpdates.withTags("operation", operation, "outcome", outcome)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUsage(String source, String outcome, long count) {
+        if (count > 0) {
+            usageRecords.withTags("source", source, "outcome", outcome).increment(count);
+        }
+    }
+
+    public void recordPasswordHash(String operation, int cost, long startNanos) {
+        passwordHashes.withTags("operation", operation, "cost", Integer.toString(cost))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer orderEntryTimer(MeterRegistry registry, String side) {
+        return Timer.builder("marketplace.order.entry")
+                .description("Adding an order to the book, including the matching it triggers")
+                .tag("side", side)
+                .register(registry);
+    }
+}
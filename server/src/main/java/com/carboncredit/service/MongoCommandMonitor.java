@@ -0,0 +1,217 @@
+package com.carboncredit.service;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver-level timing of every Mongo command, registered on the MongoClient (see
+ * MongoMonitoringConfig).
+ *
+ * Commands are timed into mongodb.command, tagged by command, collection, status
+ * and origin: the repository method that issued them (set by the repository
+ * proxy interceptor), or "template" for direct MongoTemplate use. Commands slower
+ * than mongo.slow-command-ms are logged with their filter shape (field names and
+ * operators, values replaced by "?") and the application frame that ran them.
+ */
+@Component
+@Slf4j
+public class MongoCommandMonitor implements CommandListener {
+
+    public static final String TEMPLATE_ORIGIN = "template";
+
+    private static final String UNKNOWN_COLLECTION = "-";
+    private static final int MAX_TOP = 50;
+
+    // Repository method currently running on this thread (sync driver: listeners run on the caller)
+    private static final ThreadLocal<String> ORIGIN = new ThreadLocal<>();
+
+    // Commands whose filter is worth showing in the slow log, and where it is
+    private static final Map<String, String> FILTER_FIELDS = Map.of(
+            "find", "filter",
+            "count", "query",
+            "distinct", "query",
+            "findAndModify", "query",
+            "aggregate", "pipeline",
+            "update", "updates",
+            "delete", "deletes");
+
+    private final MeterRegistry registry;
+    private final Meter.MeterProvider<Timer> commandTimers;
+    private final ConcurrentMap<Long, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${mongo.slow-command-ms:100}")
+    private long slowCommandMs = 100;
+
+    public MongoCommandMonitor(MeterRegistry registry) {
+        this.registry = registry;
+        this.commandTimers = Timer.builder("mongodb.command")
+                .description("Mongo commands by collection and issuing repository method")
+                .withRegistry(registry);
+    }
+
+    /**
+     * Marks commands on this thread as issued by the given origin until the
+     * returned previous origin is restored with {@link #restoreOrigin}.
+     */
+    public static String enterOrigin(String origin) {
+        String previous = ORIGIN.get();
+        ORIGIN.set(origin);
+        return previous;
+    }
+
+    public static void restoreOrigin(String previous) {
+        if (previous == null) {
+            ORIGIN.remove();
+        } else {
+            ORIGIN.set(previous);
+        }
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        String command = event.getCommandName();
+        BsonDocument document = event.getCommand();
+        // getMore names its collection separately; the command value is the cursor id
+        BsonValue target = document.get("getMore".equals(command) ? "collection" : command);
+        String collection = target != null && target.isString() ? target.asString().getValue() : UNKNOWN_COLLECTION;
+        String origin = ORIGIN.get();
+        // The command document is only valid during this callback, so the shape is taken now
+        String filterField = FILTER_FIELDS.get(command);
+        String shape = filterField != null && document.containsKey(filterField)
+                ? shapeOf(filterOf(document.get(filterField))).toString()
+                : null;
+        inFlight.put(key(event.getConnectionDescription().getConnectionId().getLocalValue(), event.getRequestId()),
+                new InFlight(collection, origin != null ? origin : TEMPLATE_ORIGIN, shape));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        finish(event.getConnectionDescription().getConnectionId().getLocalValue(), event.getRequestId(),
+                event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), "success");
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        finish(event.getConnectionDescription().getConnectionId().getLocalValue(), event.getRequestId(),
+                event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), "failure");
+    }
+
+    /**
+     * Busiest command/collection/origin combinations by total time since start.
+     */
+    public List<Map<String, Object>> getTopCommands() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Timer timer : registry.find("mongodb.command").timers()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("origin", timer.getId().getTag("origin"));
+            row.put("command", timer.getId().getTag("command"));
+            row.put("collection", timer.getId().getTag("collection"));
+            row.put("status", timer.getId().getTag("status"));
+            row.put("count", timer.count());
+            row.put("totalMs", timer.totalTime(TimeUnit.MILLISECONDS));
+            row.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+            row.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+            rows.add(row);
+        }
+        rows.sort(Comparator.comparingDouble((Map<String, Object> row) -> (double) row.get("totalMs")).reversed());
+        return rows.size() > MAX_TOP ? new ArrayList<>(rows.subList(0, MAX_TOP)) : rows;
+    }
+
+    private void finish(long connectionId, int requestId, String command, long elapsedNanos, String status) {
+        InFlight started = inFlight.remove(key(connectionId, requestId));
+        if (started == null) {
+            return;
+        }
+        commandTimers.withTags("command", command, "collection", started.collection,
+                "origin", started.origin, "status", status)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (elapsedMs >= slowCommandMs) {
+            log.warn("Slow Mongo {} on {} ({}): {} ms, origin {} via {}, filter {}", command, started.collection,
+                    status, elapsedMs, started.origin, callerFrame(), started.shape);
+        }
+    }
+
+    // First application frame outside this class; only walked for slow commands
+    private static String callerFrame() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("com.carboncredit.")
+                        && !frame.getClassName().startsWith(MongoCommandMonitor.class.getName()))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("driver"));
+    }
+
+    // Bulk updates/deletes carry one statement per document; the first one's filter stands for all
+    private static BsonValue filterOf(BsonValue value) {
+        if (value.isArray() && !value.asArray().isEmpty() && value.asArray().get(0).isDocument()) {
+            BsonDocument first = value.asArray().get(0).asDocument();
+            if (first.containsKey("q")) {
+                return first.get("q");
+            }
+        }
+        return value;
+    }
+
+    /**
+     * The structure of a filter with every literal replaced by "?", so that
+     * equivalent queries log identically and no values end up in the log.
+     */
+    static BsonValue shapeOf(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument shape = new BsonDocument();
+            for (Map.Entry<String, BsonValue> entry : value.asDocument().entrySet()) {
+                shape.put(entry.getKey(), shapeOf(entry.getValue()));
+            }
+            return shape;
+        }
+        if (value.isArray()) {
+            BsonArray array = value.asArray();
+            // $in / $nin lists collapse to one placeholder; $and / $or / pipelines keep structure
+            if (!array.isEmpty() && !array.get(0).isDocument() && !array.get(0).isArray()) {
+                return new BsonString("[?]");
+            }
+            BsonArray shape = new BsonArray();
+            for (BsonValue element : array) {
+                shape.add(shapeOf(element));
+            }
+            return shape;
+        }
+        return new BsonString("?");
+    }
+
+    private static long key(long connectionId, int requestId) {
+        return (connectionId << 32) ^ (requestId & 0xFFFFFFFFL);
+    }
+
+    private static final class InFlight {
+        final String collection;
+        final String origin;
+        final String shape;
+
+        InFlight(String collection, String origin, String shape) {
+            this.collection = collection;
+            this.origin = origin;
+            this.shape = shape;
+        }
+    }
+}
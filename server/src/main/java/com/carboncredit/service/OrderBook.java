@@ -6,6 +6,7 @@ import org.springframework.stereotype.Component;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class OrderBook {
@@ -19,12 +20,18 @@ public class OrderBook {
     // Quick lookup for cancellation
     private final Map<String, Order> orderMap = new ConcurrentHashMap<>();
 
+    // Resting orders per side, readable without the book lock (metrics)
+    private final AtomicInteger buyDepth = new AtomicInteger();
+    private final AtomicInteger sellDepth = new AtomicInteger();
+
     public synchronized void addOrder(Order order) {
         orderMap.put(order.getId(), order);
         if (order.getType() == Order.OrderType.BUY) {
             buyOrders.computeIfAbsent(order.getPricePerUnit(), k -> new ArrayList<>()).add(order);
+            buyDepth.incrementAndGet();
         } else {
             sellOrders.computeIfAbsent(order.getPricePerUnit(), k -> new ArrayList<>()).add(order);
+            sellDepth.incrementAndGet();
         }
     }
 
@@ -33,16 +40,16 @@ public class OrderBook {
         if (order != null) {
             if (order.getType() == Order.OrderType.BUY) {
                 List<Order> orders = buyOrders.get(order.getPricePerUnit());
-                if (orders != null) {
-                    orders.remove(order);
+                if (orders != null && orders.remove(order)) {
+                    buyDepth.decrementAndGet();
                     if (orders.isEmpty()) {
                         buyOrders.remove(order.getPricePerUnit());
                     }
                 }
             } else {
                 List<Order> orders = sellOrders.get(order.getPricePerUnit());
-                if (orders != null) {
-                    orders.remove(order);
+                if (orders != null && orders.remove(order)) {
+                    sellDepth.decrementAndGet();
                     if (orders.isEmpty()) {
                         sellOrders.remove(order.getPricePerUnit());
                     }
@@ -75,5 +82,11 @@ public class OrderBook {
         buyOrders.clear();
         sellOrders.clear();
         orderMap.clear();
+        buyDepth.set(0);
+        sellDepth.set(0);
+    }
+
+    public int depth(Order.OrderType side) {
+        return side == Order.OrderType.BUY ? buyDepth.get() : sellDepth.get();
     }
 }
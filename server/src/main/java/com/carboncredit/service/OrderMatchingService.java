@@ -1,9 +1,11 @@
 package com.carboncredit.service;
 
+import com.carboncredit.model.AuditLog;
 import com.carboncredit.model.Order;
 import com.carboncredit.model.Trade;
 import com.carboncredit.repository.OrderRepository;
 import com.carboncredit.repository.TradeRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,6 +17,7 @@ import java.util.stream.Collectors;
 import jakarta.annotation.PostConstruct;
 
 @Service
+@Slf4j
 public class OrderMatchingService {
 
     @Autowired
@@ -29,9 +32,24 @@ public class OrderMatchingService {
     @Autowired
     private OrderBook orderBook;
 
+    @Autowired
+    private UserActivityService userActivityService;
+
+    @Autowired
+    private SerialBlockRegistry serialBlockRegistry;
+
+    @Autowired
+    private AuditLogWriter auditLogWriter;
+
+    @Autowired
+    private MetricsService metricsService;
+
+    @Autowired
+    private LatencyRecorder latencyRecorder;
+
     @PostConstruct
     public void loadOrders() {
-        System.out.println("Loading pending orders into memory...");
+        log.info("Loading pending orders into memory...");
         orderBook.clear();
         List<Order> pendingOrders = orderRepository.findAll().stream()
                 .filter(o -> o.getStatus() == Order.OrderStatus.PENDING || o.getStatus() == Order.OrderStatus.PARTIAL)
@@ -40,13 +58,17 @@ public class OrderMatchingService {
         for (Order order : pendingOrders) {
             orderBook.addOrder(order);
         }
-        System.out.println("Loaded " + pendingOrders.size() + " orders.");
+        log.info("Loaded {} orders.", pendingOrders.size());
         matchOrders();
     }
 
     public void addOrder(Order order) {
+        long start = System.nanoTime();
         orderBook.addOrder(order);
+        long inserted = latencyRecorder.record(LatencyRecorder.Stage.BOOK_INSERT, start);
         matchOrders();
+        latencyRecorder.record(LatencyRecorder.Stage.MATCHING, inserted);
+        metricsService.recordOrderEntry(order.getType(), start);
     }
 
     public void cancelOrder(String orderId) {
@@ -55,12 +77,22 @@ public class OrderMatchingService {
 
     @Transactional
     public synchronized void matchOrders() {
+        long cycleStart = System.nanoTime();
+        try {
+            matchBook();
+        } finally {
+            latencyRecorder.record(LatencyRecorder.Stage.MATCH_CYCLE, cycleStart);
+        }
+    }
+
+    private void matchBook() {
         while (orderBook.hasMatch()) {
             Order buyOrder = orderBook.getBestBuy();
             Order sellOrder = orderBook.getBestSell();
 
             if (buyOrder == null || sellOrder == null)
                 break;
+            long matchedAt = System.nanoTime();
 
             // Double check price condition (redundant but safe)
             if (buyOrder.getPricePerUnit() < sellOrder.getPricePerUnit())
@@ -68,7 +100,7 @@ public class OrderMatchingService {
 
             // Skip self-trading
             if (buyOrder.getUserId().equals(sellOrder.getUserId())) {
-                System.out.println("Self-trade detected. Cancelling newer order for user: " + buyOrder.getUserId());
+                log.info("Self-trade detected. Cancelling newer order for user: {}", buyOrder.getUserId());
 
                 Order orderToCancel;
                 // Cancel the newer order to unblock the book
@@ -83,6 +115,7 @@ public class OrderMatchingService {
                 orderToCancel.setCompletedAt(LocalDateTime.now());
                 orderRepository.save(orderToCancel);
                 orderBook.removeOrder(orderToCancel.getId());
+                userActivityService.recordOrderCancelled(orderToCancel.getUserId());
 
                 // Refund logic
                 if (orderToCancel.getType() == Order.OrderType.BUY) {
@@ -99,6 +132,7 @@ public class OrderMatchingService {
             double tradePrice = sellOrder.getPricePerUnit(); // Execute at Maker (Sell) Price
 
             executeTrade(buyOrder, sellOrder, matchQuantity, tradePrice);
+            metricsService.recordFill(matchQuantity, matchedAt);
 
             // Update Orders
             updateOrder(buyOrder, matchQuantity);
@@ -121,6 +155,28 @@ public class OrderMatchingService {
     }
 
     private void executeTrade(Order buyOrder, Order sellOrder, double quantity, double price) {
+        FlightRecorderEvents.TradeExecution event = new FlightRecorderEvents.TradeExecution();
+        event.begin();
+        String outcome = "failed";
+        Trade trade = null;
+        try {
+            trade = recordAndSettle(buyOrder, sellOrder, quantity, price);
+            outcome = "settled";
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.tradeId = trade != null ? trade.getId() : null;
+                event.buyOrderId = buyOrder.getId();
+                event.sellOrderId = sellOrder.getId();
+                event.quantity = quantity;
+                event.price = price;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private Trade recordAndSettle(Order buyOrder, Order sellOrder, double quantity, double price) {
         // Create Trade Record
         Trade trade = new Trade();
         trade.setBuyerId(buyOrder.getUserId());
@@ -130,20 +186,25 @@ public class OrderMatchingService {
         trade.setTotalAmount(quantity * price);
         trade.setExecutedAt(LocalDateTime.now());
         tradeRepository.save(trade);
+        userActivityService.recordTrade(trade.getBuyerId(), trade.getSellerId());
 
-        System.out.println("Executing trade. Buyer: " + buyOrder.getUserId() + ", Seller: " + sellOrder.getUserId()
-                + ", Qty: " + quantity + ", Price: " + price);
+        log.debug("Executing trade. Buyer: {}, Seller: {}, Qty: {}, Price: {}", buyOrder.getUserId(),
+                sellOrder.getUserId(), quantity, price);
 
         // Atomic Settlement
         walletService.processTrade(buyOrder.getUserId(), sellOrder.getUserId(), quantity, price);
+        serialBlockRegistry.recordTransfer(sellOrder.getUserId(), buyOrder.getUserId(), quantity);
+        auditLogWriter.record(AuditLog.ActionType.TRADE, "Trade", trade.getId(), "Buyer " + trade.getBuyerId()
+                + " bought " + quantity + " from seller " + trade.getSellerId() + " @ " + price);
 
         // Refund Buyer if Bid Price > Trade Price
         if (buyOrder.getPricePerUnit() > price) {
             double refundAmount = (buyOrder.getPricePerUnit() - price) * quantity;
             if (refundAmount > 0) {
-                System.out.println("Refunding buyer excess: " + refundAmount);
+                log.debug("Refunding buyer excess: {}", refundAmount);
                 walletService.releaseFunds(buyOrder.getUserId(), refundAmount);
             }
         }
+        return trade;
     }
 }
@@ -0,0 +1,93 @@
+package com.carboncredit.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user budgets for the marketplace, so no single client can monopolize
+ * order entry, the matching engine or the wallet reservation path. Placing
+ * orders, cancelling them and reading the marketplace draw on separate token
+ * buckets, sized per role as "burst/per-minute". Everything is in memory; an
+ * instance limits the traffic it serves.
+ */
+@Component
+public class OrderRateLimiter {
+
+    public enum Action {
+        PLACE,
+        CANCEL,
+        READ
+    }
+
+    @Value("${marketplace.rate-limit.user.place:10/60}")
+    private String userPlace = "10/60";
+
+    @Value("${marketplace.rate-limit.user.cancel:10/60}")
+    private String userCancel = "10/60";
+
+    @Value("${marketplace.rate-limit.user.read:60/600}")
+    private String userRead = "60/600";
+
+    @Value("${marketplace.rate-limit.admin.place:50/600}")
+    private String adminPlace = "50/600";
+
+    @Value("${marketplace.rate-limit.admin.cancel:50/600}")
+    private String adminCancel = "50/600";
+
+    @Value("${marketplace.rate-limit.admin.read:200/3000}")
+    private String adminRead = "200/3000";
+
+    @Value("${marketplace.rate-limit.max-users:100000}")
+    private int maxUsers = 100000;
+
+    private final Map<Action, TokenBuckets> userBuckets = new EnumMap<>(Action.class);
+    private final Map<Action, TokenBuckets> adminBuckets = new EnumMap<>(Action.class);
+    private final Map<Action, LongAdder> rejected = new EnumMap<>(Action.class);
+
+    @PostConstruct
+    public void init() {
+        userBuckets.put(Action.PLACE, buckets(userPlace));
+        userBuckets.put(Action.CANCEL, buckets(userCancel));
+        userBuckets.put(Action.READ, buckets(userRead));
+        adminBuckets.put(Action.PLACE, buckets(adminPlace));
+        adminBuckets.put(Action.CANCEL, buckets(adminCancel));
+        adminBuckets.put(Action.READ, buckets(adminRead));
+        for (Action action : Action.values()) {
+            rejected.put(action, new LongAdder());
+        }
+    }
+
+    /**
+     * @return 0 if the request may proceed, otherwise the milliseconds until the
+     *         user's budget for this action allows another one
+     */
+    public long tryAcquire(String userId, boolean admin, Action action) {
+        long waitMs = (admin ? adminBuckets : userBuckets).get(action).tryAcquire(userId);
+        if (waitMs > 0) {
+            rejected.get(action).increment();
+        }
+        return waitMs;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        rejected.forEach((action, count) -> stats.put(action.name().toLowerCase() + "Rejected", count.sum()));
+        stats.put("trackedUsers", userBuckets.get(Action.READ).size() + adminBuckets.get(Action.READ).size());
+        return stats;
+    }
+
+    // "burst/per-minute", e.g. "10/60"
+    private TokenBuckets buckets(String spec) {
+        String[] parts = spec.trim().split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Rate limit must be burst/per-minute: " + spec);
+        }
+        return new TokenBuckets(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()), maxUsers);
+    }
+}
@@ -0,0 +1,140 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.User;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Resolves the public profile of the users that own listed entities. A page of
+ * items is resolved with a single $in query over the ids that are not cached;
+ * hot users are kept in a bounded LRU cache that is invalidated whenever a user
+ * document is saved or deleted through Spring Data.
+ */
+@Service
+public class OwnerLookupService extends AbstractMongoEventListener<User> {
+
+    // Never expose password or roles through an owner reference
+    private static final String[] PUBLIC_FIELDS = {
+            "name", "email", "organization", "country", "verified", "profileImage", "description", "website" };
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${owners.cache.max-size:1000}")
+    private int maxSize = 1000;
+
+    // Safety net for writes that bypass the mapping layer (e.g. shell edits)
+    @Value("${owners.cache.ttl-ms:300000}")
+    private long ttlMs = 300000;
+
+    private final Map<String, CachedUser> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * Sets the owner of each item from its owner id, issuing at most one query.
+     */
+    public <T> void populate(Collection<T> items, Function<T, String> ownerId, BiConsumer<T, User> setOwner) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        Set<String> ids = new HashSet<>();
+        for (T item : items) {
+            String id = ownerId.apply(item);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        Map<String, User> owners = findByIds(ids);
+        for (T item : items) {
+            User owner = owners.get(ownerId.apply(item));
+            if (owner != null) {
+                setOwner.accept(item, owner);
+            }
+        }
+    }
+
+    public Map<String, User> findByIds(Collection<String> ids) {
+        Map<String, User> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (cache) {
+            for (String id : ids) {
+                CachedUser cached = cache.get(id);
+                if (cached != null && now - cached.loadedAt < ttlMs) {
+                    found.put(id, cached.user);
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Query query = new Query(Criteria.where("_id").in(missing));
+            query.fields().include(PUBLIC_FIELDS);
+            List<User> loaded = mongoTemplate.find(query, User.class);
+            synchronized (cache) {
+                for (User user : loaded) {
+                    cache.put(user.getId(), new CachedUser(user, now));
+                    found.put(user.getId(), user);
+                }
+            }
+        }
+        return found;
+    }
+
+    public void evict(String userId) {
+        synchronized (cache) {
+            cache.remove(userId);
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<User> event) {
+        evict(event.getSource().getId());
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<User> event) {
+        // Single deletes carry the id; anything broader (deleteAll) drops the cache
+        Document filter = event.getSource();
+        Object id = filter.get("_id");
+        if (filter.size() == 1 && id != null && !(id instanceof Document)) {
+            evict(id.toString());
+        } else {
+            clear();
+        }
+    }
+
+    private static final class CachedUser {
+        private final User user;
+        private final long loadedAt;
+
+        private CachedUser(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.*;
+import com.carboncredit.repository.*;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Refresh-ahead cache for the platform-wide counts shown on the dashboard and
+ * admin landing pages. Requests always read the last computed snapshot; it is
+ * recomputed in the background on a fixed schedule, and sooner after writes to
+ * the collections it summarizes. A write only marks the snapshot dirty, and a
+ * dirty snapshot is recomputed at most once per stats.write-refresh-ms, so a
+ * steady stream of order saves costs one recomputation per interval rather
+ * than one per save. Refreshes run on a single thread, so concurrent requests
+ * never trigger parallel recomputation.
+ */
+@Component
+@Slf4j
+public class PlatformStatsCache extends AbstractMongoEventListener<Object> {
+
+    private static final Set<Class<?>> TRACKED_TYPES = Set.of(
+            Project.class, CarbonCredit.class, User.class, Trade.class, Retirement.class, Order.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private CarbonCreditRepository carbonCreditRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private RetirementRepository retirementRepository;
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "platform-stats-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Set by writes to the tracked collections, cleared when a refresh starts
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Returns the most recent snapshot. Only the very first call (before any
+     * background refresh has completed) computes it on the caller's thread.
+     */
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                refresh();
+            }
+            return snapshot;
+        }
+    }
+
+    // Also catches writes that bypass the mapping layer and never mark it dirty
+    @Scheduled(fixedDelayString = "${stats.refresh-ms:30000}")
+    public void scheduledRefresh() {
+        requestRefresh();
+    }
+
+    @Scheduled(fixedDelayString = "${stats.write-refresh-ms:5000}")
+    public void refreshIfDirty() {
+        if (dirty.get()) {
+            requestRefresh();
+        }
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        if (TRACKED_TYPES.contains(event.getSource().getClass())) {
+            dirty.set(true);
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        if (event.getType() != null && TRACKED_TYPES.contains(event.getType())) {
+            dirty.set(true);
+        }
+    }
+
+    boolean isDirty() {
+        return dirty.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    // Requests made while a refresh is queued or running are folded into it;
+    // writes during a refresh mark the snapshot dirty again for the next one
+    private void requestRefresh() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                try {
+                    dirty.set(false);
+                    refresh();
+                } catch (Exception e) {
+                    dirty.set(true);
+                    log.warn("Platform stats refresh failed, serving previous snapshot: {}", e.getMessage());
+                } finally {
+                    refreshQueued.set(false);
+                }
+            });
+        }
+    }
+
+    private synchronized void refresh() {
+        Snapshot next = new Snapshot();
+        next.setTotalProjects(projectRepository.count());
+        next.setTotalCredits(carbonCreditRepository.count());
+        next.setTotalUsers(userRepository.count());
+        next.setTotalTrades(tradeRepository.count());
+        next.setTotalRetirements(retirementRepository.count());
+        next.setRecentTrades(tradeRepository.findTop10ByOrderByExecutedAtDesc());
+        next.setAverageTradePrice(averageTradePrice());
+
+        // Market demand/supply: open quantity of active buy/sell orders
+        Aggregation openQuantity = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("status")
+                        .in(Order.OrderStatus.PENDING.name(), Order.OrderStatus.PARTIAL.name())),
+                Aggregation.group("type").sum("quantity").as("quantity"));
+        for (Document row : mongoTemplate.aggregate(openQuantity, Order.class, Document.class)
+                .getMappedResults()) {
+            double quantity = ((Number) row.get("quantity")).doubleValue();
+            if (Order.OrderType.BUY.name().equals(row.getString("_id"))) {
+                next.setMarketDemand(quantity);
+            } else if (Order.OrderType.SELL.name().equals(row.getString("_id"))) {
+                next.setMarketSupply(quantity);
+            }
+        }
+
+        next.setComputedAt(System.currentTimeMillis());
+        snapshot = next;
+    }
+
+    private double averageTradePrice() {
+        Aggregation average = Aggregation.newAggregation(
+                Aggregation.group().avg("pricePerUnit").as("avgPrice"));
+        Document row = mongoTemplate.aggregate(average, Trade.class, Document.class).getUniqueMappedResult();
+        return (row != null && row.get("avgPrice") != null) ? ((Number) row.get("avgPrice")).doubleValue() : 0.0;
+    }
+
+    @Data
+    public static class Snapshot {
+        private long totalProjects;
+        private long totalCredits;
+        private long totalUsers;
+        private long totalTrades;
+        private long totalRetirements;
+        private List<Trade> recentTrades;
+        private double averageTradePrice;
+        private double marketDemand;
+        private double marketSupply;
+        private long computedAt;
+
+        public long getAgeMs() {
+            return System.currentTimeMillis() - computedAt;
+        }
+    }
+}
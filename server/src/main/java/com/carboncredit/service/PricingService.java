@@ -1,10 +1,15 @@
 package com.carboncredit.service;
 
 import com.carboncredit.model.Order;
+import com.carboncredit.model.Trade;
 import com.carboncredit.repository.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
 
 @Service
@@ -16,6 +21,9 @@ public class PricingService {
     @Autowired
     private com.carboncredit.repository.TradeRepository tradeRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     private static final double BASE_PRICE = 10000.0;
     private static final double ALPHA = 0.1; // Sensitivity factor
 
@@ -29,6 +37,17 @@ public class PricingService {
                 .orElse(BASE_PRICE);
     }
 
+    /**
+     * Same as {@link #getLastTradedPrice()}, but the server abandons the lookup
+     * after maxTime (maxTimeMS) instead of letting it run on.
+     */
+    public double getLastTradedPrice(Duration maxTime) {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "executedAt")).maxTime(maxTime);
+        query.fields().include("pricePerUnit");
+        Trade last = mongoTemplate.findOne(query, Trade.class);
+        return last != null ? last.getPricePerUnit() : BASE_PRICE;
+    }
+
     /**
      * Calculates the dynamic price based on Supply and Demand.
      * Formula: P = P0 * (1 + alpha * (D - S) / S)
@@ -0,0 +1,153 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Project;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Project registry search backed by Mongo indexes rather than an in-memory scan.
+ * Free text ("q") uses the projects text index and is ranked by text score;
+ * name/location are case-insensitive prefix matches, bounded below on the
+ * collated name_ci/location_ci indexes; type/status use the type_status index.
+ */
+@Service
+public class ProjectSearchService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // Must match the collation of the name_ci/location_ci indexes on Project
+    private static final Collation CASE_INSENSITIVE = Collation.of("en")
+            .strength(Collation.ComparisonLevel.secondary());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Every project matching the filters, unpaged, for the original /projects/search.
+     */
+    public List<Project> find(String q, String name, String location, Project.ProjectType type,
+            Project.ProjectStatus status) {
+        boolean fullText = q != null && !q.isBlank();
+        return mongoTemplate.find(query(q, fullText, prefixCriteria(name, location, fullText), type, status),
+                Project.class);
+    }
+
+    public Map<String, Object> search(String q, String name, String location, Project.ProjectType type,
+            Project.ProjectStatus status, int page, int size) {
+        page = Math.max(0, page);
+        size = Math.min(Math.max(1, size), MAX_PAGE_SIZE);
+        boolean fullText = q != null && !q.isBlank();
+
+        // Facets are counted over the text and prefix criteria only, so the client
+        // can show how many hits each type/status would give
+        List<Criteria> matchCriteria = prefixCriteria(name, location, fullText);
+        Query query = query(q, fullText, matchCriteria, type, status);
+
+        long total = mongoTemplate.count(query, Project.class);
+        List<Project> content = mongoTemplate.find(query.with(PageRequest.of(page, size)), Project.class);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("content", content);
+        result.put("page", page);
+        result.put("size", size);
+        result.put("total", total);
+        result.put("facets", facets(fullText ? q : null, matchCriteria));
+        return result;
+    }
+
+    private List<Criteria> prefixCriteria(String name, String location, boolean fullText) {
+        List<Criteria> criteria = new ArrayList<>();
+        addIfPresent(criteria, "name", name, fullText);
+        addIfPresent(criteria, "location", location, fullText);
+        return criteria;
+    }
+
+    private Query query(String q, boolean fullText, List<Criteria> matchCriteria, Project.ProjectType type,
+            Project.ProjectStatus status) {
+        Query query;
+        if (fullText) {
+            // $text cannot be combined with a collation; the text index narrows the scan
+            query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(q)).sortByScore();
+        } else {
+            query = new Query().collation(CASE_INSENSITIVE).with(Sort.by("name"));
+        }
+        if (!matchCriteria.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(matchCriteria));
+        }
+        if (type != null) {
+            query.addCriteria(Criteria.where("type").is(type));
+        }
+        if (status != null) {
+            query.addCriteria(Criteria.where("status").is(status));
+        }
+        return query;
+    }
+
+    private Map<String, Map<String, Long>> facets(String q, List<Criteria> matchCriteria) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        if (q != null) {
+            stages.add(Aggregation.match(TextCriteria.forDefaultLanguage().matching(q)));
+        }
+        if (!matchCriteria.isEmpty()) {
+            stages.add(Aggregation.match(new Criteria().andOperator(matchCriteria)));
+        }
+        stages.add(Aggregation.facet(Aggregation.group("type").count().as("count")).as("type")
+                .and(Aggregation.group("status").count().as("count")).as("status"));
+
+        Aggregation aggregation = Aggregation.newAggregation(stages);
+        if (q == null) {
+            aggregation = aggregation.withOptions(AggregationOptions.builder().collation(CASE_INSENSITIVE).build());
+        }
+
+        Document row = mongoTemplate.aggregate(aggregation, Project.class, Document.class).getUniqueMappedResult();
+        Map<String, Map<String, Long>> facets = new HashMap<>();
+        facets.put("type", bucketCounts(row, "type"));
+        facets.put("status", bucketCounts(row, "status"));
+        return facets;
+    }
+
+    private Map<String, Long> bucketCounts(Document row, String facet) {
+        Map<String, Long> counts = new TreeMap<>();
+        if (row == null) {
+            return counts;
+        }
+        for (Document bucket : row.getList(facet, Document.class, Collections.emptyList())) {
+            Object key = bucket.get("_id");
+            if (key != null) {
+                counts.put(key.toString(), ((Number) bucket.get("count")).longValue());
+            }
+        }
+        return counts;
+    }
+
+    private void addIfPresent(List<Criteria> criteria, String field, String value, boolean fullText) {
+        if (value != null && !value.isBlank()) {
+            String prefix = value.trim();
+            // The anchored, case-insensitive regex decides the match for any prefix,
+            // supplementary characters included. Under the collation a lower bound also
+            // lets the name_ci/location_ci index skip everything sorting before the
+            // prefix; $text queries run without a collation, where a case-sensitive
+            // bound would drop matches, so they get the regex alone. (Separate
+            // criteria: regex() replaces any other operator on the same Criteria.)
+            if (!fullText) {
+                criteria.add(Criteria.where(field).gte(prefix));
+            }
+            criteria.add(Criteria.where(field).regex("^" + Pattern.quote(prefix), "i"));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CreditBlock;
+import com.carboncredit.model.RetiredSerials;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Independent record of every retired serial, one compressed Roaring bitmap per
+ * project/vintage. Retirements are checked against it before they are applied,
+ * so a serial can never be retired twice even if the block registry were wrong,
+ * and "is retired" / "how many retired in a range" are answered from memory.
+ *
+ * Bitmaps are persisted to retired_serials after each retirement and loaded at
+ * startup. Serials are unsigned 32-bit values within a series.
+ */
+@Service
+@Slf4j
+public class RetiredSerialIndex {
+
+    private static final long MAX_SERIAL = 0xFFFFFFFFL;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // projectId/vintage -> retired serials
+    private final Map<String, RoaringBitmap> bitmaps = new HashMap<>();
+
+    @PostConstruct
+    public synchronized void load() {
+        bitmaps.clear();
+        for (RetiredSerials stored : mongoTemplate.findAll(RetiredSerials.class)) {
+            RoaringBitmap bitmap = new RoaringBitmap();
+            try {
+                bitmap.deserialize(ByteBuffer.wrap(stored.getBitmap()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Corrupt retired serial bitmap for " + stored.getProjectId(), e);
+            }
+            bitmaps.put(seriesKey(stored.getProjectId(), stored.getVintageYear()), bitmap);
+        }
+        log.info("Loaded retired serial bitmaps for {} series", bitmaps.size());
+    }
+
+    /**
+     * Thrown when a retirement would retire a serial a second time.
+     */
+    public static class AlreadyRetired extends IllegalStateException {
+        public AlreadyRetired(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @throws AlreadyRetired if any serial in the ranges is already retired
+     */
+    public synchronized void checkNotRetired(List<CreditBlock> ranges) {
+        for (CreditBlock range : ranges) {
+            RoaringBitmap bitmap = bitmaps.get(seriesKey(range.getProjectId(), range.getVintageYear()));
+            if (bitmap != null && bitmap.intersects(range.getStart(), range.getEnd() + 1)) {
+                throw new AlreadyRetired("Serials in " + range.getSerialRange() + " are already retired");
+            }
+        }
+    }
+
+    public synchronized void markRetired(List<CreditBlock> ranges) {
+        Map<String, CreditBlock> touched = new LinkedHashMap<>();
+        for (CreditBlock range : ranges) {
+            if (range.getEnd() > MAX_SERIAL) {
+                throw new IllegalArgumentException("Serial out of range: " + range.getEnd());
+            }
+            String key = seriesKey(range.getProjectId(), range.getVintageYear());
+            bitmaps.computeIfAbsent(key, k -> new RoaringBitmap()).add(range.getStart(), range.getEnd() + 1);
+            touched.putIfAbsent(key, range);
+        }
+        touched.forEach((key, range) -> persist(range.getProjectId(), range.getVintageYear(), bitmaps.get(key)));
+    }
+
+    /**
+     * Adds retired blocks missing from the bitmaps, e.g. retirements recorded
+     * before the index existed. Returns the number of series updated.
+     */
+    public synchronized int reconcile(Collection<CreditBlock> retiredBlocks) {
+        List<CreditBlock> missing = new ArrayList<>();
+        for (CreditBlock block : retiredBlocks) {
+            if (!isFullyRetired(block.getProjectId(), block.getVintageYear(), block.getStart(), block.getEnd())) {
+                missing.add(block);
+            }
+        }
+        markRetired(missing);
+        return (int) missing.stream().map(b -> seriesKey(b.getProjectId(), b.getVintageYear())).distinct().count();
+    }
+
+    public synchronized boolean isRetired(String projectId, int vintageYear, long serial) {
+        RoaringBitmap bitmap = bitmaps.get(seriesKey(projectId, vintageYear));
+        return bitmap != null && serial >= 0 && serial <= MAX_SERIAL && bitmap.contains((int) serial);
+    }
+
+    // Inclusive bounds, both within 0..MAX_SERIAL
+    public static boolean isValidRange(long from, long to) {
+        return from >= 0 && from <= to && to <= MAX_SERIAL;
+    }
+
+    /**
+     * @throws IllegalArgumentException unless {@link #isValidRange(long, long)}
+     */
+    public synchronized long countRetired(String projectId, int vintageYear, long from, long to) {
+        if (!isValidRange(from, to)) {
+            throw new IllegalArgumentException("Serial range must satisfy 0 <= from <= to <= " + MAX_SERIAL);
+        }
+        RoaringBitmap bitmap = bitmaps.get(seriesKey(projectId, vintageYear));
+        return (bitmap == null) ? 0 : bitmap.rangeCardinality(from, to + 1);
+    }
+
+    public synchronized boolean isFullyRetired(String projectId, int vintageYear, long from, long to) {
+        return countRetired(projectId, vintageYear, from, to) == to - from + 1;
+    }
+
+    private void persist(String projectId, int vintageYear, RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+
+        Query query = new Query(Criteria.where("projectId").is(projectId).and("vintageYear").is(vintageYear));
+        Update update = new Update()
+                .set("bitmap", buffer.array())
+                .set("retiredCount", bitmap.getLongCardinality())
+                .set("updatedAt", LocalDateTime.now());
+        mongoTemplate.upsert(query, update, RetiredSerials.class);
+    }
+
+    private static String seriesKey(String projectId, int vintageYear) {
+        return projectId + "/" + vintageYear;
+    }
+}
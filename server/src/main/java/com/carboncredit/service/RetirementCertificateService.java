@@ -0,0 +1,122 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Retirement;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Retirement certificates: the retirement's details and serial ranges, signed
+ * with HMAC-SHA256. A certificate verifies only if the signature matches and
+ * every listed serial is retired in the RetiredSerialIndex.
+ *
+ * The signing key is its own secret, never the JWT one: anyone able to forge
+ * certificates must not be able to forge logins, and the other way round.
+ */
+@Service
+public class RetirementCertificateService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    @Autowired
+    private RetiredSerialIndex retiredSerialIndex;
+
+    @Value("${retirement.certificate.secret}")
+    private String secret;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @PostConstruct
+    public void checkSecret() {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("retirement.certificate.secret (RETIREMENT_CERTIFICATE_SECRET) must be set");
+        }
+        if (secret.equals(jwtSecret)) {
+            throw new IllegalStateException("retirement.certificate.secret must differ from jwt.secret");
+        }
+    }
+
+    public Map<String, Object> issue(Retirement retirement) {
+        Map<String, Object> certificate = new LinkedHashMap<>();
+        certificate.put("retirementId", retirement.getId());
+        certificate.put("userId", retirement.getUserId());
+        certificate.put("beneficiaryName", retirement.getBeneficiaryName());
+        certificate.put("retirementReason", retirement.getRetirementReason());
+        certificate.put("quantity", retirement.getQuantity());
+        certificate.put("retiredAt", String.valueOf(retirement.getRetiredAt()));
+        certificate.put("serialRanges", retirement.getSerialRanges() != null
+                ? retirement.getSerialRanges()
+                : Collections.emptyList());
+        certificate.put("signature", sign(certificate));
+        return certificate;
+    }
+
+    public Map<String, Object> verify(Map<String, Object> certificate) {
+        Map<String, Object> result = new HashMap<>();
+        Object signature = certificate.get("signature");
+        boolean signatureValid = signature instanceof String && MessageDigest.isEqual(
+                ((String) signature).getBytes(StandardCharsets.UTF_8),
+                sign(certificate).getBytes(StandardCharsets.UTF_8));
+
+        boolean serialsRetired = true;
+        Object ranges = certificate.get("serialRanges");
+        if (ranges instanceof List) {
+            for (Object range : (List<?>) ranges) {
+                if (!isRangeRetired(String.valueOf(range))) {
+                    serialsRetired = false;
+                    break;
+                }
+            }
+        }
+
+        result.put("signatureValid", signatureValid);
+        result.put("serialsRetired", serialsRetired);
+        result.put("valid", signatureValid && serialsRetired);
+        return result;
+    }
+
+    // Range format: <projectId>-<vintage>-<start>-<end> (see CreditBlock)
+    private boolean isRangeRetired(String range) {
+        String[] parts = range.split("-");
+        if (parts.length < 4) {
+            return false;
+        }
+        try {
+            long end = Long.parseLong(parts[parts.length - 1]);
+            long start = Long.parseLong(parts[parts.length - 2]);
+            int vintageYear = Integer.parseInt(parts[parts.length - 3]);
+            String projectId = String.join("-", Arrays.copyOf(parts, parts.length - 3));
+            return RetiredSerialIndex.isValidRange(start, end)
+                    && retiredSerialIndex.isFullyRetired(projectId, vintageYear, start, end);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // Signs every field except the signature, in a fixed order
+    private String sign(Map<String, Object> certificate) {
+        StringBuilder canonical = new StringBuilder();
+        for (String field : new TreeSet<>(certificate.keySet())) {
+            if (!"signature".equals(field)) {
+                canonical.append(field).append('=').append(certificate.get(field)).append('\n');
+            }
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign certificate", e);
+        }
+    }
+}
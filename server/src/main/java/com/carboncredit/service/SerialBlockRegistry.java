@@ -0,0 +1,447 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CreditBlock;
+import com.carboncredit.repository.CreditBlockRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.LongFunction;
+
+/**
+ * Registry of credit serial numbers, kept as contiguous blocks instead of one
+ * document per tonne.
+ *
+ * Blocks of a project/vintage never overlap, so each series is an interval tree
+ * keyed by block start (a TreeMap): the block holding a serial is its floor
+ * entry. Each owner's active blocks are indexed as well, so transfers and
+ * retirements take serials from the owner's oldest blocks, split the last one
+ * if needed and merge with adjacent blocks of the same owner and state, each
+ * step in O(log n).
+ *
+ * The trees mirror the credit_blocks collection and are loaded at startup; all
+ * mutations are serialized and written through. An issuance made under an
+ * issuance id is a single block insert and is remembered by that id, so
+ * repeating it (e.g. a recovered job) returns the serials already issued. Wallet balances remain the
+ * source of truth for amounts; this registry records which serials they are.
+ */
+@Service
+@Slf4j
+public class SerialBlockRegistry {
+
+    private static final Comparator<CreditBlock> BLOCK_ORDER = Comparator
+            .comparing(CreditBlock::getProjectId)
+            .thenComparingInt(CreditBlock::getVintageYear)
+            .thenComparingLong(CreditBlock::getStart);
+
+    @Autowired
+    private CreditBlockRepository creditBlockRepository;
+
+    @Autowired
+    private RetiredSerialIndex retiredSerialIndex;
+
+    // projectId/vintage -> blocks by start serial
+    private final Map<String, TreeMap<Long, CreditBlock>> series = new HashMap<>();
+
+    // ownerId -> active blocks, oldest project/vintage/serial first
+    private final Map<String, TreeSet<CreditBlock>> activeByOwner = new HashMap<>();
+
+    // issuanceId -> serial range it issued, wherever those serials are now
+    private final Map<String, CreditBlock> issuances = new HashMap<>();
+
+    @PostConstruct
+    public synchronized void load() {
+        series.clear();
+        activeByOwner.clear();
+        issuances.clear();
+        List<CreditBlock> blocks = creditBlockRepository.findAll();
+        blocks.forEach(this::attach);
+        blocks.forEach(this::rememberIssuance);
+        log.info("Loaded {} credit serial blocks", blocks.size());
+
+        List<CreditBlock> retired = new ArrayList<>();
+        for (CreditBlock block : blocks) {
+            if (block.getStatus() == CreditBlock.BlockStatus.RETIRED) {
+                retired.add(block);
+            }
+        }
+        int repaired = retiredSerialIndex.reconcile(retired);
+        if (repaired > 0) {
+            log.warn("Added missing retired serials to the bitmap index for {} series", repaired);
+        }
+    }
+
+    /**
+     * Issues the next {@code quantity} serials of a project/vintage to the owner.
+     *
+     * @return the serial range issued (not the merged block stored)
+     */
+    public CreditBlock issue(String projectId, int vintageYear, String ownerId, long quantity) {
+        return issue(null, projectId, vintageYear, ownerId, quantity);
+    }
+
+    /**
+     * Issues serials once per issuance id: if the id has issued before, its
+     * range is returned and nothing is written.
+     *
+     * @param issuanceId key of this issuance, or null for an unkeyed one
+     * @return the serial range issued (not the merged block stored)
+     */
+    public synchronized CreditBlock issue(String issuanceId, String projectId, int vintageYear, String ownerId,
+            long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0");
+        }
+        if (issuanceId != null && issuances.containsKey(issuanceId)) {
+            CreditBlock previous = issuances.get(issuanceId);
+            log.info("Serials for issuance {} were already issued: {}", issuanceId, previous.getSerialRange());
+            return copyOf(previous);
+        }
+        TreeMap<Long, CreditBlock> tree = series.get(seriesKey(projectId, vintageYear));
+        long start = (tree == null || tree.isEmpty()) ? 1 : tree.lastEntry().getValue().getEnd() + 1;
+
+        CreditBlock block = new CreditBlock();
+        block.setProjectId(projectId);
+        block.setVintageYear(vintageYear);
+        block.setStart(start);
+        block.setEnd(start + quantity - 1);
+        block.setOwnerId(ownerId);
+        block.setStatus(CreditBlock.BlockStatus.ACTIVE);
+        block.setIssuanceId(issuanceId);
+
+        Changes changes = new Changes();
+        try {
+            CreditBlock placed = place(block, changes);
+            changes.flush();
+            CreditBlock issued = copyOf(placed);
+            issued.setStart(start);
+            issued.setEnd(start + quantity - 1);
+            rememberIssuance(issued);
+            return issued;
+        } catch (RuntimeException e) {
+            reloadAfterFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Moves {@code quantity} of the sender's active serials to the receiver.
+     *
+     * @return the serial ranges moved, as blocks (not the merged blocks stored)
+     * @throws IllegalStateException if the sender holds fewer serials
+     */
+    public synchronized List<CreditBlock> transfer(String fromUserId, String toUserId, long quantity) {
+        return move(fromUserId, quantity, toUserId, CreditBlock.BlockStatus.ACTIVE, null);
+    }
+
+    /**
+     * Retires {@code quantity} of the owner's active serials.
+     *
+     * @return the serial ranges retired
+     * @throws IllegalStateException if the owner holds fewer serials
+     */
+    public synchronized List<CreditBlock> retire(String ownerId, long quantity, String retirementId) {
+        return move(ownerId, quantity, ownerId, CreditBlock.BlockStatus.RETIRED, retirementId);
+    }
+
+    /**
+     * Best-effort transfer for settlement paths, where the wallet has already
+     * moved the amount: only whole tonnes carry serials, and a shortfall (e.g.
+     * balances that predate the registry) is logged rather than failing the
+     * caller.
+     */
+    public List<String> recordTransfer(String fromUserId, String toUserId, double quantity) {
+        return record(quantity, tonnes -> transfer(fromUserId, toUserId, tonnes));
+    }
+
+    /**
+     * Checks, without changing anything, that retiring {@code quantity} of the
+     * owner's serials would not retire any serial twice. Run it before debiting
+     * the wallet; a shortfall is not an error here (see {@link #recordTransfer}).
+     *
+     * @throws RetiredSerialIndex.AlreadyRetired if it would
+     */
+    public synchronized void checkRetirable(String ownerId, double quantity) {
+        long remaining = wholeTonnes(quantity);
+        TreeSet<CreditBlock> available = activeByOwner.get(ownerId);
+        if (remaining <= 0 || available == null) {
+            return;
+        }
+        List<CreditBlock> ranges = new ArrayList<>();
+        for (CreditBlock block : available) {
+            if (remaining <= 0) {
+                break;
+            }
+            CreditBlock range = copyOf(block);
+            range.setEnd(Math.min(block.getEnd(), block.getStart() + remaining - 1));
+            ranges.add(range);
+            remaining -= range.size();
+        }
+        retiredSerialIndex.checkNotRetired(ranges);
+    }
+
+    /**
+     * Best-effort retirement; see {@link #recordTransfer}. A double retirement
+     * is still thrown, as {@link RetiredSerialIndex.AlreadyRetired}.
+     */
+    public List<String> recordRetirement(String ownerId, double quantity, String retirementId) {
+        return record(quantity, tonnes -> retire(ownerId, tonnes, retirementId));
+    }
+
+    public static long wholeTonnes(double quantity) {
+        // Tolerate float error such as 2.9999999
+        return (long) Math.floor(quantity + 1e-9);
+    }
+
+    private List<String> record(double quantity, LongFunction<List<CreditBlock>> operation) {
+        long tonnes = wholeTonnes(quantity);
+        if (tonnes <= 0) {
+            return Collections.emptyList();
+        }
+        try {
+            List<String> ranges = new ArrayList<>();
+            for (CreditBlock block : operation.apply(tonnes)) {
+                ranges.add(block.getSerialRange());
+            }
+            return ranges;
+        } catch (RetiredSerialIndex.AlreadyRetired e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Serial registry not updated for {} tonnes: {}", tonnes, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    public synchronized Optional<CreditBlock> findBySerial(String projectId, int vintageYear, long serial) {
+        TreeMap<Long, CreditBlock> tree = series.get(seriesKey(projectId, vintageYear));
+        if (tree == null) {
+            return Optional.empty();
+        }
+        Map.Entry<Long, CreditBlock> entry = tree.floorEntry(serial);
+        return (entry != null && entry.getValue().getEnd() >= serial)
+                ? Optional.of(copyOf(entry.getValue()))
+                : Optional.empty();
+    }
+
+    public synchronized List<CreditBlock> getActiveBlocks(String ownerId) {
+        TreeSet<CreditBlock> blocks = activeByOwner.get(ownerId);
+        if (blocks == null) {
+            return Collections.emptyList();
+        }
+        // Copies: the stored blocks are keyed by their fields and must not change outside the lock
+        List<CreditBlock> copies = new ArrayList<>(blocks.size());
+        for (CreditBlock block : blocks) {
+            copies.add(copyOf(block));
+        }
+        return copies;
+    }
+
+    public synchronized long getActiveSerialCount(String ownerId) {
+        long count = 0;
+        TreeSet<CreditBlock> blocks = activeByOwner.get(ownerId);
+        if (blocks != null) {
+            for (CreditBlock block : blocks) {
+                count += block.size();
+            }
+        }
+        return count;
+    }
+
+    private List<CreditBlock> move(String fromUserId, long quantity, String toUserId,
+            CreditBlock.BlockStatus status, String retirementId) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0");
+        }
+        TreeSet<CreditBlock> available = activeByOwner.get(fromUserId);
+        long held = 0;
+        if (available != null) {
+            for (CreditBlock block : available) {
+                held += block.size();
+                if (held >= quantity) {
+                    break;
+                }
+            }
+        }
+        if (held < quantity) {
+            throw new IllegalStateException("Owner holds " + held + " serials, " + quantity + " requested");
+        }
+
+        Changes changes = new Changes();
+        List<CreditBlock> moved = new ArrayList<>();
+        long remaining = quantity;
+        try {
+            while (remaining > 0) {
+                CreditBlock block = activeByOwner.get(fromUserId).first();
+                detach(block);
+                if (block.size() > remaining) {
+                    // Split: the head moves, the tail stays with the sender
+                    CreditBlock tail = copyOf(block);
+                    tail.setId(null);
+                    tail.setStart(block.getStart() + remaining);
+                    block.setEnd(tail.getStart() - 1);
+                    attach(tail);
+                    changes.save(tail);
+                }
+                remaining -= block.size();
+                block.setOwnerId(toUserId);
+                block.setStatus(status);
+                block.setRetirementId(retirementId);
+                addRange(moved, copyOf(block));
+                place(block, changes);
+            }
+            if (status == CreditBlock.BlockStatus.RETIRED) {
+                // Nothing has been written yet, so a double retirement aborts cleanly
+                retiredSerialIndex.checkNotRetired(moved);
+            }
+            changes.flush();
+            if (status == CreditBlock.BlockStatus.RETIRED) {
+                retiredSerialIndex.markRetired(moved);
+            }
+        } catch (RuntimeException e) {
+            reloadAfterFailure(e);
+            throw e;
+        }
+        return moved;
+    }
+
+    // Coalesces consecutive pieces taken from the same series
+    private static void addRange(List<CreditBlock> ranges, CreditBlock piece) {
+        if (!ranges.isEmpty()) {
+            CreditBlock last = ranges.get(ranges.size() - 1);
+            if (last.getProjectId().equals(piece.getProjectId()) && last.getVintageYear() == piece.getVintageYear()
+                    && last.getEnd() + 1 == piece.getStart()) {
+                last.setEnd(piece.getEnd());
+                return;
+            }
+        }
+        ranges.add(piece);
+    }
+
+    // Trees and collection may disagree after a failed write; the collection wins
+    private void reloadAfterFailure(RuntimeException e) {
+        log.error("Serial registry update failed, reloading: {}", e.getMessage());
+        load();
+    }
+
+    // Inserts a block, merging it with same-owner/same-state neighbours
+    private CreditBlock place(CreditBlock block, Changes changes) {
+        TreeMap<Long, CreditBlock> tree = series.computeIfAbsent(
+                seriesKey(block.getProjectId(), block.getVintageYear()), key -> new TreeMap<>());
+
+        Map.Entry<Long, CreditBlock> lower = tree.lowerEntry(block.getStart());
+        if (lower != null && mergeable(lower.getValue(), block)) {
+            CreditBlock previous = lower.getValue();
+            detach(previous);
+            changes.delete(block);
+            previous.setEnd(block.getEnd());
+            block = previous;
+        }
+        Map.Entry<Long, CreditBlock> higher = tree.higherEntry(block.getStart());
+        if (higher != null && mergeable(block, higher.getValue())) {
+            CreditBlock next = higher.getValue();
+            detach(next);
+            changes.delete(next);
+            block.setEnd(next.getEnd());
+        }
+
+        attach(block);
+        changes.save(block);
+        return block;
+    }
+
+    private boolean mergeable(CreditBlock left, CreditBlock right) {
+        return left.getEnd() + 1 == right.getStart()
+                && Objects.equals(left.getOwnerId(), right.getOwnerId())
+                && left.getStatus() == right.getStatus()
+                && Objects.equals(left.getRetirementId(), right.getRetirementId())
+                && Objects.equals(left.getIssuanceId(), right.getIssuanceId());
+    }
+
+    // An issuance's blocks are all pieces of its range, so their span is the range
+    private void rememberIssuance(CreditBlock block) {
+        if (block.getIssuanceId() == null) {
+            return;
+        }
+        issuances.merge(block.getIssuanceId(), copyOf(block), (known, piece) -> {
+            known.setStart(Math.min(known.getStart(), piece.getStart()));
+            known.setEnd(Math.max(known.getEnd(), piece.getEnd()));
+            return known;
+        });
+    }
+
+    private void attach(CreditBlock block) {
+        series.computeIfAbsent(seriesKey(block.getProjectId(), block.getVintageYear()), key -> new TreeMap<>())
+                .put(block.getStart(), block);
+        if (block.getStatus() == CreditBlock.BlockStatus.ACTIVE) {
+            activeByOwner.computeIfAbsent(block.getOwnerId(), key -> new TreeSet<>(BLOCK_ORDER)).add(block);
+        }
+    }
+
+    // Must run before a block's start, owner or state changes
+    private void detach(CreditBlock block) {
+        TreeMap<Long, CreditBlock> tree = series.get(seriesKey(block.getProjectId(), block.getVintageYear()));
+        if (tree != null) {
+            tree.remove(block.getStart());
+        }
+        TreeSet<CreditBlock> owned = activeByOwner.get(block.getOwnerId());
+        if (owned != null) {
+            owned.remove(block);
+            if (owned.isEmpty()) {
+                activeByOwner.remove(block.getOwnerId());
+            }
+        }
+    }
+
+    private static CreditBlock copyOf(CreditBlock block) {
+        CreditBlock copy = new CreditBlock();
+        copy.setId(block.getId());
+        copy.setProjectId(block.getProjectId());
+        copy.setVintageYear(block.getVintageYear());
+        copy.setStart(block.getStart());
+        copy.setEnd(block.getEnd());
+        copy.setOwnerId(block.getOwnerId());
+        copy.setStatus(block.getStatus());
+        copy.setRetirementId(block.getRetirementId());
+        copy.setIssuanceId(block.getIssuanceId());
+        copy.setUpdatedAt(block.getUpdatedAt());
+        return copy;
+    }
+
+    private static String seriesKey(String projectId, int vintageYear) {
+        return projectId + "/" + vintageYear;
+    }
+
+    // Collects the writes of one operation; deletes go first so the unique
+    // (project, vintage, start) index never sees two blocks at the same start
+    private final class Changes {
+        private final Map<CreditBlock, Boolean> pending = new IdentityHashMap<>();
+
+        void save(CreditBlock block) {
+            pending.put(block, Boolean.TRUE);
+        }
+
+        void delete(CreditBlock block) {
+            pending.put(block, Boolean.FALSE);
+        }
+
+        void flush() {
+            LocalDateTime now = LocalDateTime.now();
+            List<CreditBlock> saves = new ArrayList<>();
+            pending.forEach((block, save) -> {
+                if (!save && block.getId() != null) {
+                    creditBlockRepository.deleteById(block.getId());
+                } else if (save) {
+                    saves.add(block);
+                }
+            });
+            for (CreditBlock block : saves) {
+                block.setUpdatedAt(now);
+                creditBlockRepository.save(block);
+            }
+            pending.clear();
+        }
+    }
+}
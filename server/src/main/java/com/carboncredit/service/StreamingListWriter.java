@@ -0,0 +1,172 @@
+package com.carboncredit.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Writes list endpoints straight from a Mongo cursor to the response, so the
+ * full result is never held in memory.
+ *
+ * Without paging parameters the whole collection is written as a JSON array,
+ * as the endpoints always returned. With "limit" and/or "after" a single
+ * keyset page is written as {"content": [...], "limit": n, "nextCursor": ...},
+ * where nextCursor is null on the last page.
+ */
+@Component
+public class StreamingListWriter {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    // Rows are handed to the decorator (e.g. owner lookup) in batches of this size
+    private static final int BATCH_SIZE = 200;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ObjectWriter itemWriter;
+
+    @Autowired
+    public StreamingListWriter(MongoTemplate mongoTemplate, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        // Flushing after every row would defeat the generator's buffering
+        this.itemWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public <T> void write(HttpServletResponse response, Class<T> type, Criteria filter, Keyset<T> keyset,
+            String after, Integer limit) throws IOException {
+        write(response, type, filter, keyset, after, limit, null);
+    }
+
+    /**
+     * @param filter    optional restriction applied in both modes
+     * @param decorator optional hook run on each batch before it is written
+     */
+    public <T> void write(HttpServletResponse response, Class<T> type, Criteria filter, Keyset<T> keyset,
+            String after, Integer limit, Consumer<List<T>> decorator) throws IOException {
+        write(response, type, null, filter, keyset, after, limit, decorator);
+    }
+
+    /**
+     * Same as above, reading the given collections one after the other instead of
+     * the type's own collection. Used for partitioned data: when the collections
+     * are ordered the way the keyset sorts, their concatenation is one ordered list.
+     *
+     * @param collections collection names in keyset order; null for the type's collection
+     */
+    public <T> void write(HttpServletResponse response, Class<T> type, List<String> collections, Criteria filter,
+            Keyset<T> keyset, String after, Integer limit, Consumer<List<T>> decorator) throws IOException {
+        boolean paged = after != null || limit != null;
+        if (collections == null) {
+            // A null name reads the type's own collection
+            collections = Collections.singletonList(null);
+        }
+
+        List<Criteria> criteria = new ArrayList<>(2);
+        if (filter != null) {
+            criteria.add(filter);
+        }
+
+        int pageSize = 0;
+        if (paged) {
+            pageSize = (limit == null) ? DEFAULT_LIMIT : Math.min(Math.max(1, limit), MAX_LIMIT);
+            if (after != null && !after.isBlank()) {
+                try {
+                    criteria.add(keyset.after(after));
+                } catch (IllegalArgumentException e) {
+                    response.setStatus(HttpStatus.BAD_REQUEST.value());
+                    response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+                    response.getWriter().write(e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        try (JsonGenerator generator = itemWriter.getFactory()
+                .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+            if (paged) {
+                generator.writeStartObject();
+                generator.writeFieldName("content");
+            }
+            generator.writeStartArray();
+
+            List<T> batch = new ArrayList<>(BATCH_SIZE);
+            T last = null;
+            boolean hasMore = false;
+            int written = 0;
+            for (String collection : collections) {
+                Query query = new Query();
+                criteria.forEach(query::addCriteria);
+                query.cursorBatchSize(BATCH_SIZE);
+                if (paged) {
+                    // One extra row tells us whether another page exists
+                    query.with(keyset.sort()).limit(pageSize - written + 1);
+                }
+                try (Stream<T> rows = collection == null ? mongoTemplate.stream(query, type)
+                        : mongoTemplate.stream(query, type, collection)) {
+                    for (T row : (Iterable<T>) rows::iterator) {
+                        if (paged && written == pageSize) {
+                            hasMore = true;
+                            break;
+                        }
+                        batch.add(row);
+                        last = row;
+                        written++;
+                        if (batch.size() == BATCH_SIZE) {
+                            writeBatch(generator, batch, decorator);
+                        }
+                    }
+                }
+                if (hasMore) {
+                    break;
+                }
+            }
+            writeBatch(generator, batch, decorator);
+            generator.writeEndArray();
+
+            if (paged) {
+                generator.writeNumberField("limit", pageSize);
+                if (hasMore) {
+                    generator.writeStringField("nextCursor", keyset.cursorFor(last));
+                } else {
+                    generator.writeNullField("nextCursor");
+                }
+                generator.writeEndObject();
+            }
+        }
+    }
+
+    private <T> void writeBatch(JsonGenerator generator, List<T> batch, Consumer<List<T>> decorator)
+            throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (decorator != null) {
+            decorator.accept(batch);
+        }
+        for (T row : batch) {
+            itemWriter.writeValue(generator, row);
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,88 @@
+package com.carboncredit.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token-bucket rate limits keyed by an arbitrary string (user id, email, IP).
+ * Each key may burst up to capacity and then gets refillPerMinute tokens per
+ * minute.
+ *
+ * Lock-free: each bucket is a single AtomicLong holding the time at which it
+ * will be full again (the GCRA form of a token bucket), updated with CAS. Once
+ * more than maxKeys buckets exist, full (idle) ones are dropped; a dropped key
+ * simply starts again with a full bucket.
+ */
+public final class TokenBuckets {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+
+    public TokenBuckets(double capacity, double refillPerMinute, int maxKeys) {
+        this(capacity, refillPerMinute, maxKeys, System::nanoTime);
+    }
+
+    // The clock is replaceable for tests
+    TokenBuckets(double capacity, double refillPerMinute, int maxKeys, LongSupplier nanoClock) {
+        if (capacity < 1 || refillPerMinute <= 0) {
+            throw new IllegalArgumentException("Token bucket needs capacity >= 1 and a positive refill rate");
+        }
+        this.intervalNanos = (long) (TimeUnit.MINUTES.toNanos(1) / refillPerMinute);
+        this.burstNanos = (long) ((capacity - 1) * intervalNanos);
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+        this.lastSweep = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Takes one token for the key.
+     *
+     * @return 0 if a token was taken, otherwise the milliseconds until one is available
+     */
+    public long tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            // Before inserting, so the new (full) bucket is not swept right away
+            if (buckets.size() >= maxKeys) {
+                sweep(now);
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            // Theoretical arrival time: when the bucket would be full again
+            long tat = bucket.get();
+            long start = tat - now > 0 ? tat : now;
+            long wait = start - now - burstNanos;
+            if (wait > 0) {
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait + 999_999));
+            }
+            if (bucket.compareAndSet(tat, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    // Drops buckets that have refilled completely; at most once a second
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+}
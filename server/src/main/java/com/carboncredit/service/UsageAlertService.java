@@ -0,0 +1,334 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.UsageEntry;
+import com.carboncredit.model.Wallet;
+import com.carboncredit.repository.WalletRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Evaluates emission alerts on the ingestion path instead of when the client
+ * polls /usage/summary. Keeps a sliding window of recent CO2 deltas per user
+ * together with their running total and a cached wallet credit balance, and
+ * pushes an alert over SSE the moment net credits go negative or the burn rate
+ * spikes above its recent baseline.
+ *
+ * Entries are fed in after they are saved. A user's running total is seeded
+ * once, with a $sum over their stored entries that leaves out the ones being
+ * fed, so nothing is counted twice. Window samples are kept ordered by
+ * timestamp, so late or back-dated entries expire like any other.
+ *
+ * The burn-rate baseline moves once per elapsed window, by the total of the
+ * window that just completed, so a window that is still filling up is never
+ * compared against itself. No spike is reported until a user's first full
+ * window has been seen, including after a restart or an idle eviction.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UsageAlertService {
+
+    private final WalletRepository walletRepository;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${usage.alert.window-minutes:60}")
+    private long windowMinutes;
+
+    // Burn in the current window must exceed baseline * factor to count as a spike
+    @Value("${usage.alert.spike-factor:3.0}")
+    private double spikeFactor;
+
+    // Ignore spikes below this many kg per window (avoids alerting on noise)
+    @Value("${usage.alert.spike-min-kg:10.0}")
+    private double spikeMinKg;
+
+    @Value("${usage.alert.wallet-refresh-ms:30000}")
+    private long walletRefreshMs;
+
+    @Value("${usage.alert.idle-evict-ms:86400000}")
+    private long idleEvictMs;
+
+    // Weight given to the newest completed window in the burn-rate baseline
+    private static final double BASELINE_ALPHA = 0.1;
+
+    private static final long SSE_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    private final Map<String, UserWindow> windows = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a push channel for the given user. Alerts for that user are sent
+     * as "usage-alert" server-sent events until the client disconnects.
+     */
+    public SseEmitter subscribe(String userId) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        register(userId, emitter);
+        return emitter;
+    }
+
+    void register(String userId, SseEmitter emitter) {
+        subscribers.compute(userId, (k, list) -> {
+            List<SseEmitter> emitters = (list != null) ? list : new CopyOnWriteArrayList<>();
+            emitters.add(emitter);
+            return emitters;
+        });
+        emitter.onCompletion(() -> unsubscribe(userId, emitter));
+        emitter.onTimeout(() -> unsubscribe(userId, emitter));
+        emitter.onError(e -> unsubscribe(userId, emitter));
+    }
+
+    private void unsubscribe(String userId, SseEmitter emitter) {
+        subscribers.computeIfPresent(userId, (k, list) -> {
+            list.remove(emitter);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /**
+     * Feeds a saved usage entry into its user's window.
+     */
+    public void onUsage(UsageEntry entry) {
+        onSaved(List.of(entry));
+    }
+
+    /**
+     * Feeds entries into their users' windows. Must be called after the entries
+     * are persisted (and not for entries whose save failed), so the windows
+     * follow what is in the database. Alert failures are logged, never thrown.
+     */
+    public void onSaved(Collection<UsageEntry> entries) {
+        Map<String, List<UsageEntry>> byUser = new LinkedHashMap<>();
+        for (UsageEntry entry : entries) {
+            if (entry.getUserId() != null && entry.getCo2KgDelta() != null) {
+                byUser.computeIfAbsent(entry.getUserId(), k -> new ArrayList<>()).add(entry);
+            }
+        }
+        byUser.forEach((userId, userEntries) -> {
+            try {
+                feed(userId, userEntries);
+            } catch (RuntimeException e) {
+                log.error("Usage alert evaluation failed for user {}", userId, e);
+            }
+        });
+    }
+
+    private void feed(String userId, List<UsageEntry> entries) {
+        UserWindow window = windows.get(userId);
+        if (window == null) {
+            // Seeded outside the map's lock; if two threads race, one seed wins
+            UserWindow seeded = seed(userId, entries);
+            window = windows.putIfAbsent(userId, seeded);
+            if (window == null) {
+                window = seeded;
+            }
+        }
+
+        List<Map<String, Object>> alerts = new ArrayList<>();
+        synchronized (window) {
+            refreshWalletIfStale(userId, window);
+            for (UsageEntry entry : entries) {
+                alerts.addAll(window.add(toEpochMillis(entry.getTimestamp()), entry.getCo2KgDelta()));
+            }
+        }
+        for (Map<String, Object> alert : alerts) {
+            publish(userId, alert);
+        }
+    }
+
+    /**
+     * Current window figures for a user, or null if none are being tracked.
+     */
+    Map<String, Object> getWindow(String userId) {
+        UserWindow window = windows.get(userId);
+        if (window == null) {
+            return null;
+        }
+        synchronized (window) {
+            return window.snapshot();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${usage.alert.idle-evict-ms:86400000}")
+    public void evictIdleWindows() {
+        long cutoff = System.currentTimeMillis() - idleEvictMs;
+        windows.entrySet().removeIf(e -> e.getValue().lastTouched < cutoff);
+    }
+
+    // Stored total for the user, excluding the entries about to be added
+    private UserWindow seed(String userId, List<UsageEntry> excluded) {
+        List<Object> excludedIds = new ArrayList<>();
+        for (UsageEntry entry : excluded) {
+            if (entry.getId() != null) {
+                excludedIds.add(ObjectId.isValid(entry.getId()) ? new ObjectId(entry.getId()) : entry.getId());
+            }
+        }
+        Criteria match = Criteria.where("userId").is(userId);
+        if (!excludedIds.isEmpty()) {
+            match = match.and("_id").nin(excludedIds);
+        }
+        Aggregation total = Aggregation.newAggregation(
+                Aggregation.match(match),
+                Aggregation.group().sum("co2KgDelta").as("totalKg"));
+        Document result = mongoTemplate.aggregate(total, UsageEntry.class, Document.class).getUniqueMappedResult();
+        Number totalKg = (result != null) ? result.get("totalKg", Number.class) : null;
+
+        UserWindow window = new UserWindow(totalKg != null ? totalKg.doubleValue() : 0.0);
+        refreshWalletIfStale(userId, window);
+        window.negative = window.netRemainingCredits() < 0;
+        return window;
+    }
+
+    private void refreshWalletIfStale(String userId, UserWindow window) {
+        long now = System.currentTimeMillis();
+        if (now - window.walletFetchedAt < walletRefreshMs) {
+            return;
+        }
+        Wallet wallet = walletRepository.findByUserId(userId);
+        window.walletCredits = (wallet != null) ? wallet.getCarbonCreditBalance() : 0.0;
+        window.walletFetchedAt = now;
+    }
+
+    private void publish(String userId, Map<String, Object> alert) {
+        log.info("Usage alert for user {}: {}", userId, alert.get("type"));
+        List<SseEmitter> list = subscribers.get(userId);
+        if (list == null) {
+            return;
+        }
+        for (SseEmitter emitter : list) {
+            try {
+                emitter.send(SseEmitter.event().name("usage-alert").data(alert));
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(userId, emitter);
+            }
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return System.currentTimeMillis();
+        }
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private class UserWindow {
+        // kg per sample time, oldest first, whatever order samples arrive in
+        private final TreeMap<Long, Double> samples = new TreeMap<>();
+        private double totalKg;
+        private double windowKg;
+        private double baselineKg;
+        private boolean baselineSeen;
+        // Start of the window the baseline will take in next; -1 until the first sample
+        private long periodStart = -1;
+        private double walletCredits;
+        private long walletFetchedAt;
+        private boolean negative;
+        private boolean spiking;
+        private long newestSample;
+        private long lastTouched = System.currentTimeMillis();
+
+        UserWindow(double totalKg) {
+            this.totalKg = totalKg;
+        }
+
+        double netRemainingCredits() {
+            return walletCredits - totalKg / 1000.0; // 1000 kg = 1 credit
+        }
+
+        List<Map<String, Object>> add(long at, double kg) {
+            lastTouched = System.currentTimeMillis();
+            totalKg += kg;
+            newestSample = Math.max(newestSample, at);
+            long cutoff = newestSample - windowMinutes * 60_000L;
+            if (at >= cutoff) {
+                samples.merge(at, kg, Double::sum);
+                windowKg += kg;
+                if (periodStart < 0) {
+                    periodStart = at;
+                }
+            }
+            rollBaseline();
+            SortedMap<Long, Double> expired = samples.headMap(cutoff);
+            for (double old : expired.values()) {
+                windowKg -= old;
+            }
+            expired.clear();
+            if (samples.isEmpty()) {
+                windowKg = 0; // drop accumulated rounding error
+            }
+
+            List<Map<String, Object>> alerts = new ArrayList<>(2);
+
+            double net = netRemainingCredits();
+            if (net < 0 && !negative) {
+                alerts.add(alert("NET_CREDITS_NEGATIVE"));
+            }
+            negative = net < 0;
+
+            boolean spikeNow = baselineSeen && baselineKg > 0
+                    && windowKg >= spikeMinKg && windowKg > baselineKg * spikeFactor;
+            if (spikeNow && !spiking) {
+                alerts.add(alert("BURN_RATE_SPIKE"));
+            }
+            spiking = spikeNow;
+
+            return alerts;
+        }
+
+        // Folds every window that has fully elapsed into the baseline, before its samples expire
+        private void rollBaseline() {
+            long windowMs = windowMinutes * 60_000L;
+            while (periodStart >= 0 && newestSample - periodStart >= windowMs) {
+                SortedMap<Long, Double> period = samples.subMap(periodStart, periodStart + windowMs);
+                if (period.isEmpty()) {
+                    // Idle windows say nothing about the usual burn; skip to the next sample
+                    Long next = samples.ceilingKey(periodStart);
+                    long gap = ((next != null) ? next : newestSample) - periodStart;
+                    periodStart += Math.max(1, gap / windowMs) * windowMs;
+                    continue;
+                }
+                double periodKg = 0;
+                for (double kg : period.values()) {
+                    periodKg += kg;
+                }
+                baselineKg = baselineSeen ? baselineKg + BASELINE_ALPHA * (periodKg - baselineKg) : periodKg;
+                baselineSeen = true;
+                periodStart += windowMs;
+            }
+        }
+
+        Map<String, Object> alert(String type) {
+            Map<String, Object> alert = snapshot();
+            alert.put("type", type);
+            alert.put("timestamp", LocalDateTime.now());
+            return alert;
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> view = new HashMap<>();
+            view.put("totalUsageKg", totalKg);
+            view.put("windowMinutes", windowMinutes);
+            view.put("windowUsageKg", windowKg);
+            view.put("baselineWindowUsageKg", baselineKg);
+            view.put("walletCredits", walletCredits);
+            view.put("netRemainingCredits", netRemainingCredits());
+            view.put("showWarning", netRemainingCredits() < 0);
+            return view;
+        }
+    }
+}
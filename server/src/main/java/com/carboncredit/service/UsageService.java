@@ -10,12 +10,24 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -26,8 +38,22 @@ public class UsageService {
     private final UsageConfigRepository usageConfigRepository;
     private final UserRepository userRepository;
     private final com.carboncredit.repository.WalletRepository walletRepository;
+    private final UsageAlertService usageAlertService;
+    private final MetricsService metricsService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Entries are written with saveAll in chunks of this size during bulk ingestion
+    private static final int INGEST_CHUNK_SIZE = 500;
+
+    // Email -> userId lookups kept per ingestion; cleared when it would grow past this
+    private static final int MAX_CACHED_EMAILS = 10_000;
+
+    // Rejected lines reported one by one in an ingestion result; the rest are only counted
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    @Value("${usage.ingest.max-line-chars:65536}")
+    private int maxLineChars = 65536;
+
     public java.util.Map<String, Object> getUsageSummary(String userId) {
         Double totalUsageTons = getTotalUsage(userId); // Already in tons
         Double totalUsageKg = getTotalUsageInKg(userId);
@@ -89,70 +115,287 @@ public class UsageService {
     }
 
     public void processMqttMessage(String payload, String knownUserId) {
+        FlightRecorderEvents.UsageMessage event = new FlightRecorderEvents.UsageMessage();
+        event.begin();
+        UsageEntry entry = null;
+        String outcome = MetricsService.ERROR;
         try {
-            String userId = knownUserId;
-            Double co2Delta = 0.0;
-            LocalDateTime timestamp = LocalDateTime.now();
-
-            if (payload.trim().startsWith("{")) {
-                // Parse JSON
-                JsonNode node = objectMapper.readTree(payload);
-                // If userId is not provided (or we want to trust payload?), let's prefer
-                // knownUserId if not null.
-                // But if payload has a DIFFERENT userId, what do we do?
-                // Let's assume knownUserId is the source of truth if provided.
-                if (userId == null) {
-                    if (node.has("userId")) {
-                        userId = node.get("userId").asText();
-                    } else if (node.has("email")) {
-                        String email = node.get("email").asText();
-                        Optional<User> user = userRepository.findByEmail(email);
-                        if (user.isPresent()) {
-                            userId = user.get().getId();
-                        }
-                    }
+            entry = buildUsageEntry(payload, knownUserId);
+            usageEntryRepository.save(entry);
+            usageAlertService.onUsage(entry);
+            outcome = MetricsService.APPLIED;
+            log.info("Saved usage entry for user {}: {} kg", entry.getUserId(), entry.getCo2KgDelta());
+        } catch (IllegalArgumentException e) {
+            outcome = MetricsService.REJECTED;
+            log.warn("{}: {}", e.getMessage(), payload);
+        } catch (Exception e) {
+            log.error("Error processing MQTT message", e);
+        } finally {
+            metricsService.recordUsage("mqtt", outcome, 1);
+            event.end();
+            if (event.shouldCommit()) {
+                event.userId = entry != null ? entry.getUserId() : knownUserId;
+                event.co2Kg = entry != null && entry.getCo2KgDelta() != null ? entry.getCo2KgDelta() : 0;
+                event.payloadBytes = payload != null ? payload.length() : 0;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Ingests a newline-delimited JSON stream of usage records, one record per
+     * line, for many users at once (e.g. a gateway that aggregates meters).
+     * Lines are read incrementally and persisted in chunks, so the body is never
+     * held in memory; a line longer than usage.ingest.max-line-chars is skipped
+     * without being buffered. A bad line, or a chunk that cannot be stored, is
+     * reported and skipped; it does not fail the rest of the batch.
+     *
+     * @param in The (already decompressed) NDJSON body.
+     * @return Counts of accepted/rejected lines, the reason for each of the first
+     *         1000 rejections, and how many more were left out of "errors".
+     */
+    public Map<String, Object> ingestNdjson(InputStream in) throws IOException {
+        LineReader reader = new LineReader(
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), maxLineChars);
+        List<IngestLine> pending = new ArrayList<>(INGEST_CHUNK_SIZE);
+        Map<String, String> userIdsByEmail = new HashMap<>();
+        Rejections errors = new Rejections();
+        long lineNumber = 0;
+        long accepted = 0;
+
+        String line;
+        while ((line = reader.next()) != null) {
+            lineNumber++;
+            if (reader.tooLong()) {
+                errors.add(lineNumber, "Line exceeds " + maxLineChars + " characters");
+                continue;
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node = null;
+            if (line.trim().startsWith("{")) {
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (IOException e) {
+                    errors.add(lineNumber, "Malformed record");
+                    continue;
                 }
+            }
+            pending.add(new IngestLine(lineNumber, line, node));
+            if (pending.size() >= INGEST_CHUNK_SIZE) {
+                accepted += flush(pending, userIdsByEmail, errors);
+            }
+        }
+        accepted += flush(pending, userIdsByEmail, errors);
+        metricsService.recordUsage("ndjson", MetricsService.APPLIED, accepted);
+        metricsService.recordUsage("ndjson", MetricsService.REJECTED, errors.count);
+
+        log.info("Ingested NDJSON batch: {} lines, {} accepted, {} rejected", lineNumber, accepted, errors.count);
 
-                if (node.has("co2KgDelta")) {
-                    co2Delta = node.get("co2KgDelta").asDouble();
+        Map<String, Object> result = new HashMap<>();
+        result.put("lines", lineNumber);
+        result.put("accepted", accepted);
+        result.put("rejected", errors.count);
+        result.put("errors", errors.reported);
+        result.put("errorsOmitted", errors.count - errors.reported.size());
+        return result;
+    }
+
+    // Rejected lines of one ingestion: every one is counted, the first few are described
+    private static final class Rejections {
+        private final List<Map<String, Object>> reported = new ArrayList<>();
+        private int count;
+
+        void add(long lineNumber, String message) {
+            count++;
+            if (reported.size() < MAX_REPORTED_ERRORS) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("line", lineNumber);
+                error.put("error", message);
+                reported.add(error);
+            }
+        }
+    }
+
+    // A parsed NDJSON line waiting for its chunk; json is null for a raw number
+    private record IngestLine(long number, String payload, JsonNode json) {
+    }
+
+    // Builds and stores one chunk; returns the number of entries stored
+    private int flush(List<IngestLine> pending, Map<String, String> userIdsByEmail,
+            Rejections errors) {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        resolveEmails(pending, userIdsByEmail);
+
+        List<UsageEntry> entries = new ArrayList<>(pending.size());
+        List<IngestLine> built = new ArrayList<>(pending.size());
+        for (IngestLine line : pending) {
+            try {
+                entries.add(buildUsageEntry(line.payload(), line.json(), null, userIdsByEmail::get));
+                built.add(line);
+            } catch (IllegalArgumentException e) {
+                errors.add(line.number(), e.getMessage());
+            }
+        }
+        pending.clear();
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        try {
+            usageEntryRepository.saveAll(entries);
+        } catch (RuntimeException e) {
+            log.error("Could not store NDJSON chunk of {} entries", entries.size(), e);
+            for (IngestLine line : built) {
+                errors.add(line.number(), "Could not be stored");
+            }
+            return 0;
+        }
+        usageAlertService.onSaved(entries);
+        return entries.size();
+    }
+
+    // One query per chunk for the emails not looked up yet; unknown emails are remembered as null
+    private void resolveEmails(List<IngestLine> pending, Map<String, String> userIdsByEmail) {
+        Set<String> emails = new HashSet<>();
+        for (IngestLine line : pending) {
+            JsonNode node = line.json();
+            if (node != null && !node.has("userId") && node.has("email")) {
+                String email = node.get("email").asText();
+                if (!userIdsByEmail.containsKey(email)) {
+                    emails.add(email);
                 }
+            }
+        }
+        if (emails.isEmpty()) {
+            return;
+        }
+        if (userIdsByEmail.size() + emails.size() > MAX_CACHED_EMAILS) {
+            userIdsByEmail.clear();
+        }
+        for (String email : emails) {
+            userIdsByEmail.put(email, null);
+        }
+        for (User user : userRepository.findByEmailIn(emails)) {
+            userIdsByEmail.put(user.getEmail(), user.getId());
+        }
+    }
+
+    /**
+     * Reads lines keeping at most maxChars of each. The rest of a longer line is
+     * read and dropped, and {@link #tooLong()} is set for it; its text is empty.
+     */
+    private static final class LineReader {
+        private final BufferedReader reader;
+        private final int maxChars;
+        private final StringBuilder buffer = new StringBuilder();
+        private boolean tooLong;
 
-                if (node.has("timestamp")) {
-                    try {
-                        timestamp = LocalDateTime.parse(node.get("timestamp").asText(),
-                                DateTimeFormatter.ISO_DATE_TIME);
-                    } catch (Exception e) {
-                        log.warn("Could not parse timestamp from payload, using current time");
-                    }
+        LineReader(BufferedReader reader, int maxChars) {
+            this.reader = reader;
+            this.maxChars = maxChars;
+        }
+
+        // The next line, or null at end of stream
+        String next() throws IOException {
+            buffer.setLength(0);
+            tooLong = false;
+            int c;
+            while ((c = reader.read()) != -1 && c != '\n') {
+                if (buffer.length() < maxChars) {
+                    buffer.append((char) c);
+                } else {
+                    tooLong = true;
                 }
-            } else {
-                // Raw number
-                try {
-                    co2Delta = Double.parseDouble(payload);
-                    if (userId == null) {
-                        userId = "DEFAULT_USER";
-                    }
-                } catch (NumberFormatException e) {
-                    log.error("Payload is not JSON and not a number: {}", payload);
-                    return;
+            }
+            if (c == -1 && buffer.length() == 0) {
+                return null;
+            }
+            if (tooLong) {
+                return "";
+            }
+            int length = buffer.length();
+            if (length > 0 && buffer.charAt(length - 1) == '\r') {
+                buffer.setLength(length - 1);
+            }
+            return buffer.toString();
+        }
+
+        // Whether the line last returned by next() was cut off
+        boolean tooLong() {
+            return tooLong;
+        }
+    }
+
+    /**
+     * Parses and validates a single usage payload (JSON object or raw number)
+     * into an unsaved entry. A raw number carries no user, so it is only
+     * accepted when the caller knows the user (e.g. a per-user MQTT broker).
+     *
+     * @throws IllegalArgumentException if the payload is unusable.
+     */
+    UsageEntry buildUsageEntry(String payload, String knownUserId) throws IOException {
+        JsonNode node = payload.trim().startsWith("{") ? objectMapper.readTree(payload) : null;
+        return buildUsageEntry(payload, node, knownUserId,
+                email -> userRepository.findByEmail(email).map(User::getId).orElse(null));
+    }
+
+    private UsageEntry buildUsageEntry(String payload, JsonNode node, String knownUserId,
+            Function<String, String> userIdForEmail) {
+        String userId = knownUserId;
+        Double co2Delta = 0.0;
+        LocalDateTime timestamp = LocalDateTime.now();
+
+        if (node != null) {
+            // If userId is not provided (or we want to trust payload?), let's prefer
+            // knownUserId if not null.
+            // But if payload has a DIFFERENT userId, what do we do?
+            // Let's assume knownUserId is the source of truth if provided.
+            if (userId == null) {
+                if (node.has("userId")) {
+                    userId = node.get("userId").asText();
+                } else if (node.has("email")) {
+                    userId = userIdForEmail.apply(node.get("email").asText());
                 }
             }
 
-            if (userId != null) {
-                UsageEntry entry = new UsageEntry();
-                entry.setUserId(userId);
-                entry.setCo2KgDelta(co2Delta);
-                entry.setTimestamp(timestamp);
-                entry.setRawPayload(payload);
-                usageEntryRepository.save(entry);
-                log.info("Saved usage entry for user {}: {} kg", userId, co2Delta);
-            } else {
-                log.warn("Could not resolve user for payload: {}", payload);
+            if (node.has("co2KgDelta")) {
+                co2Delta = node.get("co2KgDelta").asDouble();
             }
 
-        } catch (Exception e) {
-            log.error("Error processing MQTT message", e);
+            if (node.has("timestamp")) {
+                try {
+                    timestamp = LocalDateTime.parse(node.get("timestamp").asText(),
+                            DateTimeFormatter.ISO_DATE_TIME);
+                } catch (Exception e) {
+                    log.warn("Could not parse timestamp from payload, using current time");
+                }
+            }
+        } else {
+            // Raw number
+            try {
+                co2Delta = Double.parseDouble(payload);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Payload is not JSON and not a number");
+            }
+            if (userId == null) {
+                throw new IllegalArgumentException("Raw number payload has no user");
+            }
+        }
+
+        if (userId == null) {
+            throw new IllegalArgumentException("Could not resolve user for payload");
         }
+
+        UsageEntry entry = new UsageEntry();
+        entry.setUserId(userId);
+        entry.setCo2KgDelta(co2Delta);
+        entry.setTimestamp(timestamp);
+        entry.setRawPayload(payload);
+        return entry;
     }
 
     public void processMqttMessage(String payload) {
@@ -0,0 +1,185 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Order;
+import com.carboncredit.model.UserActivity;
+import com.carboncredit.repository.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the user_activity document for each user. Write paths call the
+ * record* methods, which apply a single atomic $inc/$push on the user's
+ * document. A missing document is rebuilt from the source collections on first
+ * read, so existing data and seeded users need no migration.
+ *
+ * A rebuild first makes sure the document exists, so writes made while it
+ * counts land on it and bump its revision. The counts are then stored with
+ * one update conditional on that revision, and recounted if it moved; a
+ * plain $set after the counts would drop any $inc made in between.
+ */
+@Service
+@Slf4j
+public class UserActivityService {
+
+    public static final int RECENT_ORDERS_LIMIT = 5;
+
+    private static final int MAX_REBUILD_ATTEMPTS = 3;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private CarbonCreditRepository carbonCreditRepository;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private RetirementRepository retirementRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    public UserActivity getActivity(String userId) {
+        UserActivity activity = mongoTemplate.findOne(byUser(userId), UserActivity.class);
+        return (activity != null && activity.getRebuiltAt() != null) ? activity : rebuild(userId);
+    }
+
+    /**
+     * Reads the document with a server-side time limit (maxTimeMS). A missing
+     * document is still rebuilt without one: that happens once per user and is
+     * stored, so a caller that gave up still leaves it for the next read.
+     */
+    public UserActivity getActivity(String userId, Duration maxTime) {
+        UserActivity activity = mongoTemplate.findOne(byUser(userId).maxTime(maxTime), UserActivity.class);
+        return (activity != null && activity.getRebuiltAt() != null) ? activity : rebuild(userId);
+    }
+
+    /**
+     * Recomputes a user's counters from the source collections and stores them,
+     * unless other writes keep racing with the count; the counted figures are
+     * returned either way, and an unfinished document is rebuilt on next read.
+     */
+    public UserActivity rebuild(String userId) {
+        for (int attempt = 1;; attempt++) {
+            long revision = ensureDocument(userId).getRevision();
+            UserActivity counted = count(userId);
+            Update update = new Update()
+                    .set("projectsCount", counted.getProjectsCount())
+                    .set("creditsCount", counted.getCreditsCount())
+                    .set("tradesCount", counted.getTradesCount())
+                    .set("retirementsCount", counted.getRetirementsCount())
+                    .set("ordersCount", counted.getOrdersCount())
+                    .set("recentOrderIds", counted.getRecentOrderIds())
+                    .set("rebuiltAt", counted.getRebuiltAt());
+
+            // Documents written before revisions existed have none
+            Criteria unchanged = (revision == 0) ? Criteria.where("revision").in(0L, null)
+                    : Criteria.where("revision").is(revision);
+            UserActivity rebuilt = mongoTemplate.findAndModify(byUser(userId).addCriteria(unchanged), update,
+                    FindAndModifyOptions.options().returnNew(true), UserActivity.class);
+            if (rebuilt != null) {
+                return rebuilt;
+            }
+            if (attempt == MAX_REBUILD_ATTEMPTS) {
+                log.warn("Activity rebuild for user {} kept racing with writes, leaving it for the next read",
+                        userId);
+                return counted;
+            }
+        }
+    }
+
+    private UserActivity ensureDocument(String userId) {
+        try {
+            return mongoTemplate.findAndModify(byUser(userId), new Update().setOnInsert("revision", 0L),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), UserActivity.class);
+        } catch (DuplicateKeyException e) {
+            // A concurrent rebuild inserted it first
+            return mongoTemplate.findOne(byUser(userId), UserActivity.class);
+        }
+    }
+
+    private UserActivity count(String userId) {
+        UserActivity counted = new UserActivity();
+        counted.setUserId(userId);
+        counted.setProjectsCount(projectRepository.countByIssuerId(userId));
+        counted.setCreditsCount(carbonCreditRepository.countByOwnerId(userId));
+        counted.setTradesCount(tradeRepository.countByBuyerId(userId) + tradeRepository.countBySellerId(userId));
+        counted.setRetirementsCount(retirementRepository.countByUserId(userId));
+        counted.setOrdersCount(orderRepository.countByUserIdAndStatusNot(userId, Order.OrderStatus.CANCELLED));
+        counted.setRecentOrderIds(orderRepository.findTop5ByUserIdOrderByCreatedAtDesc(userId).stream()
+                .map(Order::getId)
+                .collect(Collectors.toList()));
+        counted.setRebuiltAt(LocalDateTime.now());
+        return counted;
+    }
+
+    public void recordProject(String issuerId, int delta) {
+        increment(issuerId, "projectsCount", delta);
+    }
+
+    public void recordCredit(String ownerId, int delta) {
+        increment(ownerId, "creditsCount", delta);
+    }
+
+    public void recordRetirement(String userId) {
+        increment(userId, "retirementsCount", 1);
+    }
+
+    public void recordTrade(String buyerId, String sellerId) {
+        increment(buyerId, "tradesCount", 1);
+        increment(sellerId, "tradesCount", 1);
+    }
+
+    public void recordOrder(String userId, String orderId) {
+        Update update = new Update().inc("ordersCount", 1);
+        update.push("recentOrderIds").atPosition(Update.Position.FIRST).slice(RECENT_ORDERS_LIMIT).each(orderId);
+        apply(userId, update);
+    }
+
+    public void recordOrderCancelled(String userId) {
+        increment(userId, "ordersCount", -1);
+    }
+
+    private void increment(String userId, String counter, int delta) {
+        apply(userId, new Update().inc(counter, delta));
+    }
+
+    // Updates an existing document only; users without one are rebuilt on read,
+    // which already reflects this write, and a rebuild in progress sees the
+    // revision move. Failures must not break the caller, so
+    // the document is dropped instead and rebuilt next time it is read.
+    private void apply(String userId, Update update) {
+        if (userId == null) {
+            return;
+        }
+        try {
+            mongoTemplate.updateFirst(byUser(userId), update.inc("revision", 1), UserActivity.class);
+        } catch (Exception e) {
+            log.warn("Failed to update activity for user {}, scheduling rebuild: {}", userId, e.getMessage());
+            try {
+                mongoTemplate.remove(byUser(userId), UserActivity.class);
+            } catch (Exception ignored) {
+                // Counters stay stale until the next successful rebuild
+            }
+        }
+    }
+
+    private Query byUser(String userId) {
+        return new Query(Criteria.where("userId").is(userId));
+    }
+}
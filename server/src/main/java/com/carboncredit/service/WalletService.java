@@ -1,20 +1,99 @@
 package com.carboncredit.service;
 
 import com.carboncredit.model.Wallet;
+import com.mongodb.client.result.UpdateResult;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 @Service
+@Slf4j
 public class WalletService {
 
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private MetricsService metricsService;
+
+    /**
+     * Creates the unique userId index that wallet upserts rely on. Wallets
+     * duplicated by the old check-then-insert path would make the index build
+     * fail, so they are merged into the user's oldest wallet first. Startup
+     * fails if the index still cannot be built, as upserts would otherwise keep
+     * creating duplicates.
+     */
+    @PostConstruct
+    public void ensureUserIdIndex() {
+        int merged = mergeDuplicateWallets();
+        if (merged > 0) {
+            log.warn("Merged {} duplicate wallet(s) into their users' oldest wallet", merged);
+        }
+        try {
+            mongoTemplate.indexOps(Wallet.class)
+                    .ensureIndex(new Index().on("userId", Sort.Direction.ASC).unique().named("userId"));
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not create the unique wallets.userId index", e);
+        }
+    }
+
+    // Returns the number of wallets merged away
+    int mergeDuplicateWallets() {
+        Aggregation duplicates = Aggregation.newAggregation(
+                Aggregation.group("userId").count().as("count").push("_id").as("ids"),
+                Aggregation.match(Criteria.where("count").gt(1)));
+        int merged = 0;
+        for (Document group : mongoTemplate.aggregate(duplicates, Wallet.class, Document.class)) {
+            List<Object> ids = new ArrayList<>(group.getList("ids", Object.class));
+            // ObjectIds start with their creation time
+            ids.sort(Comparator.comparing(Object::toString));
+            Object keeper = ids.get(0);
+            for (Object duplicateId : ids.subList(1, ids.size())) {
+                Wallet duplicate = mongoTemplate.findById(duplicateId, Wallet.class);
+                if (duplicate == null) {
+                    continue;
+                }
+                // The marker entry makes the merge safe to repeat if we stop before the delete
+                Wallet.Transaction marker = new Wallet.Transaction();
+                marker.setId("merged-wallet-" + duplicateId);
+                marker.setType(Wallet.Transaction.TransactionType.DEPOSIT);
+                marker.setAmount(duplicate.getBalance());
+                marker.setCarbonCredits(duplicate.getCarbonCreditBalance());
+                marker.setRelatedEntityId(String.valueOf(duplicateId));
+                marker.setDescription("Merged duplicate wallet " + duplicateId);
+                marker.setTimestamp(System.currentTimeMillis());
+                List<Object> entries = new ArrayList<>(duplicate.getTransactions());
+                entries.add(marker);
+                Update update = new Update()
+                        .inc("balance", duplicate.getBalance())
+                        .inc("carbonCreditBalance", duplicate.getCarbonCreditBalance())
+                        .inc("moneyLocked", duplicate.getMoneyLocked())
+                        .inc("creditLocked", duplicate.getCreditLocked());
+                update.push("transactions").each(entries.toArray());
+                mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(keeper)
+                        .and("transactions.id").ne(marker.getId())), update, Wallet.class);
+                mongoTemplate.remove(new Query(Criteria.where("_id").is(duplicateId)), Wallet.class);
+                merged++;
+            }
+        }
+        return merged;
+    }
+
     /**
      * Atomically updates the wallet balance and carbon credit balance.
      * Throws an exception if the wallet is not found or if there are insufficient
@@ -29,8 +108,7 @@ public class WalletService {
      */
     @Transactional
     public Wallet updateBalance(String userId, double moneyDelta, double creditDelta) {
-        System.out.println("Updating wallet for user: " + userId + ", moneyDelta: " + moneyDelta + ", creditDelta: "
-                + creditDelta);
+        log.debug("Updating wallet for user: {}, moneyDelta: {}, creditDelta: {}", userId, moneyDelta, creditDelta);
 
         Query query = new Query(Criteria.where("userId").is(userId));
         Update update = new Update();
@@ -50,20 +128,16 @@ public class WalletService {
         // Credit balance can go negative (like a carbon tax/debt)
         // No check needed for creditDelta < 0
 
-        Wallet updatedWallet = mongoTemplate.findAndModify(
-                query,
-                update,
-                org.springframework.data.mongodb.core.FindAndModifyOptions.options().returnNew(true),
-                Wallet.class);
+        Wallet updatedWallet = findAndModify("update_balance", query, update,
+                FindAndModifyOptions.options().returnNew(true));
 
         if (updatedWallet == null) {
-            System.err.println(
-                    "Wallet update failed: Insufficient funds/credits or wallet not found for user: " + userId);
+            log.warn("Wallet update failed: Insufficient funds/credits or wallet not found for user: {}", userId);
             throw new RuntimeException("Wallet update failed: Insufficient funds/credits or wallet not found.");
         }
 
-        System.out.println("Wallet updated successfully. New Balance: " + updatedWallet.getBalance()
-                + ", New Credit Balance: " + updatedWallet.getCarbonCreditBalance());
+        log.debug("Wallet updated successfully. New Balance: {}, New Credit Balance: {}",
+                updatedWallet.getBalance(), updatedWallet.getCarbonCreditBalance());
 
         return updatedWallet;
     }
@@ -79,7 +153,7 @@ public class WalletService {
         update.inc("balance", -amount);
         update.inc("moneyLocked", amount);
 
-        Wallet updated = mongoTemplate.findAndModify(query, update, Wallet.class);
+        Wallet updated = findAndModify("reserve_funds", query, update, FindAndModifyOptions.options());
         if (updated == null) {
             throw new RuntimeException("Insufficient funds to reserve for user: " + userId);
         }
@@ -94,7 +168,7 @@ public class WalletService {
         update.inc("carbonCreditBalance", -amount);
         update.inc("creditLocked", amount);
 
-        Wallet updated = mongoTemplate.findAndModify(query, update, Wallet.class);
+        Wallet updated = findAndModify("reserve_credits", query, update, FindAndModifyOptions.options());
         if (updated == null) {
             throw new RuntimeException("Insufficient credits to reserve for user: " + userId);
         }
@@ -109,7 +183,7 @@ public class WalletService {
         update.inc("moneyLocked", -amount);
         update.inc("balance", amount);
 
-        mongoTemplate.updateFirst(query, update, Wallet.class);
+        updateFirst("release_funds", query, update);
     }
 
     @Transactional
@@ -120,11 +194,30 @@ public class WalletService {
         update.inc("creditLocked", -amount);
         update.inc("carbonCreditBalance", amount);
 
-        mongoTemplate.updateFirst(query, update, Wallet.class);
+        updateFirst("release_credits", query, update);
     }
 
     @Transactional
     public void processTrade(String buyerId, String sellerId, double quantity, double price) {
+        FlightRecorderEvents.TradeSettlement event = new FlightRecorderEvents.TradeSettlement();
+        event.begin();
+        String outcome = "failed";
+        try {
+            outcome = settle(buyerId, sellerId, quantity, price);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.buyerId = buyerId;
+                event.sellerId = sellerId;
+                event.quantity = quantity;
+                event.price = price;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private String settle(String buyerId, String sellerId, double quantity, double price) {
         double totalCost = quantity * price;
 
         // 1. Buyer: Decrease Money Locked, Increase Credit Balance
@@ -142,7 +235,8 @@ public class WalletService {
         buyerTx.setTimestamp(System.currentTimeMillis());
         buyerUpdate.push("transactions", buyerTx);
 
-        mongoTemplate.updateFirst(new Query(Criteria.where("userId").is(buyerId)), buyerUpdate, Wallet.class);
+        boolean buyerSettled = updateFirst("settle_buyer", new Query(Criteria.where("userId").is(buyerId)),
+                buyerUpdate);
 
         // 2. Seller: Decrease Credit Locked, Increase Money Balance
         Update sellerUpdate = new Update();
@@ -159,21 +253,34 @@ public class WalletService {
         sellerTx.setTimestamp(System.currentTimeMillis());
         sellerUpdate.push("transactions", sellerTx);
 
-        mongoTemplate.updateFirst(new Query(Criteria.where("userId").is(sellerId)), sellerUpdate, Wallet.class);
+        boolean sellerSettled = updateFirst("settle_seller", new Query(Criteria.where("userId").is(sellerId)),
+                sellerUpdate);
+
+        if (buyerSettled && sellerSettled) {
+            return "settled";
+        }
+        return buyerSettled ? "seller_missing" : sellerSettled ? "buyer_missing" : "both_missing";
     }
 
-    // Helper to create wallet if not exists (idempotent)
+    // Helper to create wallet if not exists (idempotent). A single upsert, so two
+    // concurrent callers cannot both create one (userId is uniquely indexed)
     public void createWalletIfNotExists(String userId) {
         Query query = new Query(Criteria.where("userId").is(userId));
-        if (!mongoTemplate.exists(query, Wallet.class)) {
-            Wallet wallet = new Wallet();
-            wallet.setUserId(userId);
-            wallet.setBalance(0.0);
-            wallet.setCarbonCreditBalance(0.0);
-            wallet.setMoneyLocked(0.0);
-            wallet.setCreditLocked(0.0);
-            mongoTemplate.save(wallet);
-        }
+        Update update = walletDefaults()
+                .setOnInsert("carbonCreditBalance", 0.0)
+                .setOnInsert("transactions", new java.util.ArrayList<>());
+        mongoTemplate.upsert(query, update, Wallet.class);
+    }
+
+    /**
+     * $setOnInsert defaults for upserting a wallet. Leaves carbonCreditBalance and
+     * transactions to the caller, which may $inc / $push them in the same update.
+     */
+    static Update walletDefaults() {
+        return new Update()
+                .setOnInsert("balance", 0.0)
+                .setOnInsert("moneyLocked", 0.0)
+                .setOnInsert("creditLocked", 0.0);
     }
 
     @Transactional
@@ -195,9 +302,35 @@ public class WalletService {
         tx.setTimestamp(System.currentTimeMillis());
         update.push("transactions", tx);
 
-        Wallet updated = mongoTemplate.findAndModify(query, update, Wallet.class);
+        Wallet updated = findAndModify("retire_credits", query, update, FindAndModifyOptions.options());
         if (updated == null) {
             throw new RuntimeException("Insufficient credits to retire for user: " + userId);
         }
     }
+
+    // Timed wallet writes: outcome "rejected" means the guard in the query (balance,
+    // wallet exists) did not match, "error" that Mongo threw
+    private Wallet findAndModify(String operation, Query query, Update update, FindAndModifyOptions options) {
+        long start = System.nanoTime();
+        String outcome = MetricsService.ERROR;
+        try {
+            Wallet wallet = mongoTemplate.findAndModify(query, update, options, Wallet.class);
+            outcome = wallet != null ? MetricsService.APPLIED : MetricsService.REJECTED;
+            return wallet;
+        } finally {
+            metricsService.recordWalletUpdate(operation, outcome, start);
+        }
+    }
+
+    private boolean updateFirst(String operation, Query query, Update update) {
+        long start = System.nanoTime();
+        String outcome = MetricsService.ERROR;
+        try {
+            UpdateResult result = mongoTemplate.updateFirst(query, update, Wallet.class);
+            outcome = result.getMatchedCount() > 0 ? MetricsService.APPLIED : MetricsService.REJECTED;
+            return result.getMatchedCount() > 0;
+        } finally {
+            metricsService.recordWalletUpdate(operation, outcome, start);
+        }
+    }
 }
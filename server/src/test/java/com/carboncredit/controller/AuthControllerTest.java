@@ -8,6 +8,7 @@ import com.carboncredit.payload.response.JwtResponse;
 import com.carboncredit.payload.response.MessageResponse;
 import com.carboncredit.repository.UserRepository;
 import com.carboncredit.repository.WalletRepository;
+import com.carboncredit.security.AuthAdmissionService;
 import com.carboncredit.security.JwtUtils;
 import com.carboncredit.security.UserDetailsImpl;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,6 +17,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -27,6 +29,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -52,6 +55,9 @@ public class AuthControllerTest {
     @Mock
     private JwtUtils jwtUtils;
 
+    @Mock
+    private AuthAdmissionService authAdmissionService;
+
     @Mock
     private Authentication authentication;
 
@@ -62,6 +68,13 @@ public class AuthControllerTest {
     public void setup() {
         MockitoAnnotations.openMocks(this);
         SecurityContextHolder.setContext(securityContext);
+        try {
+            // Run hashing tasks inline
+            when(authAdmissionService.execute(any(), any(), any()))
+                    .thenAnswer(invocation -> ((Callable<?>) invocation.getArgument(2)).call());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     @Test
@@ -79,7 +92,7 @@ public class AuthControllerTest {
         savedUser.setId("user1");
         when(userRepository.save(any(User.class))).thenReturn(savedUser);
 
-        ResponseEntity<?> response = authController.registerUser(req);
+        ResponseEntity<?> response = authController.registerUser(req, new MockHttpServletRequest());
 
         assertEquals(200, response.getStatusCodeValue());
         assertTrue(response.getBody() instanceof MessageResponse);
@@ -102,7 +115,7 @@ public class AuthControllerTest {
         when(authentication.getPrincipal()).thenReturn(userDetails);
         when(jwtUtils.generateJwtToken(authentication)).thenReturn("jwt-token");
 
-        ResponseEntity<?> response = authController.authenticateUser(req);
+        ResponseEntity<?> response = authController.authenticateUser(req, new MockHttpServletRequest());
 
         assertEquals(200, response.getStatusCodeValue());
         assertTrue(response.getBody() instanceof JwtResponse);
@@ -110,4 +123,19 @@ public class AuthControllerTest {
         assertEquals("jwt-token", jwtResponse.getToken());
         assertEquals("user1", jwtResponse.getId());
     }
+
+    @Test
+    public void testAuthenticateUser_ThrottledReturns429() throws Exception {
+        LoginRequest req = new LoginRequest();
+        req.setEmail("user@test.com");
+        req.setPassword("password");
+        doThrow(new AuthAdmissionService.Throttled("Too many sign-in attempts", 12000))
+                .when(authAdmissionService).execute(any(), any(), any());
+
+        ResponseEntity<?> response = authController.authenticateUser(req, new MockHttpServletRequest());
+
+        assertEquals(429, response.getStatusCode().value());
+        assertEquals("12", response.getHeaders().getFirst("Retry-After"));
+        verifyNoInteractions(authenticationManager);
+    }
 }
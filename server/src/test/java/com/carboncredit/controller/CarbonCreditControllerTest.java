@@ -31,6 +31,9 @@ public class CarbonCreditControllerTest {
     @Mock
     private CreditService creditService;
 
+    @Mock
+    private com.carboncredit.service.UserActivityService userActivityService;
+
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
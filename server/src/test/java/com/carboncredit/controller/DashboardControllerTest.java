@@ -3,20 +3,31 @@ package com.carboncredit.controller;
 import com.carboncredit.model.*;
 import com.carboncredit.repository.*;
 import com.carboncredit.security.UserDetailsImpl;
+import com.carboncredit.service.PlatformStatsCache;
+import com.carboncredit.service.PricingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class DashboardControllerTest {
@@ -45,6 +56,18 @@ public class DashboardControllerTest {
     @Mock
     private RetirementRepository retirementRepository;
 
+    @Mock
+    private com.carboncredit.service.UserActivityService userActivityService;
+
+    @Mock
+    private PlatformStatsCache platformStatsCache;
+
+    @Mock
+    private PricingService pricingService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
@@ -52,14 +75,15 @@ public class DashboardControllerTest {
 
     @Test
     public void testGetDashboardStats() {
-        when(projectRepository.count()).thenReturn(10L);
-        when(carbonCreditRepository.count()).thenReturn(100L);
-        when(userRepository.count()).thenReturn(50L);
-        when(tradeRepository.count()).thenReturn(20L);
-        when(retirementRepository.count()).thenReturn(5L);
-        when(carbonCreditRepository.countByStatus(any(CarbonCredit.CreditStatus.class))).thenReturn(10L);
-        when(tradeRepository.findTop10ByOrderByExecutedAtDesc()).thenReturn(new ArrayList<>());
-        when(projectRepository.findAll()).thenReturn(new ArrayList<>());
+        PlatformStatsCache.Snapshot snapshot = new PlatformStatsCache.Snapshot();
+        snapshot.setTotalProjects(10L);
+        snapshot.setTotalCredits(100L);
+        snapshot.setTotalUsers(50L);
+        snapshot.setTotalTrades(20L);
+        snapshot.setTotalRetirements(5L);
+        snapshot.setRecentTrades(new ArrayList<>());
+        snapshot.setComputedAt(System.currentTimeMillis());
+        when(platformStatsCache.get()).thenReturn(snapshot);
 
         ResponseEntity<?> response = dashboardController.getDashboardStats();
 
@@ -68,6 +92,7 @@ public class DashboardControllerTest {
         assertNotNull(stats);
         assertEquals(10L, stats.getTotalProjects());
         assertEquals(100L, stats.getTotalCredits());
+        verify(projectRepository, never()).count();
     }
 
     @Test
@@ -83,13 +108,13 @@ public class DashboardControllerTest {
 
         Wallet wallet = new Wallet();
         wallet.setCarbonCreditBalance(50.0);
-        when(walletRepository.findByUserId("user1")).thenReturn(wallet);
-        when(projectRepository.findByIssuerId("user1")).thenReturn(new ArrayList<>());
-        when(carbonCreditRepository.findByOwnerId("user1")).thenReturn(new ArrayList<>());
-        when(tradeRepository.findByBuyerId("user1")).thenReturn(new ArrayList<>());
-        when(tradeRepository.findBySellerId("user1")).thenReturn(new ArrayList<>());
-        when(retirementRepository.findByUserId("user1")).thenReturn(new ArrayList<>());
-        when(orderRepository.findByUserId("user1")).thenReturn(new ArrayList<>());
+        when(mongoTemplate.findOne(any(Query.class), eq(Wallet.class))).thenReturn(wallet);
+        UserActivity activity = new UserActivity();
+        activity.setUserId("user1");
+        activity.setProjectsCount(2);
+        activity.setTradesCount(7);
+        when(userActivityService.getActivity(eq("user1"), any(Duration.class))).thenReturn(activity);
+        when(pricingService.getLastTradedPrice(any(Duration.class))).thenReturn(100.0);
 
         ResponseEntity<?> response = dashboardController.getUserDashboardStats();
 
@@ -97,6 +122,83 @@ public class DashboardControllerTest {
         DashboardController.UserDashboardStats stats = (DashboardController.UserDashboardStats) response.getBody();
         assertNotNull(stats);
         assertEquals(50.0, stats.getCreditBalance());
+        assertEquals(2, stats.getUserProjectsCount());
+        assertEquals(7, stats.getUserTradesCount());
+        assertEquals(5000.0, stats.getPortfolioValue());
+        assertFalse(stats.isPartial());
+        verify(projectRepository, never()).findByIssuerId(anyString());
+
+        // Every lookup carries the deadline to the server as maxTimeMS
+        ArgumentCaptor<Query> walletQuery = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findOne(walletQuery.capture(), eq(Wallet.class));
+        Long maxTimeMsec = walletQuery.getValue().getMeta().getMaxTimeMsec();
+        assertNotNull(maxTimeMsec);
+        assertTrue(maxTimeMsec > 0 && maxTimeMsec <= 2000);
+        verify(pricingService).getLastTradedPrice(any(Duration.class));
+    }
+
+    @Test
+    public void testGetUserDashboardStats_DeadlineReturnsPartialResponse() throws Exception {
+        signIn();
+        ReflectionTestUtils.setField(dashboardController, "userStatsDeadlineMs", 200L);
+        Wallet wallet = new Wallet();
+        wallet.setCarbonCreditBalance(3.0);
+        when(mongoTemplate.findOne(any(Query.class), eq(Wallet.class))).thenReturn(wallet);
+        when(pricingService.getLastTradedPrice(any(Duration.class))).thenReturn(10.0);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userActivityService.getActivity(eq("user1"), any(Duration.class))).thenAnswer(invocation -> {
+            release.await(); // a lookup stuck well past the deadline
+            return new UserActivity();
+        });
+
+        try {
+            long start = System.nanoTime();
+            ResponseEntity<?> response = dashboardController.getUserDashboardStats();
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(200, response.getStatusCode().value());
+            DashboardController.UserDashboardStats stats = (DashboardController.UserDashboardStats) response
+                    .getBody();
+            assertTrue(elapsedMs < 2000, "Response took " + elapsedMs + "ms");
+            assertTrue(stats.isPartial());
+            assertEquals("OK", stats.getSections().get("wallet"));
+            assertEquals("OK", stats.getSections().get("portfolioValue"));
+            assertEquals("TIMEOUT", stats.getSections().get("activity"));
+            assertEquals("TIMEOUT", stats.getSections().get("recentOrders"));
+            assertEquals(3.0, stats.getCreditBalance());
+            assertEquals(30.0, stats.getPortfolioValue());
+            assertEquals(0, stats.getUserTradesCount());
+            assertTrue(stats.getRecentOrders().isEmpty());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testGetUserDashboardStats_ServerSideTimeoutIsReportedAsTimeout() {
+        signIn();
+        when(mongoTemplate.findOne(any(Query.class), eq(Wallet.class)))
+                .thenThrow(new QueryTimeoutException("operation exceeded time limit"));
+        when(pricingService.getLastTradedPrice(any(Duration.class)))
+                .thenThrow(new IllegalStateException("boom"));
+
+        ResponseEntity<?> response = dashboardController.getUserDashboardStats();
+
+        assertEquals(200, response.getStatusCode().value());
+        DashboardController.UserDashboardStats stats = (DashboardController.UserDashboardStats) response.getBody();
+        assertTrue(stats.isPartial());
+        assertEquals("TIMEOUT", stats.getSections().get("wallet"));
+        assertEquals("ERROR", stats.getSections().get("portfolioValue"));
+        assertEquals(0.0, stats.getCreditBalance());
+    }
+
+    private void signIn() {
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal())
+                .thenReturn(new UserDetailsImpl("user1", "user@test.com", "password", new HashSet<>()));
     }
 
 }
@@ -0,0 +1,77 @@
+package com.carboncredit.controller;
+
+import com.carboncredit.service.ExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+
+public class ExportControllerTest {
+
+    @InjectMocks
+    private ExportController exportController;
+
+    @Mock
+    private ExportService exportService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("id\r\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).exportTrades(any(OutputStream.class), eq(ExportService.Format.CSV), isNull(),
+                isNull(), isNull());
+    }
+
+    @Test
+    public void testExportIsGzippedWhenAccepted() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        exportController.exportTrades("csv", null, null, null, request, response);
+
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals("id\r\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testExportIsPlainWithoutGzipInAcceptEncoding() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        exportController.exportTrades("csv", null, null, null, new MockHttpServletRequest(), response);
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("id\r\n", response.getContentAsString());
+        assertTrue(response.getHeader(HttpHeaders.CONTENT_DISPOSITION).startsWith("attachment;"));
+    }
+
+    @Test
+    public void testAcceptEncodingParsing() {
+        assertTrue(ExportController.acceptsGzip("GZIP"));
+        assertTrue(ExportController.acceptsGzip("br, *"));
+        assertFalse(ExportController.acceptsGzip("gzip;q=0, *"));
+        assertFalse(ExportController.acceptsGzip("*;q=0"));
+        assertFalse(ExportController.acceptsGzip("identity"));
+        assertFalse(ExportController.acceptsGzip(null));
+    }
+}
@@ -3,6 +3,7 @@ package com.carboncredit.controller;
 import com.carboncredit.model.Order;
 import com.carboncredit.repository.OrderRepository;
 import com.carboncredit.repository.TradeRepository;
+import com.carboncredit.service.LatencyRecorder;
 import com.carboncredit.service.OrderMatchingService;
 import com.carboncredit.service.PricingService;
 import org.junit.jupiter.api.BeforeEach;
@@ -36,6 +37,9 @@ public class MarketplaceControllerTest {
     @Mock
     private com.carboncredit.service.WalletService walletService;
 
+    @Mock
+    private LatencyRecorder latencyRecorder;
+
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
@@ -2,7 +2,10 @@ package com.carboncredit.controller;
 
 import com.carboncredit.model.Project;
 import com.carboncredit.repository.ProjectRepository;
-import com.carboncredit.service.CreditService;
+import com.carboncredit.service.AuditLogWriter;
+import com.carboncredit.service.CreditIssuanceService;
+import com.carboncredit.service.OwnerLookupService;
+import com.carboncredit.service.UserActivityService;
 import com.carboncredit.security.UserDetailsImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,7 +20,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class ProjectControllerTest {
@@ -29,7 +34,16 @@ public class ProjectControllerTest {
     private ProjectRepository projectRepository;
 
     @Mock
-    private CreditService creditService;
+    private CreditIssuanceService creditIssuanceService;
+
+    @Mock
+    private OwnerLookupService ownerLookupService;
+
+    @Mock
+    private UserActivityService userActivityService;
+
+    @Mock
+    private AuditLogWriter auditLogWriter;
 
     @BeforeEach
     public void setup() {
@@ -60,7 +74,7 @@ public class ProjectControllerTest {
     }
 
     @Test
-    public void testVerifyProject_GeneratesCredits() {
+    public void testVerifyProject_QueuesCreditIssuance() {
         String projectId = "proj1";
         Map<String, String> statusUpdate = new HashMap<>();
         statusUpdate.put("status", "VERIFIED");
@@ -74,15 +88,44 @@ public class ProjectControllerTest {
 
         when(projectRepository.findById(projectId)).thenReturn(Optional.of(project));
         when(projectRepository.save(any(Project.class))).thenReturn(project);
+        CreditIssuanceService.Job job = mock(CreditIssuanceService.Job.class);
+        when(job.getId()).thenReturn("job1");
+        when(creditIssuanceService.submit(eq(List.of(projectId)), any())).thenReturn(job);
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        when(authentication.getPrincipal())
+                .thenReturn(new UserDetailsImpl("admin1", "admin@test.com", "password", new HashSet<>()));
 
         ResponseEntity<Project> response = projectController.verifyProject(projectId, statusUpdate);
 
         assertEquals(200, response.getStatusCode().value());
         assertEquals(Project.ProjectStatus.VERIFIED, project.getStatus());
-        verify(creditService, times(1)).generateCredits(projectId, 100.0, "user1");
+        assertEquals("job1", response.getHeaders().getFirst(ProjectController.CREDIT_ISSUANCE_JOB_HEADER));
+        // The job claims creditsGenerated, not the request
+        assertFalse(project.isCreditsGenerated());
+        // Requested by the admin's user id, as AdminController records it
+        verify(creditIssuanceService, times(1)).submit(eq(List.of(projectId)), eq("admin1"));
         verify(projectRepository, times(1)).save(project);
     }
 
+    @Test
+    public void testVerifyProject_AlreadyCreditedDoesNotQueue() {
+        Project project = new Project();
+        project.setId("proj1");
+        project.setStatus(Project.ProjectStatus.PENDING);
+        project.setCreditsGenerated(true);
+
+        when(projectRepository.findById("proj1")).thenReturn(Optional.of(project));
+        when(projectRepository.save(any(Project.class))).thenReturn(project);
+
+        ResponseEntity<Project> response = projectController.verifyProject("proj1", Map.of("status", "VERIFIED"));
+
+        assertEquals(200, response.getStatusCode().value());
+        verify(creditIssuanceService, never()).submit(any(), any());
+    }
+
     @Test
     public void testGetMyProjects() {
         // Mock Security Context
@@ -1,11 +1,13 @@
 package com.carboncredit.controller;
 
 import com.carboncredit.model.CarbonCredit;
+import com.carboncredit.model.Retirement;
 import com.carboncredit.model.Wallet;
 import com.carboncredit.repository.CarbonCreditRepository;
 import com.carboncredit.repository.RetirementRepository;
 import com.carboncredit.repository.WalletRepository;
 import com.carboncredit.security.UserDetailsImpl;
+import com.carboncredit.service.RetiredSerialIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -16,8 +18,12 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class RetirementControllerTest {
@@ -37,6 +43,18 @@ public class RetirementControllerTest {
     @Mock
     private com.carboncredit.service.WalletService walletService;
 
+    @Mock
+    private com.carboncredit.service.UserActivityService userActivityService;
+
+    @Mock
+    private com.carboncredit.service.SerialBlockRegistry serialBlockRegistry;
+
+    @Mock
+    private com.carboncredit.service.AuditLogWriter auditLogWriter;
+
+    @Mock
+    private RetiredSerialIndex retiredSerialIndex;
+
     @Mock
     private Authentication authentication;
 
@@ -85,5 +103,68 @@ public class RetirementControllerTest {
 
         // Ensure walletService was called to retire credits
         verify(walletService, times(1)).retireCredits("user1", 10.0);
+        verify(userActivityService, times(1)).recordRetirement("user1");
+    }
+
+    @Test
+    public void testDoubleRetirementIsRejectedBeforeDebit() {
+        doThrow(new RetiredSerialIndex.AlreadyRetired("Serials in p1-2024-000000001-000000010 are already retired"))
+                .when(serialBlockRegistry).checkRetirable("user1", 10.0);
+
+        RetirementController.RetirementRequest request = new RetirementController.RetirementRequest();
+        request.setQuantity(10.0);
+
+        ResponseEntity<?> response = retirementController.retireCredits(request);
+        assertEquals(400, response.getStatusCode().value());
+        assertTrue(response.getBody().toString().contains("already retired"));
+        verify(walletService, never()).retireCredits(anyString(), anyDouble());
+        verify(retirementRepository, never()).save(any());
+    }
+
+    @Test
+    public void testDoubleRetirementRaceRefundsWallet() {
+        when(serialBlockRegistry.recordRetirement(eq("user1"), eq(10.0), anyString()))
+                .thenThrow(new RetiredSerialIndex.AlreadyRetired("Serials in p1-2024-000000001-000000010 are already retired"));
+
+        RetirementController.RetirementRequest request = new RetirementController.RetirementRequest();
+        request.setQuantity(10.0);
+
+        ResponseEntity<?> response = retirementController.retireCredits(request);
+        assertEquals(400, response.getStatusCode().value());
+        verify(walletService).retireCredits("user1", 10.0);
+        verify(walletService).updateBalance("user1", 0.0, 10.0);
+        verify(retirementRepository, never()).save(any());
+    }
+
+    @Test
+    public void testRetirementIsSavedOnceWithItsSerials() {
+        when(serialBlockRegistry.recordRetirement(eq("user1"), eq(10.0), anyString()))
+                .thenReturn(List.of("p1-2024-000000001-000000010"));
+        when(retirementRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        RetirementController.RetirementRequest request = new RetirementController.RetirementRequest();
+        request.setQuantity(10.0);
+
+        ResponseEntity<?> response = retirementController.retireCredits(request);
+        assertEquals(200, response.getStatusCode().value());
+        Retirement saved = (Retirement) response.getBody();
+        assertEquals(List.of("p1-2024-000000001-000000010"), saved.getSerialRanges());
+        assertNotNull(saved.getId());
+        verify(serialBlockRegistry).recordRetirement("user1", 10.0, saved.getId());
+        verify(retirementRepository, times(1)).save(any());
+    }
+
+    @Test
+    public void testCountRetiredSerialsRejectsOutOfRangeBounds() {
+        assertEquals(400, retirementController.countRetiredSerials("p1", 2024, -1, 10).getStatusCode().value());
+        assertEquals(400, retirementController.countRetiredSerials("p1", 2024, 10, 5).getStatusCode().value());
+        assertEquals(400, retirementController.countRetiredSerials("p1", 2024, 1, 0x100000000L)
+                .getStatusCode().value());
+        verify(retiredSerialIndex, never()).countRetired(anyString(), anyInt(), anyLong(), anyLong());
+
+        when(retiredSerialIndex.countRetired("p1", 2024, 1, 100)).thenReturn(40L);
+        ResponseEntity<?> response = retirementController.countRetiredSerials("p1", 2024, 1, 100);
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(Map.of("retired", 40L, "total", 100L), response.getBody());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package com.carboncredit.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthAdmissionServiceTest {
+
+    private AuthAdmissionService admission;
+
+    @BeforeEach
+    public void setup() {
+        admission = new AuthAdmissionService();
+        ReflectionTestUtils.setField(admission, "threads", 1);
+        ReflectionTestUtils.setField(admission, "queueSize", 1);
+        ReflectionTestUtils.setField(admission, "accountCapacity", 2);
+        ReflectionTestUtils.setField(admission, "accountPerMinute", 1);
+        admission.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        admission.shutdown();
+    }
+
+    @Test
+    public void testAccountBucketLimitsAttemptsCaseInsensitively() throws Exception {
+        assertEquals("ok", admission.execute("alice@test.com", "10.0.0.1", () -> "ok"));
+        assertEquals("ok", admission.execute("Alice@Test.com", "10.0.0.2", () -> "ok"));
+
+        AuthAdmissionService.Throttled throttled = assertThrows(AuthAdmissionService.Throttled.class,
+                () -> admission.execute("alice@test.com", "10.0.0.3", () -> "ok"));
+        // One token per minute comes back in about 60s
+        assertTrue(throttled.getRetryAfterSeconds() > 50);
+
+        // Other accounts are unaffected
+        assertEquals("ok", admission.execute("bob@test.com", "10.0.0.1", () -> "ok"));
+    }
+
+    @Test
+    public void testSaturatedPoolRejectsFast() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // One task occupies the single thread, a second fills the one-slot queue
+            Future<?> first = callers.submit(() -> admission.execute("a", "ip-a", () -> {
+                running.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            Future<?> second = callers.submit(() -> admission.execute("b", "ip-b", () -> true));
+            while (admission.getStats().get("queued").equals(0)) {
+                Thread.sleep(5);
+            }
+
+            assertThrows(AuthAdmissionService.Throttled.class,
+                    () -> admission.execute("c", "ip-c", () -> true));
+            assertEquals(1L, admission.getStats().get("rejected"));
+
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.carboncredit.security;
+
+import com.carboncredit.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class AuthTokenFilterTest {
+
+    @InjectMocks
+    private AuthTokenFilter filter;
+
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Mock
+    private TokenVersionService tokenVersionService;
+
+    private final JwtUtils jwtUtils = new JwtUtils();
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret",
+                Base64.getEncoder().encodeToString(new byte[64]));
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 60000);
+        jwtUtils.init();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        SecurityContextHolder.clearContext();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private String tokenFor(long tokenVersion) {
+        UserDetailsImpl principal = new UserDetailsImpl("u1", "alice@test.com", "secret",
+                List.of(new SimpleGrantedAuthority(User.Role.ROLE_ADMIN.name())), tokenVersion);
+        return jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+    }
+
+    private void filterWith(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/wallet");
+        request.setServletPath("/api/wallet");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    @Test
+    public void testAuthenticatesFromClaimsWithoutUserLookup() throws Exception {
+        when(tokenVersionService.isCurrent("u1", 3)).thenReturn(true);
+
+        filterWith(tokenFor(3));
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        UserDetailsImpl principal = (UserDetailsImpl) authentication.getPrincipal();
+        assertEquals("u1", principal.getId());
+        assertEquals("alice@test.com", principal.getUsername());
+        assertTrue(authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    public void testRejectsTokenWithStaleVersion() throws Exception {
+        when(tokenVersionService.isCurrent("u1", 3)).thenReturn(false);
+
+        filterWith(tokenFor(3));
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+}
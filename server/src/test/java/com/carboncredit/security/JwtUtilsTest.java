@@ -0,0 +1,67 @@
+package com.carboncredit.security;
+
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtUtilsTest {
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    public void setup() {
+        jwtUtils = newJwtUtils(60000);
+    }
+
+    private static JwtUtils newJwtUtils(int expirationMs) {
+        JwtUtils utils = new JwtUtils();
+        ReflectionTestUtils.setField(utils, "jwtSecret", Base64.getEncoder().encodeToString(new byte[64]));
+        ReflectionTestUtils.setField(utils, "jwtExpirationMs", expirationMs);
+        utils.init();
+        return utils;
+    }
+
+    private static String tokenFrom(JwtUtils utils) {
+        UserDetailsImpl principal = new UserDetailsImpl("u1", "alice@test.com", "secret",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), 2);
+        return utils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+    }
+
+    @Test
+    public void testVerifiedTokenIsServedFromCache() {
+        String token = tokenFrom(jwtUtils);
+
+        Claims first = jwtUtils.parseJwtToken(token);
+        Claims second = jwtUtils.parseJwtToken(token);
+
+        assertNotNull(first);
+        // Same claims instance: the second call skipped the signature check
+        assertSame(first, second);
+        UserDetailsImpl principal = jwtUtils.getUserDetailsFromClaims(first);
+        assertEquals("u1", principal.getId());
+        assertEquals(2, principal.getTokenVersion());
+        assertEquals("alice@test.com", jwtUtils.getUserNameFromJwtToken(token));
+    }
+
+    @Test
+    public void testRejectsTamperedAndExpiredTokens() {
+        String token = tokenFrom(jwtUtils);
+        jwtUtils.parseJwtToken(token);
+
+        // A different signature is a different cache key and fails verification
+        String tampered = token.substring(0, token.length() - 4) + "AAAA";
+        assertNull(jwtUtils.parseJwtToken(tampered));
+        assertFalse(jwtUtils.validateJwtToken(tampered));
+
+        JwtUtils shortLived = newJwtUtils(-1000);
+        assertNull(shortLived.parseJwtToken(tokenFrom(shortLived)));
+    }
+}
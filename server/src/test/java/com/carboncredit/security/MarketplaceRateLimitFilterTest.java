@@ -0,0 +1,73 @@
+package com.carboncredit.security;
+
+import com.carboncredit.service.OrderRateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MarketplaceRateLimitFilterTest {
+
+    private MarketplaceRateLimitFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        OrderRateLimiter limiter = new OrderRateLimiter();
+        ReflectionTestUtils.setField(limiter, "userPlace", "2/1");
+        limiter.init();
+        filter = new MarketplaceRateLimitFilter();
+        ReflectionTestUtils.setField(filter, "orderRateLimiter", limiter);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private void signIn(String userId) {
+        UserDetailsImpl user = new UserDetailsImpl(userId, userId + "@test.com", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    private MockHttpServletResponse send(String method, String path) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    public void testPlacementBudgetIsPerUserAndSeparateFromReads() throws Exception {
+        signIn("bot");
+        assertEquals(200, send("POST", "/api/marketplace/orders").getStatus());
+        assertEquals(200, send("POST", "/api/marketplace/orders").getStatus());
+
+        MockHttpServletResponse limited = send("POST", "/api/marketplace/orders");
+        assertEquals(429, limited.getStatus());
+        // One placement per minute refills in about a minute
+        assertTrue(Integer.parseInt(limited.getHeader("Retry-After")) > 50);
+
+        // Reads and cancels have their own budgets
+        assertEquals(200, send("GET", "/api/marketplace/orders/my").getStatus());
+        assertEquals(200, send("PUT", "/api/marketplace/orders/o1/cancel").getStatus());
+
+        // Other users are unaffected, as are non-marketplace paths
+        signIn("human");
+        assertEquals(200, send("POST", "/api/marketplace/orders").getStatus());
+        signIn("bot");
+        assertEquals(200, send("POST", "/api/projects").getStatus());
+    }
+}
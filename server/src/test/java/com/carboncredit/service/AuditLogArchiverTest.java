@@ -0,0 +1,156 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class AuditLogArchiverTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2024, 1);
+    private static final String DETACHED = "audit_logs_2024_01_archiving_1";
+
+    @InjectMocks
+    private AuditLogArchiver archiver;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private AuditLogPartitions auditLogPartitions;
+
+    @TempDir
+    Path archiveDir;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(archiver, "objectMapper",
+                new ObjectMapper().registerModule(new JavaTimeModule())
+                        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+        ReflectionTestUtils.setField(archiver, "archiveDir", archiveDir.toString());
+        when(auditLogPartitions.detach(MONTH)).thenReturn(DETACHED);
+    }
+
+    @Test
+    public void testArchivesVerifiesAndDropsPartition() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(AuditLog.class), eq(DETACHED)))
+                .thenReturn(Stream.of(entry("a1", "u1", 1), entry("a2", "u2", 2), entry("a3", "u1", 3)));
+
+        AuditLogArchiver.Segment segment = archiver.archive(MONTH);
+
+        assertEquals(3, segment.getEntries());
+        assertEquals(64, segment.getSha256().length());
+        assertEquals("audit_logs_2024_01.ndjson.gz", segment.getFile());
+        assertTrue(archiver.verify(segment));
+        verify(auditLogPartitions).dropDetached(DETACHED);
+        assertEquals(1, archiver.listSegments().size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long matched = archiver.scan(archiver.getSegment(MONTH).orElseThrow(), "u1", null, null, out);
+        assertEquals(2, matched);
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertTrue(ndjson.contains("\"a1\"") && ndjson.contains("\"a3\"") && !ndjson.contains("\"a2\""));
+    }
+
+    @Test
+    public void testDetectsCorruptedSegment() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(AuditLog.class), eq(DETACHED)))
+                .thenReturn(Stream.of(entry("a1", "u1", 1)));
+        AuditLogArchiver.Segment segment = archiver.archive(MONTH);
+
+        Path file = archiveDir.resolve(segment.getFile());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(file, bytes);
+
+        assertFalse(archiver.verify(segment));
+    }
+
+    @Test
+    public void testEntriesWrittenWhileArchivingAreAppendedByTheNextRun() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(AuditLog.class), eq(DETACHED)))
+                .thenReturn(Stream.of(entry("a1", "u1", 10)));
+        AuditLogArchiver.Segment first = archiver.archive(MONTH);
+
+        // Written to the month after it was detached, so it went to a new partition
+        String late = "audit_logs_2024_01_archiving_2";
+        when(auditLogPartitions.detach(MONTH)).thenReturn(late);
+        when(mongoTemplate.stream(any(Query.class), eq(AuditLog.class), eq(late)))
+                .thenReturn(Stream.of(entry("a2", "u1", 5)));
+        AuditLogArchiver.Segment segment = archiver.archive(MONTH);
+
+        assertEquals(2, segment.getEntries());
+        assertEquals(List.of(DETACHED, late), segment.getSources());
+        assertEquals(LocalDateTime.of(2024, 1, 5, 12, 0), segment.getFirstTimestamp());
+        assertTrue(archiver.verify(segment));
+        assertFalse(Files.exists(archiveDir.resolve(first.getFile())));
+        verify(auditLogPartitions).dropDetached(DETACHED);
+        verify(auditLogPartitions).dropDetached(late);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, archiver.scan(archiver.getSegment(MONTH).orElseThrow(), "u1", null, null, out));
+    }
+
+    @Test
+    public void testInterruptedDropIsFinishedWithoutArchivingTwice() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(AuditLog.class), eq(DETACHED)))
+                .thenReturn(Stream.of(entry("a1", "u1", 1)));
+        doThrow(new RuntimeException("connection lost")).doNothing().when(auditLogPartitions).dropDetached(DETACHED);
+        assertThrows(RuntimeException.class, () -> archiver.archive(MONTH));
+
+        // The next run finds the collection still detached, and nothing new to detach
+        when(auditLogPartitions.detached(MONTH)).thenReturn(List.of(DETACHED));
+        when(auditLogPartitions.detach(MONTH)).thenReturn(null);
+        AuditLogArchiver.Segment segment = archiver.archive(MONTH);
+
+        assertEquals(1, segment.getEntries());
+        verify(mongoTemplate, times(1)).stream(any(Query.class), eq(AuditLog.class), eq(DETACHED));
+        verify(auditLogPartitions, times(2)).dropDetached(DETACHED);
+    }
+
+    @Test
+    public void testRefusesRelativeArchiveDirectory() {
+        ReflectionTestUtils.setField(archiver, "enabled", true);
+        ReflectionTestUtils.setField(archiver, "archiveDir", "./data/audit-archive");
+
+        assertThrows(IllegalStateException.class, () -> archiver.checkConfiguration());
+        assertThrows(IllegalStateException.class, () -> archiver.archive(MONTH));
+        verify(auditLogPartitions, never()).detach(any());
+        verify(auditLogPartitions, never()).dropDetached(any());
+    }
+
+    private AuditLog entry(String id, String userId, int day) {
+        AuditLog entry = new AuditLog();
+        entry.setId(id);
+        entry.setUserId(userId);
+        entry.setAction(AuditLog.ActionType.TRADE);
+        entry.setEntityType("Trade");
+        entry.setEntityId("t-" + id);
+        entry.setTimestamp(LocalDateTime.of(2024, 1, day, 12, 0));
+        return entry;
+    }
+}
@@ -0,0 +1,111 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.AuditLog;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AuditLogPartitionsTest {
+
+    @InjectMocks
+    private AuditLogPartitions partitions;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.indexOps(anyString())).thenReturn(mock(IndexOperations.class));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(AuditLog.class), anyString()))
+                .thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+    }
+
+    @Test
+    public void testHotCollectionsAreCachedUntilPartitionsChange() {
+        partitionExists("audit_logs_2024_01");
+        when(mongoTemplate.getCollectionNames()).thenReturn(Set.of("audit_logs_2024_01", "audit_logs_2024_02",
+                "audit_logs_2023_12_archiving_1700000000000", "users"));
+        when(mongoTemplate.collectionExists(AuditLogPartitions.LEGACY_COLLECTION)).thenReturn(true);
+
+        // Detached partitions are being archived and are not read as hot
+        List<String> hot = partitions.hotCollections();
+        assertEquals(List.of("audit_logs_2024_02", "audit_logs_2024_01", "audit_logs"), hot);
+        partitions.hotCollections();
+        verify(mongoTemplate, times(1)).getCollectionNames();
+
+        partitions.detach(YearMonth.of(2024, 1));
+        partitions.hotCollections();
+        verify(mongoTemplate, times(2)).getCollectionNames();
+    }
+
+    @Test
+    public void testDetachRenamesThePartitionOutOfTheWritersWay() {
+        MongoCollection<Document> partition = partitionExists("audit_logs_2024_01");
+
+        String detached = partitions.detach(YearMonth.of(2024, 1));
+
+        assertTrue(detached.startsWith("audit_logs_2024_01_archiving_"));
+        verify(partition).renameCollection(new MongoNamespace("carbon", detached));
+
+        when(mongoTemplate.getCollectionNames()).thenReturn(Set.of(detached, "audit_logs_2024_01",
+                "audit_logs_2024_02_archiving_1"));
+        assertEquals(List.of(detached), partitions.detached(YearMonth.of(2024, 1)));
+        assertEquals(Set.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2)), partitions.listDetachedMonths());
+    }
+
+    @Test
+    public void testMigrateLegacyMovesClosedMonthsIntoPartitions() {
+        when(mongoTemplate.collectionExists(AuditLogPartitions.LEGACY_COLLECTION)).thenReturn(true);
+        when(mongoTemplate.find(any(Query.class), eq(AuditLog.class), eq(AuditLogPartitions.LEGACY_COLLECTION)))
+                .thenReturn(List.of(entry("a1", 2023, 12), entry("a2", 2024, 1)))
+                .thenReturn(List.of());
+
+        long moved = partitions.migrateLegacy(YearMonth.of(2024, 2));
+
+        assertEquals(2, moved);
+        verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, AuditLog.class, "audit_logs_2023_12");
+        verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, AuditLog.class, "audit_logs_2024_01");
+        verify(bulkOperations, times(2)).execute();
+        verify(mongoTemplate).remove(any(Query.class), eq(AuditLogPartitions.LEGACY_COLLECTION));
+    }
+
+    @SuppressWarnings("unchecked")
+    private MongoCollection<Document> partitionExists(String name) {
+        MongoCollection<Document> partition = mock(MongoCollection.class);
+        when(partition.getNamespace()).thenReturn(new MongoNamespace("carbon", name));
+        when(mongoTemplate.getCollection(name)).thenReturn(partition);
+        when(mongoTemplate.collectionExists(name)).thenReturn(true);
+        return partition;
+    }
+
+    private AuditLog entry(String id, int year, int month) {
+        AuditLog entry = new AuditLog();
+        entry.setId(id);
+        entry.setTimestamp(LocalDateTime.of(year, month, 15, 12, 0));
+        return entry;
+    }
+}
@@ -0,0 +1,87 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.AuditLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class AuditLogWriterTest {
+
+    @InjectMocks
+    private AuditLogWriter auditLogWriter;
+
+    @Mock
+    private AuditLogPartitions auditLogPartitions;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(auditLogWriter, "capacity", 5);
+        ReflectionTestUtils.setField(auditLogWriter, "batchSize", 2);
+        // Long interval: only full batches or shutdown trigger writes
+        ReflectionTestUtils.setField(auditLogWriter, "flushIntervalMs", 60000L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRecordsClientIpAndWritesBatchesOnShutdown() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("203.0.113.7");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        // Not started: entries only queue up, and the sixth is dropped
+        for (int i = 0; i < 6; i++) {
+            auditLogWriter.record(AuditLog.ActionType.TRADE, "Trade", "t" + i, "details");
+        }
+        assertEquals(5, auditLogWriter.getStats().get("queued"));
+        assertEquals(1L, auditLogWriter.getStats().get("dropped"));
+        verifyNoInteractions(auditLogPartitions);
+
+        auditLogWriter.flush();
+
+        ArgumentCaptor<Collection<AuditLog>> batches = ArgumentCaptor.forClass(Collection.class);
+        verify(auditLogPartitions, times(3)).insert(batches.capture());
+        List<Collection<AuditLog>> written = batches.getAllValues();
+        assertEquals(List.of(2, 2, 1), written.stream().map(Collection::size).toList());
+        AuditLog first = written.get(0).iterator().next();
+        assertEquals("203.0.113.7", first.getIpAddress());
+        assertEquals(AuditLogWriter.SYSTEM_USER, first.getUserId());
+        assertNotNull(first.getTimestamp());
+        assertEquals(5L, auditLogWriter.getStats().get("written"));
+    }
+
+    @Test
+    public void testBackgroundWriterFlushesFullBatches() throws Exception {
+        auditLogWriter.start();
+        try {
+            auditLogWriter.record(AuditLog.ActionType.VERIFY, "Project", "p1", "APPROVED");
+            auditLogWriter.record(AuditLog.ActionType.VERIFY, "Project", "p2", "APPROVED");
+
+            // A full batch wakes the writer well before the flush interval
+            verify(auditLogPartitions, timeout(5000)).insert(any(Collection.class));
+        } finally {
+            auditLogWriter.shutdown();
+        }
+        assertEquals(2L, auditLogWriter.getStats().get("written"));
+    }
+}
@@ -0,0 +1,247 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CarbonCredit;
+import com.carboncredit.model.CreditBlock;
+import com.carboncredit.model.Project;
+import com.carboncredit.model.Wallet;
+import com.carboncredit.repository.CreditBlockRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CreditIssuanceServiceTest {
+
+    @InjectMocks
+    private CreditIssuanceService creditIssuanceService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private SerialBlockRegistry serialBlockRegistry;
+
+    @Mock
+    private UserActivityService userActivityService;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), any(Class.class)))
+                .thenReturn(bulkOperations);
+        when(bulkOperations.upsert(any(Query.class), any(Update.class))).thenReturn(bulkOperations);
+        when(bulkOperations.updateOne(any(Query.class), any(Update.class))).thenReturn(bulkOperations);
+        CreditBlock block = new CreditBlock();
+        block.setProjectId("p1");
+        block.setVintageYear(2024);
+        block.setStart(1);
+        block.setEnd(100);
+        when(serialBlockRegistry.issue(anyString(), anyString(), anyInt(), anyString(), anyLong())).thenReturn(block);
+    }
+
+    private void walletUpdatesMatch(int matched) {
+        when(bulkOperations.execute())
+                .thenReturn(BulkWriteResult.acknowledged(0, matched, 0, matched, List.of(), List.of()));
+    }
+
+    private static Project verifiedProject(String id, String issuerId, double credits) {
+        Project project = new Project();
+        project.setId(id);
+        project.setName(id);
+        project.setIssuerId(issuerId);
+        project.setTotalCarbonCredits(credits);
+        project.setStatus(Project.ProjectStatus.VERIFIED);
+        project.setCreditsGenerated(true);
+        return project;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchCreditsClaimedProjectsAndSkipsTheRest() {
+        // p1 and p2 are claimed; p3 was already credited by an earlier job
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Project.class)))
+                .thenReturn(verifiedProject("p1", "alice", 100.0))
+                .thenReturn(verifiedProject("p2", "alice", 50.0))
+                .thenReturn(null);
+
+        walletUpdatesMatch(2);
+
+        CreditIssuanceService.Job job = new CreditIssuanceService.Job(List.of("p1", "p2", "p3"), "admin");
+        creditIssuanceService.processBatch(job, job.getProjectIds());
+
+        assertEquals(2, job.getIssued());
+        assertEquals(1, job.getSkipped());
+        assertEquals(0, job.getFailed());
+        assertEquals(150.0, job.getCreditsIssued());
+
+        // alice's wallet is created if missing, then each project is credited by a guarded update
+        verify(bulkOperations, times(1)).upsert(any(Query.class), any(Update.class));
+        ArgumentCaptor<Query> guards = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations, times(2)).updateOne(guards.capture(), any(Update.class));
+        assertTrue(guards.getValue().getQueryObject().toJson().contains("transactions.id"));
+        verify(bulkOperations, times(2)).execute();
+
+        ArgumentCaptor<Collection<CarbonCredit>> credits = ArgumentCaptor.forClass(Collection.class);
+        verify(mongoTemplate).insertAll(credits.capture());
+        assertEquals(List.of("credit-issuance-p1", "credit-issuance-p2"),
+                credits.getValue().stream().map(CarbonCredit::getId).toList());
+        verify(userActivityService).recordCredit("alice", 2);
+        // Claims are finished, not released
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), argThat(CreditIssuanceServiceTest::releases),
+                eq(Project.class));
+    }
+
+    @Test
+    public void testAlreadyCreditedProjectIsNotReleased() {
+        // A retried project whose ledger entry is already in the wallet: the guarded update matches nothing
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Project.class)))
+                .thenReturn(verifiedProject("p1", "alice", 100.0));
+        walletUpdatesMatch(0);
+        Wallet wallet = new Wallet();
+        Wallet.Transaction entry = new Wallet.Transaction();
+        entry.setId(CreditIssuanceService.issuanceId("p1"));
+        wallet.getTransactions().add(entry);
+        when(mongoTemplate.find(any(Query.class), eq(Wallet.class))).thenReturn(List.of(wallet));
+
+        CreditIssuanceService.Job job = new CreditIssuanceService.Job(List.of("p1"), "admin");
+        creditIssuanceService.processBatch(job, job.getProjectIds());
+
+        assertEquals(1, job.getIssued());
+        assertEquals(0, job.getFailed());
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), argThat(CreditIssuanceServiceTest::releases),
+                eq(Project.class));
+    }
+
+    @Test
+    public void testRecoveryJobCompletesWithoutRecordingTwice() {
+        when(mongoTemplate.find(any(Query.class), eq(Project.class)))
+                .thenReturn(List.of(verifiedProject("p1", "alice", 100.0)));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Project.class)))
+                .thenReturn(verifiedProject("p1", "alice", 100.0));
+        walletUpdatesMatch(0);
+        Wallet wallet = new Wallet();
+        Wallet.Transaction entry = new Wallet.Transaction();
+        entry.setId(CreditIssuanceService.issuanceId("p1"));
+        wallet.getTransactions().add(entry);
+        when(mongoTemplate.find(any(Query.class), eq(Wallet.class))).thenReturn(List.of(wallet));
+        CarbonCredit recorded = new CarbonCredit();
+        recorded.setId(CreditIssuanceService.issuanceId("p1"));
+        recorded.setProjectId("p1");
+        when(mongoTemplate.find(any(Query.class), eq(CarbonCredit.class))).thenReturn(List.of(recorded));
+
+        CreditIssuanceService.Job job = new CreditIssuanceService.Job(List.of("p1"), "system", true);
+        creditIssuanceService.processBatch(job, job.getProjectIds());
+
+        assertEquals(1, job.getIssued());
+        // The stale claim is taken over rather than requiring creditsGenerated=false
+        ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(claim.capture(), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Project.class));
+        assertTrue(claim.getValue().getQueryObject().containsKey("creditIssuanceStartedAt"));
+        verify(mongoTemplate, never()).insertAll(any());
+        verifyNoInteractions(serialBlockRegistry);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedCreditInsertIsRecoveredWithTheSameSerials() {
+        // A real registry over a mocked collection, so a second issue would add a second block
+        SerialBlockRegistry registry = new SerialBlockRegistry();
+        CreditBlockRepository blocks = mock(CreditBlockRepository.class);
+        when(blocks.save(any(CreditBlock.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        ReflectionTestUtils.setField(registry, "creditBlockRepository", blocks);
+        ReflectionTestUtils.setField(registry, "retiredSerialIndex", mock(RetiredSerialIndex.class));
+        ReflectionTestUtils.setField(creditIssuanceService, "serialBlockRegistry", registry);
+
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Project.class)))
+                .thenReturn(verifiedProject("p1", "alice", 100.0));
+        when(mongoTemplate.insertAll(any())).thenThrow(new RuntimeException("connection reset"))
+                .thenReturn(List.of());
+        walletUpdatesMatch(1);
+
+        CreditIssuanceService.Job job = new CreditIssuanceService.Job(List.of("p1"), "admin");
+        creditIssuanceService.processBatch(job, job.getProjectIds());
+
+        // Wallet credited, records not written: not counted as issued, and the claim is kept
+        assertEquals(0, job.getIssued());
+        assertEquals(1, job.getFailed());
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Project.class));
+
+        // Recovery: the wallet entry exists, the credit record does not
+        walletUpdatesMatch(0);
+        Wallet wallet = new Wallet();
+        Wallet.Transaction entry = new Wallet.Transaction();
+        entry.setId(CreditIssuanceService.issuanceId("p1"));
+        wallet.getTransactions().add(entry);
+        when(mongoTemplate.find(any(Query.class), eq(Wallet.class))).thenReturn(List.of(wallet));
+        when(mongoTemplate.find(any(Query.class), eq(CarbonCredit.class))).thenReturn(List.of());
+
+        CreditIssuanceService.Job recovery = new CreditIssuanceService.Job(List.of("p1"), "system", true);
+        creditIssuanceService.processBatch(recovery, recovery.getProjectIds());
+
+        assertEquals(1, recovery.getIssued());
+        List<CreditBlock> held = registry.getActiveBlocks("alice");
+        assertEquals(1, held.size());
+        assertEquals(100, held.get(0).size());
+        verify(blocks, times(1)).save(any(CreditBlock.class));
+        ArgumentCaptor<Collection<CarbonCredit>> credits = ArgumentCaptor.forClass(Collection.class);
+        verify(mongoTemplate, times(2)).insertAll(credits.capture());
+        assertEquals(credits.getAllValues().get(0).iterator().next().getSerialNumber(),
+                credits.getAllValues().get(1).iterator().next().getSerialNumber());
+    }
+
+    private static boolean releases(Update update) {
+        return update != null && update.getUpdateObject().toJson().contains("\"creditsGenerated\": false");
+    }
+
+    @Test
+    public void testFailedWalletUpdateReleasesClaim() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Project.class)))
+                .thenReturn(verifiedProject("p1", "alice", 100.0));
+        MongoBulkWriteException cause = new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), 0)), null,
+                new ServerAddress(), Set.of());
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("bulk failed", cause));
+
+        CreditIssuanceService.Job job = new CreditIssuanceService.Job(List.of("p1"), "admin");
+        creditIssuanceService.processBatch(job, job.getProjectIds());
+
+        assertEquals(0, job.getIssued());
+        assertEquals(1, job.getFailed());
+        assertFalse(job.getErrors().isEmpty());
+        // creditsGenerated is flipped back so a later job can retry, and nothing else is written
+        verify(mongoTemplate).updateMulti(any(Query.class), any(Update.class), eq(Project.class));
+        verify(mongoTemplate, never()).insertAll(any());
+        verifyNoInteractions(serialBlockRegistry);
+    }
+}
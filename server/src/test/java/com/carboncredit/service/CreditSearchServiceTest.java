@@ -0,0 +1,171 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CarbonCredit;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CreditSearchServiceTest {
+
+    @InjectMocks
+    private CreditSearchService creditSearchService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testSearch_ReturnsCursorWhenMoreRowsExist() {
+        stored(row("a", 10.0), row("b", 12.5), row("c", 15.0), row("d", 4.0));
+
+        Map<String, Object> first = creditSearchService.search(null, 2023, CarbonCredit.CreditStatus.LISTED,
+                5.0, null, null, 2, null);
+        assertEquals(List.of("a", "b"), ids(first));
+        assertNotNull(first.get("nextCursor"));
+
+        Map<String, Object> second = creditSearchService.search(null, 2023, CarbonCredit.CreditStatus.LISTED,
+                5.0, null, (String) first.get("nextCursor"), 2, null);
+        assertEquals(List.of("c"), ids(second));
+        assertNull(second.get("nextCursor"));
+    }
+
+    @Test
+    public void testSearch_PagesThroughTiesAndUnpricedCreditsFirst() {
+        // Unpriced rows sort first in Mongo, and must not be mistaken for a price of 0.0
+        stored(row("n1", null), row("p3", 0.0), row("n2", null), row("p1", 0.0), row("p2", 0.0),
+                row("p5", 8.0), new Document("_id", "n3").append("vintageYear", 2023)
+                        .append("status", CarbonCredit.CreditStatus.LISTED),
+                row("p4", 3.0));
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            Map<String, Object> page = creditSearchService.search(null, null, null, null, null, cursor, 2, null);
+            seen.addAll(ids(page));
+            cursor = (String) page.get("nextCursor");
+        } while (cursor != null);
+
+        assertEquals(List.of("n1", "n2", "n3", "p1", "p2", "p3", "p4", "p5"), seen);
+    }
+
+    @Test
+    public void testFind_ReturnsAllMatchesAndUnpricedOnlyWithoutPriceBound() {
+        stored(row("b", 12.5), row("n", null), row("a", 10.0), row("c", 15.0));
+
+        assertEquals(List.of("n", "a", "b", "c"),
+                creditSearchService.find(null, null, null, null, null).stream().map(CarbonCredit::getId).toList());
+        assertEquals(List.of("a", "b"),
+                creditSearchService.find(null, 2023, CarbonCredit.CreditStatus.LISTED, null, 12.5).stream()
+                        .map(CarbonCredit::getId).toList());
+    }
+
+    @Test
+    public void testSearch_RejectsBadCursorAndUnknownField() {
+        assertThrows(IllegalArgumentException.class,
+                () -> creditSearchService.search(null, null, null, null, null, "%%%", null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> creditSearchService.search(null, null, null, null, null, null, null, "password"));
+    }
+
+    // Stands in for the collection: applies the query's filter, sort and limit
+    // to the given documents and maps them the way the converter would
+    private void stored(Document... rows) {
+        when(mongoTemplate.find(any(Query.class), eq(CarbonCredit.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            return Arrays.stream(rows)
+                    .filter(row -> matches(row, query.getQueryObject()))
+                    .sorted(Comparator.comparing((Document row) -> (Double) row.get("pricePerUnit"),
+                            Comparator.nullsFirst(Comparator.<Double>naturalOrder()))
+                            .thenComparing(row -> row.getString("_id")))
+                    .limit(query.getLimit() > 0 ? query.getLimit() : Long.MAX_VALUE)
+                    .map(this::credit)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matches(Document row, Document filter) {
+        for (Map.Entry<String, Object> clause : filter.entrySet()) {
+            String key = clause.getKey();
+            if (key.equals("$and") || key.equals("$or")) {
+                List<Document> parts = (List<Document>) clause.getValue();
+                boolean ok = key.equals("$and") ? parts.stream().allMatch(part -> matches(row, part))
+                        : parts.stream().anyMatch(part -> matches(row, part));
+                if (!ok) {
+                    return false;
+                }
+                continue;
+            }
+            Object value = row.get(key);
+            if (!(clause.getValue() instanceof Document operators)) {
+                if (!Objects.equals(value, clause.getValue())) {
+                    return false;
+                }
+                continue;
+            }
+            for (Map.Entry<String, Object> operator : operators.entrySet()) {
+                Object operand = operator.getValue();
+                if (operator.getKey().equals("$ne")) {
+                    if (Objects.equals(value, operand)) {
+                        return false;
+                    }
+                    continue;
+                }
+                if (value == null || operand == null) {
+                    return false;
+                }
+                int order = ((Comparable<Object>) value).compareTo(operand);
+                boolean ok = switch (operator.getKey()) {
+                    case "$gt" -> order > 0;
+                    case "$gte" -> order >= 0;
+                    case "$lt" -> order < 0;
+                    case "$lte" -> order <= 0;
+                    default -> throw new IllegalArgumentException(operator.getKey());
+                };
+                if (!ok) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Document row(String id, Double price) {
+        return new Document("_id", id).append("pricePerUnit", price).append("vintageYear", 2023)
+                .append("status", CarbonCredit.CreditStatus.LISTED);
+    }
+
+    private CarbonCredit credit(Document row) {
+        CarbonCredit credit = new CarbonCredit();
+        credit.setId(row.getString("_id"));
+        credit.setPricePerUnit((Double) row.get("pricePerUnit"));
+        return credit;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> ids(Map<String, Object> page) {
+        return ((List<CarbonCredit>) page.get("content")).stream().map(CarbonCredit::getId).toList();
+    }
+}
@@ -0,0 +1,114 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Retirement;
+import com.carboncredit.model.Trade;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+public class ExportServiceTest {
+
+    @InjectMocks
+    private ExportService exportService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ReflectionTestUtils.setField(exportService, "objectMapper", objectMapper);
+    }
+
+    @Test
+    public void testLedgerCsvInterleavesByTime() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(Trade.class)))
+                .thenReturn(Stream.of(trade("t1", 9), trade("t2", 11)));
+        when(mongoTemplate.stream(any(Query.class), eq(Retirement.class)))
+                .thenReturn(Stream.of(retirement("r1", 10, "Acme, Inc.")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportLedger(out, ExportService.Format.CSV, null, null, null);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(4, lines.length);
+        assertEquals("timestamp,type,id,userId,counterpartyId,quantity,pricePerUnit,totalAmount", lines[0]);
+        assertEquals("2024-01-01T09:00,TRADE,t1,buyer,seller,5.0,2.0,10.0", lines[1]);
+        assertEquals("2024-01-01T10:00,RETIREMENT,r1,user1,,3.0,,", lines[2]);
+        assertEquals("2024-01-01T11:00,TRADE,t2,buyer,seller,5.0,2.0,10.0", lines[3]);
+    }
+
+    @Test
+    public void testRetirementsNdjsonOneObjectPerLine() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(Retirement.class)))
+                .thenReturn(Stream.of(retirement("r1", 10, "Acme, Inc."), retirement("r2", 12, "Bob")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportRetirements(out, ExportService.Format.NDJSON, null, null, "user1");
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("Acme, Inc.", new ObjectMapper().readTree(lines[0]).get("beneficiaryName").asText());
+        assertEquals("2024-01-01T12:00:00", new ObjectMapper().readTree(lines[1]).get("retiredAt").asText());
+    }
+
+    @Test
+    public void testCsvNeutralizesFormulasInTextButNotNumbers() throws Exception {
+        Retirement formula = retirement("r1", 10, "=HYPERLINK(\"http://x\",\"a\")");
+        formula.setRetirementReason("@SUM(A1:A2)");
+        Retirement negative = retirement("r2", 11, "-Acme");
+        negative.setQuantity(-3.0);
+        negative.setRetirementReason("+1 offset");
+        when(mongoTemplate.stream(any(Query.class), eq(Retirement.class))).thenReturn(Stream.of(formula, negative));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportRetirements(out, ExportService.Format.CSV, null, null, null);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals("r1,2024-01-01T10:00,user1,3.0,\"'=HYPERLINK(\"\"http://x\"\",\"\"a\"\")\",'@SUM(A1:A2),",
+                lines[1]);
+        assertEquals("r2,2024-01-01T11:00,user1,-3.0,'-Acme,'+1 offset,", lines[2]);
+    }
+
+    private Trade trade(String id, int hour) {
+        Trade trade = new Trade();
+        trade.setId(id);
+        trade.setBuyerId("buyer");
+        trade.setSellerId("seller");
+        trade.setQuantity(5.0);
+        trade.setPricePerUnit(2.0);
+        trade.setTotalAmount(10.0);
+        trade.setExecutedAt(LocalDateTime.of(2024, 1, 1, hour, 0));
+        return trade;
+    }
+
+    private Retirement retirement(String id, int hour, String beneficiary) {
+        Retirement retirement = new Retirement();
+        retirement.setId(id);
+        retirement.setUserId("user1");
+        retirement.setQuantity(3.0);
+        retirement.setBeneficiaryName(beneficiary);
+        retirement.setRetiredAt(LocalDateTime.of(2024, 1, 1, hour, 0));
+        return retirement;
+    }
+}
@@ -0,0 +1,62 @@
+package com.carboncredit.service;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecorderServiceTest {
+
+    private final FlightRecorderService flightRecorderService = new FlightRecorderService();
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    public void tearDown() {
+        flightRecorderService.closeRecording();
+    }
+
+    @Test
+    public void testRecordingCapturesApplicationEvents() throws Exception {
+        flightRecorderService.start("default", 5);
+        assertThrows(IllegalStateException.class, () -> flightRecorderService.start(null, null));
+
+        FlightRecorderEvents.TradeExecution event = new FlightRecorderEvents.TradeExecution();
+        event.begin();
+        event.end();
+        event.buyOrderId = "b1";
+        event.sellOrderId = "s1";
+        event.quantity = 2.5;
+        event.outcome = "settled";
+        event.commit();
+
+        assertEquals("STOPPED", flightRecorderService.stop().get("state"));
+
+        Path file = dir.resolve("recording.jfr");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            flightRecorderService.dump(out);
+        }
+        List<RecordedEvent> trades = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("com.carboncredit.TradeExecution"))
+                .toList();
+        assertEquals(1, trades.size());
+        assertEquals("b1", trades.get(0).getString("buyOrderId"));
+        assertEquals(2.5, trades.get(0).getDouble("quantity"));
+    }
+
+    @Test
+    public void testRejectsUnknownSettingsAndLongDurations() {
+        assertThrows(IllegalArgumentException.class, () -> flightRecorderService.start("nope", null));
+        assertThrows(IllegalArgumentException.class, () -> flightRecorderService.start(null, 600));
+        assertEquals("NONE", flightRecorderService.getStatus().get("state"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.carboncredit.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyRecorderTest {
+
+    private LatencyRecorder latencyRecorder;
+
+    @TempDir
+    Path logDir;
+
+    @BeforeEach
+    public void setup() {
+        latencyRecorder = new LatencyRecorder();
+        ReflectionTestUtils.setField(latencyRecorder, "logDir", logDir.toString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIntervalsRollIntoTotalsAndLog() throws Exception {
+        long now = System.nanoTime();
+        latencyRecorder.record(LatencyRecorder.Stage.RESERVATION, now - TimeUnit.MILLISECONDS.toNanos(2));
+        latencyRecorder.record(LatencyRecorder.Stage.RESERVATION, now - TimeUnit.MILLISECONDS.toNanos(40));
+        latencyRecorder.rollInterval();
+        latencyRecorder.record(LatencyRecorder.Stage.RESERVATION, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1));
+        latencyRecorder.rollInterval();
+        latencyRecorder.close();
+
+        Map<String, Object> reservation = (Map<String, Object>) latencyRecorder.getSnapshot().get("RESERVATION");
+        Map<String, Object> interval = (Map<String, Object>) reservation.get("interval");
+        Map<String, Object> total = (Map<String, Object>) reservation.get("total");
+        assertEquals(1L, interval.get("count"));
+        assertEquals(3L, total.get("count"));
+        assertTrue((double) total.get("maxMs") >= 40.0);
+
+        try (Stream<Path> files = Files.list(logDir)) {
+            Path log = files.findFirst().orElseThrow();
+            assertTrue(Files.readString(log).contains("Tag=RESERVATION"));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CarbonCredit;
+import com.carboncredit.model.Trade;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class MarketActivityServiceTest {
+
+    @InjectMocks
+    private MarketActivityService marketActivityService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    // month (yyyy-MM) -> count, as the $group stage would return them
+    private final Map<String, Long> tradeCounts = new HashMap<>();
+    private final Map<String, Long> creditCounts = new HashMap<>();
+
+    private final YearMonth now = YearMonth.now();
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        Trade firstTrade = new Trade();
+        firstTrade.setExecutedAt(now.minusMonths(3).atDay(5).atStartOfDay());
+        when(mongoTemplate.findOne(any(Query.class), eq(Trade.class))).thenReturn(firstTrade);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Trade.class), eq(Document.class)))
+                .thenAnswer(invocation -> rows(tradeCounts));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(CarbonCredit.class), eq(Document.class)))
+                .thenAnswer(invocation -> rows(creditCounts));
+        tradeCounts.put(now.minusMonths(3).toString(), 4L);
+        tradeCounts.put(now.minusMonths(1).toString(), 7L);
+        creditCounts.put(now.minusMonths(2).toString(), 2L);
+    }
+
+    @Test
+    public void testMonthsOutsideTheDataAreZeroAndNotCached() {
+        Map<String, Object> activity = marketActivityService.getMarketActivity(now.minusMonths(5).atDay(1),
+                now.plusMonths(2).atEndOfMonth());
+
+        // One entry per requested month, before the earliest trade and into the future included
+        assertEquals(8, ((List<?>) activity.get("labels")).size());
+        assertEquals(now.minusMonths(5).format(DateTimeFormatter.ofPattern("MMM yyyy")),
+                ((List<?>) activity.get("labels")).get(0));
+        assertEquals(List.of(0L, 0L, 4L, 0L, 7L, 0L, 0L, 0L), activity.get("trades"));
+        assertEquals(List.of(0L, 0L, 0L, 2L, 0L, 0L, 0L, 0L), activity.get("newCredits"));
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(Trade.class), eq(Document.class));
+        // Only the three closed months that can hold data are cached
+        assertEquals(3, ((Map<?, ?>) ReflectionTestUtils.getField(marketActivityService, "closedMonths")).size());
+    }
+
+    @Test
+    public void testClosedMonthsAreCachedUntilABackDatedSave() {
+        LocalDate from = now.minusMonths(3).atDay(1);
+        LocalDate to = now.atEndOfMonth();
+        marketActivityService.getMarketActivity(from, to);
+
+        // A write nobody is told about is not seen: the closed months come from the cache
+        creditCounts.put(now.minusMonths(2).toString(), 5L);
+        assertEquals(List.of(0L, 2L, 0L, 0L), marketActivityService.getMarketActivity(from, to).get("newCredits"));
+
+        // An admin-created credit dated two months back evicts that month
+        CarbonCredit backDated = new CarbonCredit();
+        backDated.setIssuedAt(now.minusMonths(2).atDay(10).atStartOfDay());
+        marketActivityService.onAfterSave(new AfterSaveEvent<>(backDated, new Document(), "carbon_credits"));
+
+        assertEquals(List.of(0L, 5L, 0L, 0L), marketActivityService.getMarketActivity(from, to).get("newCredits"));
+        verify(mongoTemplate, times(3)).aggregate(any(Aggregation.class), eq(Trade.class), eq(Document.class));
+    }
+
+    @Test
+    public void testBackDatedTradeBeforeEarliestDataWidensTheRange() {
+        LocalDate from = now.minusMonths(6).atDay(1);
+        marketActivityService.getMarketActivity(from, now.atEndOfMonth());
+
+        Trade backDated = new Trade();
+        backDated.setExecutedAt(now.minusMonths(5).atDay(1).atStartOfDay());
+        tradeCounts.put(now.minusMonths(5).toString(), 1L);
+        marketActivityService.onAfterSave(new AfterSaveEvent<>(backDated, new Document(), "trades"));
+
+        Map<String, Object> activity = marketActivityService.getMarketActivity(from, now.atEndOfMonth());
+        assertEquals(List.of(0L, 1L, 0L, 4L, 0L, 7L, 0L), activity.get("trades"));
+    }
+
+    @Test
+    public void testDeleteDropsTheCache() {
+        LocalDate from = now.minusMonths(3).atDay(1);
+        marketActivityService.getMarketActivity(from, now.atEndOfMonth());
+
+        tradeCounts.put(now.minusMonths(1).toString(), 6L);
+        marketActivityService.onAfterDelete(deleted(Trade.class, "t1"));
+
+        assertEquals(List.of(4L, 0L, 6L, 0L),
+                marketActivityService.getMarketActivity(from, now.atEndOfMonth()).get("trades"));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        ReflectionTestUtils.setField(marketActivityService, "maxCachedMonths", 1);
+        LocalDate from = now.minusMonths(3).atDay(1);
+        marketActivityService.getMarketActivity(from, now.atEndOfMonth());
+        marketActivityService.getMarketActivity(from, now.atEndOfMonth());
+
+        // Only one of the three closed months fits, so the second request reads the older ones again
+        verify(mongoTemplate, times(2)).aggregate(any(Aggregation.class), eq(Trade.class), eq(Document.class));
+        assertEquals(List.of(4L, 0L, 7L, 0L),
+                marketActivityService.getMarketActivity(from, now.atEndOfMonth()).get("trades"));
+    }
+
+    // The listener sees deletes of every entity type, hence AfterDeleteEvent<Object>
+    @SuppressWarnings("unchecked")
+    private static AfterDeleteEvent<Object> deleted(Class<?> type, String id) {
+        return new AfterDeleteEvent<>(new Document("_id", id), (Class<Object>) type, "trades");
+    }
+
+    private static AggregationResults<Document> rows(Map<String, Long> counts) {
+        List<Document> rows = new ArrayList<>();
+        counts.forEach((month, count) -> rows.add(new Document("_id", month).append("count", count)));
+        return new AggregationResults<>(rows, new Document());
+    }
+}
@@ -0,0 +1,76 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Order;
+import com.carboncredit.security.TimedPasswordEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsServiceTest {
+
+    private SimpleMeterRegistry registry;
+    private OrderBook orderBook;
+    private MetricsService metricsService;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        orderBook = new OrderBook();
+        metricsService = new MetricsService(registry, orderBook);
+    }
+
+    @Test
+    public void testBookDepthFollowsTheBook() {
+        orderBook.addOrder(order("b1", Order.OrderType.BUY, 10));
+        orderBook.addOrder(order("b2", Order.OrderType.BUY, 11));
+        orderBook.addOrder(order("s1", Order.OrderType.SELL, 12));
+        orderBook.removeOrder("b1");
+        orderBook.removeOrder("b1");
+
+        assertEquals(1.0, registry.get("marketplace.book.depth").tag("side", "buy").gauge().value());
+        assertEquals(1.0, registry.get("marketplace.book.depth").tag("side", "sell").gauge().value());
+    }
+
+    @Test
+    public void testFillsAndWalletOutcomesAreRecorded() {
+        long start = System.nanoTime();
+        metricsService.recordFill(2.5, start);
+        metricsService.recordFill(1.5, start);
+        metricsService.recordWalletUpdate("reserve_funds", MetricsService.APPLIED, start);
+        metricsService.recordWalletUpdate("reserve_funds", MetricsService.REJECTED, start);
+        metricsService.recordUsage("mqtt", MetricsService.REJECTED, 1);
+
+        assertEquals(2.0, registry.get("marketplace.fills").counter().count());
+        assertEquals(4.0, registry.get("marketplace.fill.volume").counter().count());
+        assertEquals(2, registry.get("marketplace.settlement").timer().count());
+        assertEquals(1, registry.get("wallet.update").tags("operation", "reserve_funds", "outcome", "rejected")
+                .timer().count());
+        assertEquals(1.0, registry.get("usage.ingest.records").tags("source", "mqtt", "outcome", "rejected")
+                .counter().count());
+    }
+
+    @Test
+    public void testPasswordHashesAreTimedByOperationAndCost() {
+        TimedPasswordEncoder encoder = new TimedPasswordEncoder(new BCryptPasswordEncoder(4), 4, metricsService);
+
+        String hash = encoder.encode("secret");
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+
+        assertEquals(1, registry.get("auth.password.hash").tags("operation", "encode", "cost", "4").timer().count());
+        assertEquals(2, registry.get("auth.password.hash").tags("operation", "matches", "cost", "4").timer().count());
+        assertEquals(3L, encoder.getStats().get("hashes"));
+    }
+
+    private Order order(String id, Order.OrderType type, double price) {
+        Order order = new Order();
+        order.setId(id);
+        order.setType(type);
+        order.setPricePerUnit(price);
+        order.setQuantity(1);
+        return order;
+    }
+}
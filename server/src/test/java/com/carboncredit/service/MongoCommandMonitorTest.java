@@ -0,0 +1,70 @@
+package com.carboncredit.service;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MongoCommandMonitorTest {
+
+    private final ConnectionDescription connection = new ConnectionDescription(
+            new ServerId(new ClusterId(), new ServerAddress()));
+
+    private SimpleMeterRegistry registry;
+    private MongoCommandMonitor monitor;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        monitor = new MongoCommandMonitor(registry);
+    }
+
+    @Test
+    public void testCommandsAreTaggedWithRepositoryOrigin() {
+        String previous = MongoCommandMonitor.enterOrigin("ProjectRepository.findByStatus");
+        try {
+            run(1, "find", "{ find: 'projects', filter: { status: 'VERIFIED' } }", 5);
+        } finally {
+            MongoCommandMonitor.restoreOrigin(previous);
+        }
+        run(2, "find", "{ find: 'wallets', filter: { userId: 'u1' } }", 1);
+
+        assertEquals(1, registry.get("mongodb.command")
+                .tags("origin", "ProjectRepository.findByStatus", "collection", "projects").timer().count());
+        assertEquals(1, registry.get("mongodb.command")
+                .tags("origin", MongoCommandMonitor.TEMPLATE_ORIGIN, "collection", "wallets").timer().count());
+
+        List<Map<String, Object>> top = monitor.getTopCommands();
+        assertEquals("ProjectRepository.findByStatus", top.get(0).get("origin"));
+    }
+
+    @Test
+    public void testFilterShapeHidesValues() {
+        BsonDocument filter = BsonDocument.parse(
+                "{ userId: 'u1', status: { $in: ['A', 'B'] }, $or: [ { price: { $gte: 10 } }, { qty: 3 } ] }");
+
+        String shape = MongoCommandMonitor.shapeOf(filter).toString();
+
+        assertFalse(shape.contains("u1") || shape.contains("10"));
+        assertTrue(shape.contains("$in") && shape.contains("$gte") && shape.contains("$or"));
+    }
+
+    private void run(int requestId, String command, String json, long elapsedMs) {
+        monitor.commandStarted(new CommandStartedEvent(null, 1L, requestId, connection, "carbon", command,
+                BsonDocument.parse(json)));
+        monitor.commandSucceeded(new CommandSucceededEvent(null, 1L, requestId, connection, "carbon", command,
+                new BsonDocument(), TimeUnit.MILLISECONDS.toNanos(elapsedMs)));
+    }
+}
@@ -33,6 +33,21 @@ public class OrderMatchingServiceTest {
     @Mock
     private OrderBook orderBook;
 
+    @Mock
+    private UserActivityService userActivityService;
+
+    @Mock
+    private SerialBlockRegistry serialBlockRegistry;
+
+    @Mock
+    private AuditLogWriter auditLogWriter;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @Mock
+    private LatencyRecorder latencyRecorder;
+
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
@@ -72,6 +87,7 @@ public class OrderMatchingServiceTest {
         // Verify Wallet Updates via WalletService
         // Atomic settlement
         verify(walletService).processTrade("buyer1", "seller1", 10.0, 90.0);
+        verify(userActivityService).recordTrade("buyer1", "seller1");
 
         // Refund Buyer: (100 - 90) * 10 = 100
         verify(walletService).releaseFunds("buyer1", 100.0);
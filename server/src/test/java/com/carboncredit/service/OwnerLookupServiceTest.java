@@ -0,0 +1,81 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Project;
+import com.carboncredit.model.User;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class OwnerLookupServiceTest {
+
+    @InjectMocks
+    private OwnerLookupService ownerLookupService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testPopulate_OneQueryPerPageThenCached() {
+        when(mongoTemplate.find(any(Query.class), eq(User.class)))
+                .thenReturn(List.of(user("u1", "Alice"), user("u2", "Bob")));
+
+        List<Project> page = List.of(project("u1"), project("u2"), project("u1"), project(null));
+        ownerLookupService.populate(page, Project::getIssuerId, Project::setOwner);
+
+        assertEquals("Alice", page.get(0).getOwner().getName());
+        assertEquals("Bob", page.get(1).getOwner().getName());
+        assertEquals("Alice", page.get(2).getOwner().getName());
+        assertNull(page.get(3).getOwner());
+
+        List<Project> nextPage = List.of(project("u2"));
+        ownerLookupService.populate(nextPage, Project::getIssuerId, Project::setOwner);
+
+        assertEquals("Bob", nextPage.get(0).getOwner().getName());
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(User.class));
+    }
+
+    @Test
+    public void testSaveEvictsCachedUser() {
+        when(mongoTemplate.find(any(Query.class), eq(User.class)))
+                .thenReturn(List.of(user("u1", "Alice")))
+                .thenReturn(List.of(user("u1", "Alice Smith")));
+
+        ownerLookupService.findByIds(List.of("u1"));
+        ownerLookupService.onAfterSave(new AfterSaveEvent<>(user("u1", "Alice Smith"), new Document(), "users"));
+
+        assertEquals("Alice Smith", ownerLookupService.findByIds(List.of("u1")).get("u1").getName());
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(User.class));
+    }
+
+    private User user(String id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        return user;
+    }
+
+    private Project project(String issuerId) {
+        Project project = new Project();
+        project.setIssuerId(issuerId);
+        return project;
+    }
+}
@@ -0,0 +1,121 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Order;
+import com.carboncredit.model.Trade;
+import com.carboncredit.model.UsageEntry;
+import com.carboncredit.repository.*;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class PlatformStatsCacheTest {
+
+    @InjectMocks
+    private PlatformStatsCache platformStatsCache;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ProjectRepository projectRepository;
+
+    @Mock
+    private CarbonCreditRepository carbonCreditRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TradeRepository tradeRepository;
+
+    @Mock
+    private RetirementRepository retirementRepository;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(mongoTemplate.aggregate(any(Aggregation.class), any(Class.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        platformStatsCache.shutdown();
+    }
+
+    @Test
+    public void testWritesAreFoldedIntoOneRefresh() {
+        for (int i = 0; i < 50; i++) {
+            platformStatsCache.onAfterSave(new AfterSaveEvent<>(new Order(), new Document(), "orders"));
+        }
+        // Saves only mark the snapshot dirty
+        assertTrue(platformStatsCache.isDirty());
+        verify(projectRepository, never()).count();
+
+        platformStatsCache.refreshIfDirty();
+        verify(projectRepository, timeout(1000).times(1)).count();
+        assertFalse(platformStatsCache.isDirty());
+
+        // Nothing written since, so the next check does not recompute
+        platformStatsCache.refreshIfDirty();
+        verify(projectRepository, after(200).times(1)).count();
+    }
+
+    @Test
+    public void testOnlyTrackedCollectionsInvalidate() {
+        platformStatsCache.onAfterSave(new AfterSaveEvent<>(new UsageEntry(), new Document(), "usage_entries"));
+        assertFalse(platformStatsCache.isDirty());
+
+        platformStatsCache.onAfterDelete(deleted(Trade.class, "t1"));
+        assertTrue(platformStatsCache.isDirty());
+    }
+
+    @Test
+    public void testRequestsDuringARefreshAreCoalescedAndLaterWritesKept() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(projectRepository.count()).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return 7L;
+        });
+
+        platformStatsCache.scheduledRefresh();
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        platformStatsCache.scheduledRefresh();
+        platformStatsCache.scheduledRefresh();
+        platformStatsCache.onAfterSave(new AfterSaveEvent<>(new Order(), new Document(), "orders"));
+        release.countDown();
+
+        verify(projectRepository, after(200).times(1)).count();
+        assertEquals(7L, platformStatsCache.get().getTotalProjects());
+        // The save landed after the refresh started, so the next check picks it up
+        assertTrue(platformStatsCache.isDirty());
+        platformStatsCache.refreshIfDirty();
+        verify(projectRepository, timeout(1000).times(2)).count();
+    }
+
+    // The listener sees deletes of every entity type, hence AfterDeleteEvent<Object>
+    @SuppressWarnings("unchecked")
+    private static AfterDeleteEvent<Object> deleted(Class<?> type, String id) {
+        return new AfterDeleteEvent<>(new Document("_id", id), (Class<Object>) type, "trades");
+    }
+}
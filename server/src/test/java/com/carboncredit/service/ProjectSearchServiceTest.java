@@ -0,0 +1,117 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Project;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ProjectSearchServiceTest {
+
+    @InjectMocks
+    private ProjectSearchService projectSearchService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testSearch_PagesAndCountsFacets() {
+        when(mongoTemplate.count(any(Query.class), eq(Project.class))).thenReturn(42L);
+        when(mongoTemplate.find(any(Query.class), eq(Project.class))).thenReturn(List.of(project("Solar One")));
+        Document facets = new Document("type", List.of(new Document("_id", "SOLAR").append("count", 30),
+                new Document("_id", "WIND").append("count", 12)))
+                .append("status", List.of(new Document("_id", "VERIFIED").append("count", 42)));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Project.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(facets), new Document()));
+
+        Map<String, Object> result = projectSearchService.search(null, "sol", null, Project.ProjectType.SOLAR,
+                null, -3, 1000);
+
+        assertEquals(0, result.get("page"));
+        assertEquals(ProjectSearchService.MAX_PAGE_SIZE, result.get("size"));
+        assertEquals(42L, result.get("total"));
+        assertEquals(1, ((List<?>) result.get("content")).size());
+        assertEquals(Map.of("type", Map.of("SOLAR", 30L, "WIND", 12L), "status", Map.of("VERIFIED", 42L)),
+                result.get("facets"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Project.class));
+        assertEquals(ProjectSearchService.MAX_PAGE_SIZE, query.getValue().getLimit());
+        assertTrue(query.getValue().getCollation().isPresent());
+        assertEquals("SOLAR", query.getValue().getQueryObject().get("type").toString());
+    }
+
+    @Test
+    public void testPrefixMatchesCaseInsensitivelyIncludingSupplementaryCharacters() {
+        when(mongoTemplate.find(any(Query.class), eq(Project.class))).thenReturn(List.of());
+
+        String prefix = "𝔸lpha"; // mathematical double-struck A, outside the BMP
+        projectSearchService.find(null, prefix, null, null, null);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Project.class));
+        List<Document> name = nameCriteria(query.getValue());
+        assertEquals(2, name.size());
+        assertEquals(new Document("$gte", prefix), name.get(0).get("name"));
+
+        Pattern regex = (Pattern) name.get(1).get("name");
+        assertTrue((regex.flags() & Pattern.CASE_INSENSITIVE) != 0);
+        assertTrue(regex.matcher(prefix + " Wind Farm").lookingAt());
+        assertTrue(regex.matcher("𝔸LPHA Solar").lookingAt());
+        assertFalse(regex.matcher("𝔹lpha").lookingAt());
+        assertFalse(regex.matcher("Beta " + prefix).lookingAt());
+    }
+
+    @Test
+    public void testFullTextPrefixHasNoCaseSensitiveBound() {
+        when(mongoTemplate.find(any(Query.class), eq(Project.class))).thenReturn(List.of(project("ABC Forest")));
+
+        List<Project> projects = projectSearchService.find("forest", "abc", null, null, null);
+
+        assertEquals(1, projects.size());
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(Project.class));
+        List<Document> name = nameCriteria(query.getValue());
+        assertEquals(1, name.size());
+        assertInstanceOf(Pattern.class, name.get(0).get("name"));
+        assertTrue(query.getValue().getQueryObject().containsKey("$text"));
+        assertFalse(query.getValue().getCollation().isPresent());
+        // The unpaged list is not limited and needs no count or facets
+        assertEquals(0, query.getValue().getLimit());
+        verify(mongoTemplate, never()).count(any(Query.class), eq(Project.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Document> nameCriteria(Query query) {
+        return ((List<Document>) query.getQueryObject().get("$and")).stream()
+                .filter(criteria -> criteria.containsKey("name"))
+                .toList();
+    }
+
+    private Project project(String name) {
+        Project project = new Project();
+        project.setName(name);
+        return project;
+    }
+}
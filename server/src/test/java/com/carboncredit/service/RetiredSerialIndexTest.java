@@ -0,0 +1,89 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CreditBlock;
+import com.carboncredit.model.RetiredSerials;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RetiredSerialIndexTest {
+
+    @InjectMocks
+    private RetiredSerialIndex index;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testRejectsDoubleRetirementAndCountsRanges() {
+        index.markRetired(List.of(range(1, 100), range(201, 300)));
+
+        assertTrue(index.isRetired("p1", 2024, 100));
+        assertFalse(index.isRetired("p1", 2024, 101));
+        assertEquals(100, index.countRetired("p1", 2024, 51, 250));
+        assertTrue(index.isFullyRetired("p1", 2024, 201, 300));
+        assertFalse(index.isFullyRetired("p1", 2024, 100, 201));
+
+        index.checkNotRetired(List.of(range(101, 200)));
+        assertThrows(RetiredSerialIndex.AlreadyRetired.class,
+                () -> index.checkNotRetired(List.of(range(150, 250))));
+    }
+
+    @Test
+    public void testRejectsRangesOutsideTheSerialSpace() {
+        assertTrue(RetiredSerialIndex.isValidRange(0, 0xFFFFFFFFL));
+        assertFalse(RetiredSerialIndex.isValidRange(-1, 10));
+        assertFalse(RetiredSerialIndex.isValidRange(10, 9));
+        assertFalse(RetiredSerialIndex.isValidRange(1, 0x100000000L));
+
+        index.markRetired(List.of(range(1, 100)));
+        assertThrows(IllegalArgumentException.class, () -> index.countRetired("p1", 2024, 1, 0x100000000L));
+    }
+
+    @Test
+    public void testPersistedBitmapLoadsBack() {
+        index.markRetired(List.of(range(10, 19)));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(1)).upsert(any(Query.class), update.capture(), eq(RetiredSerials.class));
+
+        RetiredSerials stored = new RetiredSerials();
+        stored.setProjectId("p1");
+        stored.setVintageYear(2024);
+        stored.setBitmap((byte[]) update.getValue().getUpdateObject().get("$set", Document.class).get("bitmap"));
+        when(mongoTemplate.findAll(RetiredSerials.class)).thenReturn(List.of(stored));
+
+        index.load();
+
+        assertEquals(10, index.countRetired("p1", 2024, 0, 1000));
+        assertFalse(index.isRetired("p1", 2024, 20));
+    }
+
+    private CreditBlock range(long start, long end) {
+        CreditBlock block = new CreditBlock();
+        block.setProjectId("p1");
+        block.setVintageYear(2024);
+        block.setStart(start);
+        block.setEnd(end);
+        return block;
+    }
+}
@@ -0,0 +1,161 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.CreditBlock;
+import com.carboncredit.repository.CreditBlockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class SerialBlockRegistryTest {
+
+    @InjectMocks
+    private SerialBlockRegistry registry;
+
+    @Mock
+    private CreditBlockRepository creditBlockRepository;
+
+    @Mock
+    private RetiredSerialIndex retiredSerialIndex;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        AtomicInteger ids = new AtomicInteger();
+        when(creditBlockRepository.save(any(CreditBlock.class))).thenAnswer(invocation -> {
+            CreditBlock block = invocation.getArgument(0);
+            if (block.getId() == null) {
+                block.setId("b" + ids.incrementAndGet());
+            }
+            return block;
+        });
+    }
+
+    @Test
+    public void testKeyedIssuanceIsIssuedOnceAndSurvivesReload() {
+        CreditBlock first = registry.issue("credit-issuance-p1", "p1", 2024, "alice", 100);
+        CreditBlock again = registry.issue("credit-issuance-p1", "p1", 2024, "alice", 100);
+        CreditBlock other = registry.issue("credit-issuance-p2", "p1", 2024, "alice", 10);
+
+        assertEquals(first.getSerialRange(), again.getSerialRange());
+        assertEquals("p1-2024-000000101-000000110", other.getSerialRange());
+        // Different issuances are not merged, so each keeps its id
+        assertEquals(2, registry.getActiveBlocks("alice").size());
+        verify(creditBlockRepository, times(2)).save(any(CreditBlock.class));
+
+        // After a split and a restart the issuance is still known by its id
+        registry.transfer("alice", "bob", 40);
+        List<CreditBlock> stored = new ArrayList<>(registry.getActiveBlocks("alice"));
+        stored.addAll(registry.getActiveBlocks("bob"));
+        when(creditBlockRepository.findAll()).thenReturn(stored);
+        registry.load();
+        assertEquals(first.getSerialRange(), registry.issue("credit-issuance-p1", "p1", 2024, "alice", 100)
+                .getSerialRange());
+        assertEquals(110, registry.getActiveSerialCount("alice") + registry.getActiveSerialCount("bob"));
+    }
+
+    @Test
+    public void testIssueContinuesSeriesAndMergesSameOwner() {
+        CreditBlock first = registry.issue("p1", 2024, "alice", 100);
+        CreditBlock second = registry.issue("p1", 2024, "alice", 50);
+
+        // Each issuance reports its own range...
+        assertEquals("p1-2024-000000001-000000100", first.getSerialRange());
+        assertEquals("p1-2024-000000101-000000150", second.getSerialRange());
+        // ...while adjacent blocks of the same owner are folded into one stored block
+        List<CreditBlock> blocks = registry.getActiveBlocks("alice");
+        assertEquals(1, blocks.size());
+        assertEquals(1, blocks.get(0).getStart());
+        assertEquals(150, blocks.get(0).getEnd());
+        assertEquals(150, registry.getActiveSerialCount("alice"));
+    }
+
+    @Test
+    public void testReturnedBlocksAreCopies() {
+        registry.issue("p1", 2024, "alice", 10).setEnd(99);
+        registry.findBySerial("p1", 2024, 5).orElseThrow().setOwnerId("mallory");
+        registry.getActiveBlocks("alice").get(0).setStart(7);
+
+        CreditBlock stored = registry.findBySerial("p1", 2024, 5).orElseThrow();
+        assertEquals("alice", stored.getOwnerId());
+        assertEquals(1, stored.getStart());
+        assertEquals(10, stored.getEnd());
+        assertEquals(10, registry.getActiveSerialCount("alice"));
+    }
+
+    @Test
+    public void testTransferSplitsBlockAndLookupFindsNewOwner() {
+        registry.issue("p1", 2024, "alice", 100);
+
+        List<CreditBlock> moved = registry.transfer("alice", "bob", 30);
+
+        assertEquals(1, moved.size());
+        assertEquals("p1-2024-000000001-000000030", moved.get(0).getSerialRange());
+        assertEquals("bob", registry.findBySerial("p1", 2024, 30).orElseThrow().getOwnerId());
+        assertEquals("alice", registry.findBySerial("p1", 2024, 31).orElseThrow().getOwnerId());
+        assertTrue(registry.findBySerial("p1", 2024, 101).isEmpty());
+        assertEquals(70, registry.getActiveSerialCount("alice"));
+
+        // Giving them back merges everything into one block again
+        registry.transfer("bob", "alice", 30);
+        List<CreditBlock> aliceBlocks = registry.getActiveBlocks("alice");
+        assertEquals(1, aliceBlocks.size());
+        assertEquals(1, aliceBlocks.get(0).getStart());
+        assertEquals(100, aliceBlocks.get(0).getEnd());
+    }
+
+    @Test
+    public void testRetireMarksSerialsAndRejectsShortfall() {
+        registry.issue("p1", 2024, "alice", 10);
+
+        List<String> retired = registry.recordRetirement("alice", 4.5, "ret1");
+
+        assertEquals(List.of("p1-2024-000000001-000000004"), retired);
+        CreditBlock block = registry.findBySerial("p1", 2024, 2).orElseThrow();
+        assertEquals(CreditBlock.BlockStatus.RETIRED, block.getStatus());
+        assertEquals("ret1", block.getRetirementId());
+        assertEquals(6, registry.getActiveSerialCount("alice"));
+        verify(retiredSerialIndex).checkNotRetired(anyList());
+        verify(retiredSerialIndex).markRetired(anyList());
+
+        assertThrows(IllegalStateException.class, () -> registry.retire("alice", 7, "ret2"));
+        assertEquals(6, registry.getActiveSerialCount("alice"));
+    }
+
+    @Test
+    public void testCheckRetirableLooksAtTheSerialsRetireWouldTake() {
+        registry.issue("p1", 2024, "alice", 10);
+
+        registry.checkRetirable("alice", 4.5);
+        registry.checkRetirable("alice", 20); // a shortfall is not this check's concern
+
+        ArgumentCaptor<List<CreditBlock>> checked = ArgumentCaptor.forClass(List.class);
+        verify(retiredSerialIndex, times(2)).checkNotRetired(checked.capture());
+        assertEquals("p1-2024-000000001-000000004", checked.getAllValues().get(0).get(0).getSerialRange());
+        assertEquals("p1-2024-000000001-000000010", checked.getAllValues().get(1).get(0).getSerialRange());
+        assertEquals(10, registry.getActiveSerialCount("alice"));
+        verify(retiredSerialIndex, never()).markRetired(anyList());
+    }
+
+    @Test
+    public void testDoubleRetirementIsThrownNotSwallowed() {
+        registry.issue("p1", 2024, "alice", 10);
+        doThrow(new RetiredSerialIndex.AlreadyRetired("Serials in p1-2024-000000001-000000004 are already retired"))
+                .when(retiredSerialIndex).checkNotRetired(anyList());
+
+        assertThrows(RetiredSerialIndex.AlreadyRetired.class, () -> registry.checkRetirable("alice", 4));
+        assertThrows(RetiredSerialIndex.AlreadyRetired.class, () -> registry.recordRetirement("alice", 4, "ret1"));
+        verify(retiredSerialIndex, never()).markRetired(anyList());
+    }
+}
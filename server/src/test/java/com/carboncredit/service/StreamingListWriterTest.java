@@ -0,0 +1,98 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Trade;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class StreamingListWriterTest {
+
+    private static final Keyset<Trade> KEYSET = Keyset.of("executedAt", Sort.Direction.DESC,
+            Trade::getExecutedAt, Trade::getId);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private StreamingListWriter writer;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        writer = new StreamingListWriter(mongoTemplate, objectMapper);
+    }
+
+    @Test
+    public void testWithoutPagingWritesPlainArray() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(Trade.class)))
+                .thenReturn(Stream.of(trade("t1", 3), trade("t2", 2)));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        writer.write(response, Trade.class, null, KEYSET, null, null);
+
+        JsonNode body = objectMapper.readTree(response.getContentAsString());
+        assertTrue(body.isArray());
+        assertEquals(2, body.size());
+    }
+
+    @Test
+    public void testPagedWritesCursorThatResumesAfterLastRow() throws Exception {
+        when(mongoTemplate.stream(any(Query.class), eq(Trade.class)))
+                .thenReturn(Stream.of(trade("t1", 3), trade("t2", 2), trade("t3", 1)))
+                .thenReturn(Stream.of(trade("t3", 1)));
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        writer.write(first, Trade.class, null, KEYSET, null, 2);
+
+        JsonNode page = objectMapper.readTree(first.getContentAsString());
+        assertEquals(2, page.get("content").size());
+        String cursor = page.get("nextCursor").asText();
+
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        writer.write(second, Trade.class, null, KEYSET, cursor, 2);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).stream(query.capture(), eq(Trade.class));
+        String resumed = query.getAllValues().get(1).getQueryObject().toString();
+        assertTrue(resumed.contains("$lt=t2"));
+        assertTrue(resumed.contains(trade("t2", 2).getExecutedAt().toString()));
+
+        JsonNode last = objectMapper.readTree(second.getContentAsString());
+        assertEquals(1, last.get("content").size());
+        assertTrue(last.get("nextCursor").isNull());
+    }
+
+    @Test
+    public void testBadCursorIsRejected() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        writer.write(response, Trade.class, null, KEYSET, "not-a-cursor", null);
+
+        assertEquals(400, response.getStatus());
+        verify(mongoTemplate, never()).stream(any(Query.class), eq(Trade.class));
+    }
+
+    private Trade trade(String id, int hour) {
+        Trade trade = new Trade();
+        trade.setId(id);
+        trade.setExecutedAt(LocalDateTime.of(2024, 1, 1, hour, 0));
+        return trade;
+    }
+}
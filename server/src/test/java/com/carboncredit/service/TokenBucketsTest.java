@@ -0,0 +1,104 @@
+package com.carboncredit.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketsTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    // Burst of 3, then one token a second
+    private final TokenBuckets buckets = new TokenBuckets(3, 60, 100, clock::get);
+
+    @Test
+    public void testBurstUpToCapacityThenWaitForOneInterval() {
+        assertEquals(0, buckets.tryAcquire("alice"));
+        assertEquals(0, buckets.tryAcquire("alice"));
+        assertEquals(0, buckets.tryAcquire("alice"));
+        assertEquals(1000, buckets.tryAcquire("alice"));
+        // A rejected attempt takes nothing
+        assertEquals(1000, buckets.tryAcquire("alice"));
+
+        // Other keys have their own bucket
+        assertEquals(0, buckets.tryAcquire("bob"));
+    }
+
+    @Test
+    public void testRefillsOneTokenPerIntervalToTheNanosecond() {
+        for (int i = 0; i < 3; i++) {
+            buckets.tryAcquire("alice");
+        }
+
+        advanceMillis(999);
+        assertEquals(1, buckets.tryAcquire("alice"));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1) - 1);
+        assertEquals(1, buckets.tryAcquire("alice"), "a partial millisecond still rounds up");
+        clock.incrementAndGet();
+        assertEquals(0, buckets.tryAcquire("alice"));
+        assertEquals(1000, buckets.tryAcquire("alice"));
+
+        // Two intervals give back two tokens
+        advanceMillis(2000);
+        assertEquals(0, buckets.tryAcquire("alice"));
+        assertEquals(0, buckets.tryAcquire("alice"));
+        assertEquals(1000, buckets.tryAcquire("alice"));
+    }
+
+    @Test
+    public void testIdleTimeNeverRefillsBeyondCapacity() {
+        buckets.tryAcquire("alice");
+        advanceMillis(TimeUnit.DAYS.toMillis(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire("alice"));
+        }
+        assertEquals(1000, buckets.tryAcquire("alice"));
+    }
+
+    @Test
+    public void testCapacityOneAllowsNoBurst() {
+        TokenBuckets single = new TokenBuckets(1, 30, 100, clock::get);
+
+        assertEquals(0, single.tryAcquire("alice"));
+        assertEquals(2000, single.tryAcquire("alice"));
+        advanceMillis(2000);
+        assertEquals(0, single.tryAcquire("alice"));
+    }
+
+    @Test
+    public void testFullBucketsAreSweptOnceOverMaxKeys() {
+        TokenBuckets small = new TokenBuckets(3, 60, 2, clock::get);
+        small.tryAcquire("a");
+        small.tryAcquire("b");
+        assertEquals(2, small.size());
+
+        // a and b have refilled by now, so making room for c drops them
+        advanceMillis(1000);
+        assertEquals(0, small.tryAcquire("c"));
+        assertEquals(1, small.size());
+
+        // c is drained and d has one token out; a second later only d is full again
+        small.tryAcquire("c");
+        small.tryAcquire("c");
+        small.tryAcquire("d");
+        advanceMillis(1000);
+        assertEquals(0, small.tryAcquire("e"));
+        assertEquals(2, small.size());
+        assertEquals(0, small.tryAcquire("c"));
+        assertEquals(1000, small.tryAcquire("c"));
+    }
+
+    @Test
+    public void testRejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBuckets(0.5, 60, 10));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBuckets(3, 0, 10));
+    }
+
+    private void advanceMillis(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,180 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.UsageEntry;
+import com.carboncredit.model.Wallet;
+import com.carboncredit.repository.WalletRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class UsageAlertServiceTest {
+
+    @InjectMocks
+    private UsageAlertService usageAlertService;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(usageAlertService, "windowMinutes", 60L);
+        ReflectionTestUtils.setField(usageAlertService, "spikeFactor", 3.0);
+        ReflectionTestUtils.setField(usageAlertService, "spikeMinKg", 10.0);
+        ReflectionTestUtils.setField(usageAlertService, "walletRefreshMs", 60000L);
+
+        Wallet wallet = new Wallet();
+        wallet.setCarbonCreditBalance(1.0); // 1 credit = 1000 kg
+        when(walletRepository.findByUserId("user1")).thenReturn(wallet);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(UsageEntry.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+    }
+
+    @Test
+    public void testSeedsOnceAndCachesWallet() {
+        LocalDateTime now = LocalDateTime.now();
+        usageAlertService.onUsage(entry(400.0, now));
+        usageAlertService.onUsage(entry(400.0, now.plusMinutes(1)));
+        usageAlertService.onUsage(entry(400.0, now.plusMinutes(2)));
+
+        // Running total is kept in memory after the first event
+        verify(mongoTemplate, times(1)).aggregate(any(Aggregation.class), eq(UsageEntry.class), eq(Document.class));
+        verify(walletRepository, times(1)).findByUserId("user1");
+    }
+
+    @Test
+    public void testIgnoresEntriesWithoutUser() {
+        UsageEntry entry = entry(5.0, LocalDateTime.now());
+        entry.setUserId(null);
+
+        usageAlertService.onUsage(entry);
+
+        verifyNoInteractions(mongoTemplate, walletRepository);
+    }
+
+    @Test
+    public void testNetCreditsNegativeFiresOnceWhenCrossing() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        usageAlertService.register("user1", emitter);
+        LocalDateTime now = LocalDateTime.now();
+
+        usageAlertService.onUsage(entry(600.0, now));
+        assertTrue(emitter.types().isEmpty());
+        usageAlertService.onUsage(entry(600.0, now.plusMinutes(1)));
+        usageAlertService.onUsage(entry(100.0, now.plusMinutes(2)));
+
+        assertEquals(List.of("NET_CREDITS_NEGATIVE"), emitter.types());
+        assertEquals(-0.2, (double) emitter.alerts.get(0).get("netRemainingCredits"), 1e-9);
+    }
+
+    @Test
+    public void testBurnRateSpikeFiresAboveBaseline() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        usageAlertService.register("user1", emitter);
+        LocalDateTime start = LocalDateTime.now().minusHours(3);
+
+        // Two hours of steady 1 kg/min settles the baseline at one window's worth (60 kg)
+        for (int minute = 0; minute < 120; minute++) {
+            usageAlertService.onUsage(entry(1.0, start.plusMinutes(minute)));
+        }
+        assertTrue(emitter.types().isEmpty());
+
+        usageAlertService.onUsage(entry(500.0, start.plusMinutes(120)));
+
+        assertEquals(List.of("BURN_RATE_SPIKE"), emitter.types());
+    }
+
+    @Test
+    public void testSteadyBurnWhileTheWindowFillsIsNotASpike() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        usageAlertService.register("user1", emitter);
+        LocalDateTime start = LocalDateTime.now().minusHours(4);
+
+        // 2 kg/min is well above spikeMinKg once the window holds a few minutes of it
+        for (int minute = 0; minute < 180; minute++) {
+            usageAlertService.onUsage(entry(2.0, start.plusMinutes(minute)));
+        }
+
+        assertTrue(emitter.types().isEmpty());
+        assertEquals(120.0, (double) usageAlertService.getWindow("user1").get("baselineWindowUsageKg"), 1e-9);
+    }
+
+    @Test
+    public void testBackDatedSamplesLeaveTheWindow() {
+        LocalDateTime now = LocalDateTime.now();
+        usageAlertService.onUsage(entry(5.0, now));
+        usageAlertService.onUsage(entry(7.0, now.minusMinutes(50)));
+        // Older than the window already: counts towards the total only
+        usageAlertService.onUsage(entry(100.0, now.minusHours(2)));
+        assertEquals(12.0, (double) usageAlertService.getWindow("user1").get("windowUsageKg"), 1e-9);
+
+        // Moves the window past the back-dated sample that arrived behind a newer one
+        usageAlertService.onUsage(entry(1.0, now.plusMinutes(30)));
+
+        Map<String, Object> window = usageAlertService.getWindow("user1");
+        assertEquals(6.0, (double) window.get("windowUsageKg"), 1e-9);
+        assertEquals(113.0, (double) window.get("totalUsageKg"), 1e-9);
+    }
+
+    @Test
+    public void testFailedSubscriberIsRemoved() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.fail = true;
+        usageAlertService.register("user1", emitter);
+
+        usageAlertService.onUsage(entry(1200.0, LocalDateTime.now()));
+
+        Map<?, ?> subscribers = (Map<?, ?>) ReflectionTestUtils.getField(usageAlertService, "subscribers");
+        assertTrue(subscribers.isEmpty());
+    }
+
+    private UsageEntry entry(double kg, LocalDateTime at) {
+        UsageEntry entry = new UsageEntry();
+        entry.setUserId("user1");
+        entry.setCo2KgDelta(kg);
+        entry.setTimestamp(at);
+        return entry;
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        final List<Map<String, Object>> alerts = new ArrayList<>();
+        boolean fail;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void send(SseEventBuilder builder) throws IOException {
+            if (fail) {
+                throw new IOException("disconnected");
+            }
+            builder.build().stream()
+                    .filter(part -> part.getData() instanceof Map)
+                    .forEach(part -> alerts.add((Map<String, Object>) part.getData()));
+        }
+
+        List<Object> types() {
+            return alerts.stream().map(alert -> alert.get("type")).toList();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.UsageEntry;
+import com.carboncredit.model.User;
+import com.carboncredit.repository.UsageConfigRepository;
+import com.carboncredit.repository.UsageEntryRepository;
+import com.carboncredit.repository.UserRepository;
+import com.carboncredit.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class UsageServiceTest {
+
+    @InjectMocks
+    private UsageService usageService;
+
+    @Mock
+    private UsageEntryRepository usageEntryRepository;
+
+    @Mock
+    private UsageConfigRepository usageConfigRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private UsageAlertService usageAlertService;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIngestNdjson_ReportsBadLinesWithoutFailingBatch() throws Exception {
+        List<UsageEntry> saved = new ArrayList<>();
+        when(usageEntryRepository.saveAll(any(List.class))).thenAnswer(invocation -> {
+            saved.addAll(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+
+        String body = "{\"userId\":\"u1\",\"co2KgDelta\":2.5}\n"
+                + "not-a-record\n"
+                + "\n"
+                + "{\"co2KgDelta\":1.0}\n"
+                + "{\"userId\":\"u2\",\"co2KgDelta\":4.0}\n";
+
+        Map<String, Object> result = usageService
+                .ingestNdjson(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(5L, result.get("lines"));
+        assertEquals(2L, result.get("accepted"));
+        assertEquals(2, result.get("rejected"));
+
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) result.get("errors");
+        assertEquals(2L, errors.get(0).get("line"));
+        assertEquals(4L, errors.get(1).get("line"));
+
+        verify(usageEntryRepository, times(1)).saveAll(any(List.class));
+        assertEquals("u1", saved.get(0).getUserId());
+        assertEquals(4.0, saved.get(1).getCo2KgDelta());
+    }
+
+    @Test
+    public void testProcessMqttMessage_UsesKnownUser() {
+        usageService.processMqttMessage("3.5", "user1");
+
+        ArgumentCaptor<UsageEntry> saved = ArgumentCaptor.forClass(UsageEntry.class);
+        verify(usageEntryRepository).save(saved.capture());
+        assertEquals("user1", saved.getValue().getUserId());
+        assertEquals(3.5, saved.getValue().getCo2KgDelta());
+    }
+
+    @Test
+    public void testProcessMqttMessage_RejectsGarbage() {
+        usageService.processMqttMessage("garbage", "user1");
+
+        verify(usageEntryRepository, never()).save(any(UsageEntry.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIngestNdjson_ResolvesEmailsOncePerChunkAndRejectsRawNumbers() throws Exception {
+        User known = new User();
+        known.setId("u7");
+        known.setEmail("known@example.com");
+        when(userRepository.findByEmailIn(any())).thenReturn(List.of(known));
+        List<UsageEntry> saved = new ArrayList<>();
+        when(usageEntryRepository.saveAll(any(List.class))).thenAnswer(invocation -> {
+            saved.addAll(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+
+        StringBuilder body = new StringBuilder("12.5\n");
+        for (int i = 0; i < 700; i++) {
+            String email = (i % 2 == 0) ? "known@example.com" : "nobody@example.com";
+            body.append("{\"email\":\"").append(email).append("\",\"co2KgDelta\":1.0}\n");
+        }
+
+        Map<String, Object> result = usageService
+                .ingestNdjson(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(350L, result.get("accepted"));
+        assertEquals(351, result.get("rejected"));
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) result.get("errors");
+        assertEquals(1L, errors.get(0).get("line"));
+        assertEquals("Raw number payload has no user", errors.get(0).get("error"));
+        assertTrue(saved.stream().allMatch(entry -> "u7".equals(entry.getUserId())));
+        // Two chunks, but both emails are known after the first lookup
+        verify(usageEntryRepository, times(2)).saveAll(any(List.class));
+        verify(userRepository, times(1)).findByEmailIn(any());
+        verify(userRepository, never()).findByEmail(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIngestNdjson_FailedChunkIsReportedAndLaterChunksStored() throws Exception {
+        List<UsageEntry> saved = new ArrayList<>();
+        when(usageEntryRepository.saveAll(any(List.class)))
+                .thenThrow(new RuntimeException("write failed"))
+                .thenAnswer(invocation -> {
+                    saved.addAll(invocation.getArgument(0));
+                    return invocation.getArgument(0);
+                });
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 600; i++) {
+            body.append("{\"userId\":\"u1\",\"co2KgDelta\":1.0}\n");
+        }
+
+        Map<String, Object> result = usageService
+                .ingestNdjson(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(100L, result.get("accepted"));
+        assertEquals(500, result.get("rejected"));
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) result.get("errors");
+        assertEquals(1L, errors.get(0).get("line"));
+        assertEquals("Could not be stored", errors.get(0).get("error"));
+        assertEquals(100, saved.size());
+        // Only stored entries reach the alert windows
+        verify(usageAlertService, times(1)).onSaved(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIngestNdjson_OverlongLineIsRejectedWithoutStoppingTheBatch() throws Exception {
+        ReflectionTestUtils.setField(usageService, "maxLineChars", 100);
+        when(usageEntryRepository.saveAll(any(List.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        String body = "{\"userId\":\"u1\",\"padding\":\"" + "x".repeat(10_000) + "\"}\r\n"
+                + "{\"userId\":\"u1\",\"co2KgDelta\":2.0}\r\n";
+
+        Map<String, Object> result = usageService
+                .ingestNdjson(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2L, result.get("lines"));
+        assertEquals(1L, result.get("accepted"));
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) result.get("errors");
+        assertEquals(1L, errors.get(0).get("line"));
+        assertEquals("Line exceeds 100 characters", errors.get(0).get("error"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIngestNdjson_DetailedErrorsAreCappedAndTheRestCounted() throws Exception {
+        String body = "{broken\n".repeat(1500);
+
+        Map<String, Object> result = usageService
+                .ingestNdjson(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1500, result.get("rejected"));
+        List<Map<String, Object>> errors = (List<Map<String, Object>>) result.get("errors");
+        assertEquals(1000, errors.size());
+        assertEquals(1000L, errors.get(999).get("line"));
+        assertEquals(500, result.get("errorsOmitted"));
+    }
+
+    @Test
+    public void testProcessMqttMessage_RejectsRawNumberWithoutUser() {
+        usageService.processMqttMessage("3.5");
+
+        verify(usageEntryRepository, never()).save(any(UsageEntry.class));
+    }
+}
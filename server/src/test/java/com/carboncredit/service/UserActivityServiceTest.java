@@ -0,0 +1,128 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Order;
+import com.carboncredit.model.UserActivity;
+import com.carboncredit.repository.*;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class UserActivityServiceTest {
+
+    @InjectMocks
+    private UserActivityService userActivityService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ProjectRepository projectRepository;
+
+    @Mock
+    private CarbonCreditRepository carbonCreditRepository;
+
+    @Mock
+    private TradeRepository tradeRepository;
+
+    @Mock
+    private RetirementRepository retirementRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(orderRepository.countByUserIdAndStatusNot("user1", Order.OrderStatus.CANCELLED)).thenReturn(4L);
+        when(orderRepository.findTop5ByUserIdOrderByCreatedAtDesc("user1")).thenReturn(List.of());
+    }
+
+    @Test
+    public void testRebuildRecountsWhenAWriteRacedWithIt() {
+        // The document as seen before each count; an order was placed during the first
+        when(mongoTemplate.findAndModify(any(Query.class), argThat(UserActivityServiceTest::isEnsure),
+                any(FindAndModifyOptions.class), eq(UserActivity.class)))
+                .thenReturn(activity(0, null), activity(1, null));
+        UserActivity stored = activity(1, LocalDateTime.now());
+        stored.setOrdersCount(4);
+        when(mongoTemplate.findAndModify(argThat(query -> revisionCondition(query) != null),
+                argThat(update -> !isEnsure(update)), any(FindAndModifyOptions.class), eq(UserActivity.class)))
+                .thenAnswer(invocation -> revisionCondition(invocation.getArgument(0)).equals(1L) ? stored : null);
+
+        assertSame(stored, userActivityService.rebuild("user1"));
+        verify(orderRepository, times(2)).countByUserIdAndStatusNot("user1", Order.OrderStatus.CANCELLED);
+    }
+
+    @Test
+    public void testRebuildGivesUpAfterRepeatedRacesAndReturnsItsCounts() {
+        when(mongoTemplate.findAndModify(any(Query.class), argThat(UserActivityServiceTest::isEnsure),
+                any(FindAndModifyOptions.class), eq(UserActivity.class))).thenReturn(activity(0, null));
+        when(mongoTemplate.findAndModify(any(Query.class), argThat(update -> !isEnsure(update)),
+                any(FindAndModifyOptions.class), eq(UserActivity.class))).thenReturn(null);
+
+        UserActivity activity = userActivityService.rebuild("user1");
+
+        assertEquals(4, activity.getOrdersCount());
+        verify(orderRepository, times(3)).countByUserIdAndStatusNot("user1", Order.OrderStatus.CANCELLED);
+    }
+
+    @Test
+    public void testUnfinishedDocumentIsRebuiltOnRead() {
+        when(mongoTemplate.findOne(any(Query.class), eq(UserActivity.class))).thenReturn(activity(2, null));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(UserActivity.class))).thenReturn(activity(2, null), activity(2, LocalDateTime.now()));
+
+        assertNotNull(userActivityService.getActivity("user1").getRebuiltAt());
+        verify(orderRepository).countByUserIdAndStatusNot("user1", Order.OrderStatus.CANCELLED);
+    }
+
+    @Test
+    public void testCancelledOrderDecrementsOrdersCountAndBumpsRevision() {
+        userActivityService.recordOrderCancelled("user1");
+
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(UserActivity.class));
+        Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(-1, inc.get("ordersCount"));
+        assertEquals(1, inc.get("revision"));
+    }
+
+    private static boolean isEnsure(UpdateDefinition update) {
+        return update != null && update.getUpdateObject().containsKey("$setOnInsert");
+    }
+
+    // The revision a conditional update expects, or null for other queries
+    private static Object revisionCondition(Query query) {
+        if (query == null || !query.getQueryObject().containsKey("revision")) {
+            return null;
+        }
+        Object revision = query.getQueryObject().get("revision");
+        return (revision instanceof Document) ? 0L : revision; // {$in: [0, null]}
+    }
+
+    private static UserActivity activity(long revision, LocalDateTime rebuiltAt) {
+        UserActivity activity = new UserActivity();
+        activity.setUserId("user1");
+        activity.setRevision(revision);
+        activity.setRebuiltAt(rebuiltAt);
+        return activity;
+    }
+}
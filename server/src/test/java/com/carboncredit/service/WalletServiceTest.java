@@ -0,0 +1,67 @@
+package com.carboncredit.service;
+
+import com.carboncredit.model.Wallet;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class WalletServiceTest {
+
+    @InjectMocks
+    private WalletService walletService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MetricsService metricsService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testDuplicateWalletsAreMergedIntoOldest() {
+        ObjectId oldest = new ObjectId("650000000000000000000001");
+        ObjectId newer = new ObjectId("660000000000000000000001");
+        Document group = new Document("_id", "alice").append("count", 2).append("ids", List.of(newer, oldest));
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Wallet.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(group), new Document()));
+        Wallet duplicate = new Wallet();
+        duplicate.setBalance(25.0);
+        duplicate.setCarbonCreditBalance(3.0);
+        when(mongoTemplate.findById(newer, Wallet.class)).thenReturn(duplicate);
+
+        assertEquals(1, walletService.mergeDuplicateWallets());
+
+        ArgumentCaptor<Query> target = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(target.capture(), update.capture(), eq(Wallet.class));
+        assertEquals(oldest, target.getValue().getQueryObject().get("_id"));
+        // Guarded by the merge marker so a rerun does not add the balances twice
+        assertTrue(target.getValue().getQueryObject().containsKey("transactions.id"));
+        Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(25.0, inc.get("balance"));
+        assertEquals(3.0, inc.get("carbonCreditBalance"));
+        verify(mongoTemplate).remove(any(Query.class), eq(Wallet.class));
+    }
+}